@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2022 Risu
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.github.risu729.mcbe.manifest4j.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.risu729.mcbe.manifest4j.Manifest;
+import io.github.risu729.mcbe.manifest4j.ManifestCodec;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CodecBenchmark {
+
+  public enum Codec {
+    GSON,
+    UTF8,
+    BINARY
+  }
+
+  @Param
+  private Fixtures.Size size;
+
+  @Param
+  private Codec codec;
+
+  private ManifestCodec manifestCodec;
+  private byte[] input;
+
+  @Setup
+  public void setup() {
+    manifestCodec = switch (codec) {
+      case GSON -> ManifestCodec.gson();
+      case UTF8 -> ManifestCodec.utf8();
+      case BINARY -> ManifestCodec.binary();
+    };
+    input = codec == Codec.BINARY
+        ? manifestCodec.encode(Fixtures.manifest(size))
+        : Fixtures.json(size).getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Benchmark
+  public Manifest decode() {
+    return manifestCodec.decode(input);
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2022 Risu
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.github.risu729.mcbe.manifest4j.benchmarks;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.risu729.mcbe.manifest4j.Dependency;
+import io.github.risu729.mcbe.manifest4j.Manifest;
+import io.github.risu729.mcbe.manifest4j.Metadata;
+import io.github.risu729.mcbe.manifest4j.Module_;
+import io.github.risu729.mcbe.manifest4j.Subpack;
+
+// sorts the sets of the pathological manifest with the natural orderings of the elements
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ComparatorBenchmark {
+
+  private List<Module_> modules;
+  private List<Dependency> dependencies;
+  private List<Subpack> subpacks;
+  private List<Metadata.GeneratedWith> generatedWith;
+
+  @Setup
+  public void setup() {
+    Manifest manifest = Fixtures.manifest(Fixtures.Size.PATHOLOGICAL);
+    modules = new ArrayList<>(manifest.getModules());
+    dependencies = new ArrayList<>(manifest.getDependencies());
+    subpacks = new ArrayList<>(manifest.getSubpacks());
+    generatedWith = new ArrayList<>(manifest.getMetadata().getGeneratedWith());
+  }
+
+  @Benchmark
+  public TreeSet<Module_> modules() {
+    return new TreeSet<>(modules);
+  }
+
+  @Benchmark
+  public TreeSet<Dependency> dependencies() {
+    return new TreeSet<>(dependencies);
+  }
+
+  @Benchmark
+  public TreeSet<Subpack> subpacks() {
+    return new TreeSet<>(subpacks);
+  }
+
+  @Benchmark
+  public TreeSet<Metadata.GeneratedWith> generatedWith() {
+    return new TreeSet<>(generatedWith);
+  }
+}
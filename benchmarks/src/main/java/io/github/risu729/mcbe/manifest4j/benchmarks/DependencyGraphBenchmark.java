@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2022 Risu
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.github.risu729.mcbe.manifest4j.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.risu729.mcbe.manifest4j.DependencyGraph;
+import io.github.risu729.mcbe.manifest4j.Manifest;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DependencyGraphBenchmark {
+
+  @Param({"1000", "100000"})
+  private int count;
+
+  private List<Manifest> manifests;
+
+  @Setup
+  public void setup() {
+    manifests = Fixtures.corpus(count);
+  }
+
+  @Benchmark
+  public DependencyGraph of() {
+    return DependencyGraph.of(manifests);
+  }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2022 Risu
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.github.risu729.mcbe.manifest4j.benchmarks;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import io.github.risu729.mcbe.manifest4j.Capability;
+import io.github.risu729.mcbe.manifest4j.Dependency;
+import io.github.risu729.mcbe.manifest4j.Header;
+import io.github.risu729.mcbe.manifest4j.Manifest;
+import io.github.risu729.mcbe.manifest4j.Metadata;
+import io.github.risu729.mcbe.manifest4j.Module_;
+import io.github.risu729.mcbe.manifest4j.SemVer;
+import io.github.risu729.mcbe.manifest4j.Subpack;
+
+// manifests are generated from a fixed seed so that every run measures the same input
+public final class Fixtures {
+
+  private static final long SEED = 0x6d616e6966657374L;
+
+  public enum Size {
+    // a minimal resource pack, as produced by Manifest.of
+    SMALL(0, 0, 0, 0, 0),
+    // a behavior pack with a script module and a few dependencies, like most community packs
+    TYPICAL(1, 3, 2, 2, 2),
+    // everything a manifest can contain, far beyond what is seen in practice
+    PATHOLOGICAL(64, 256, 64, 64, 16);
+
+    private final int extraModules;
+    private final int dependencies;
+    private final int subpacks;
+    private final int generatedWith;
+    private final int versionsPerGeneratedWith;
+
+    private Size(int extraModules, int dependencies, int subpacks, int generatedWith,
+        int versionsPerGeneratedWith) {
+      this.extraModules = extraModules;
+      this.dependencies = dependencies;
+      this.subpacks = subpacks;
+      this.generatedWith = generatedWith;
+      this.versionsPerGeneratedWith = versionsPerGeneratedWith;
+    }
+  }
+
+  private Fixtures() {
+  }
+
+  static Manifest manifest(Size size) {
+    var random = new Random(SEED);
+    if (size == Size.SMALL) {
+      return new Manifest.Builder()
+          .header(new Header.Builder()
+              .name("Small Pack")
+              .uuid(uuid(random))
+              .build())
+          .modules(new Module_.Builder()
+              .type(Module_.Type.RESOURCES)
+              .uuid(uuid(random))
+              .build())
+          .build();
+    }
+
+    var builder = new Manifest.Builder()
+        .formatVersion(2)
+        .header(new Header.Builder()
+            .name("pack.name")
+            .description("pack.description")
+            .uuid(uuid(random))
+            .version(semVer(random))
+            .minEngineVersion(SemVer.of(1, 19, 0))
+            .build())
+        .modules(new Module_.Builder()
+            .type(Module_.Type.DATA)
+            .description("Behavior module")
+            .uuid(uuid(random))
+            .version(semVer(random))
+            .build())
+        .addModules(new Module_.Builder()
+            .type(Module_.Type.SCRIPT)
+            .uuid(uuid(random))
+            .version(semVer(random))
+            .language(Module_.Language.JAVASCRIPT)
+            .entry(Path.of("scripts", "main.js"))
+            .build())
+        .capabilities(Capability.EXPERIMENTAL_CUSTOM_UI);
+
+    for (int i = 0; i < size.extraModules; i++) {
+      builder.addModules(new Module_.Builder()
+          .type(i % 2 == 0 ? Module_.Type.DATA : Module_.Type.CLIENT_DATA)
+          .description("Module " + i)
+          .uuid(uuid(random))
+          .version(semVer(random))
+          .build());
+    }
+    for (int i = 0; i < size.dependencies; i++) {
+      builder.addDependencies(new Dependency.Builder()
+          .uuid(uuid(random))
+          .version(semVer(random))
+          .build());
+    }
+    for (int i = 0; i < size.subpacks; i++) {
+      builder.addSubpacks(new Subpack.Builder()
+          .folderName(Path.of("subpack_" + i))
+          .name("Subpack " + i)
+          .memoryTier(i % 8)
+          .build());
+    }
+
+    var metadata = new Metadata.Builder()
+        .authors("risu", "momonga")
+        .url("https://github.com/risu729/mcbe-manifest4j")
+        .license("MIT License")
+        .generatedWith(Manifest.MANIFEST4J_GENERATED_WITH);
+    for (int i = 0; i < size.generatedWith; i++) {
+      List<SemVer> versions = new ArrayList<>();
+      for (int j = 0; j < size.versionsPerGeneratedWith; j++) {
+        versions.add(semVer(random));
+      }
+      metadata.addGeneratedWith(new Metadata.GeneratedWith.Builder()
+          .name("tool_" + i)
+          .versions(versions)
+          .build());
+    }
+    return builder.metadata(metadata.build()).build();
+  }
+
+  static String json(Size size) {
+    return manifest(size).toJson();
+  }
+
+  // packs which depend on up to two packs before them, like add-ons built on libraries
+  static List<Manifest> corpus(int count) {
+    var random = new Random(SEED);
+    List<Manifest> list = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      var builder = new Manifest.Builder()
+          .header(new Header.Builder()
+              .name("pack_" + i)
+              .uuid(uuid(random))
+              .version(semVer(random))
+              .build())
+          .modules(new Module_.Builder()
+              .type(Module_.Type.DATA)
+              .uuid(uuid(random))
+              .build());
+      int dependencies = Math.min(i, random.nextInt(3));
+      for (int j = 0; j < dependencies; j++) {
+        builder.addDependencies(new Dependency.Builder(list.get(i - 1 - random.nextInt(i)))
+            .build());
+      }
+      list.add(builder.build());
+    }
+    return list;
+  }
+
+  static List<String> semVerStrings(int count) {
+    var random = new Random(SEED);
+    List<String> list = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      list.add(semVer(random).toString());
+    }
+    return list;
+  }
+
+  private static UUID uuid(Random random) {
+    return new UUID(random.nextLong(), random.nextLong());
+  }
+
+  // skewed towards the small numbers seen in real packs
+  private static SemVer semVer(Random random) {
+    return SemVer.of(random.nextInt(2), random.nextInt(20), random.nextInt(10));
+  }
+}
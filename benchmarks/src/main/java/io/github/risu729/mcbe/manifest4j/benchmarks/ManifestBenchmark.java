@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2022 Risu
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.github.risu729.mcbe.manifest4j.benchmarks;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.UUID;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.risu729.mcbe.manifest4j.Manifest;
+import io.github.risu729.mcbe.manifest4j.Module_;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ManifestBenchmark {
+
+  private static final UUID SCRIPT_UUID = UUID.fromString("f5a5ed2b-5e5b-4ad5-8d4b-8e5bd8bd3e3a");
+  private static final Path SCRIPT_ENTRY = Path.of("scripts", "main.js");
+
+  @Param
+  private Fixtures.Size size;
+
+  private Manifest manifest;
+  private String json;
+
+  @Setup
+  public void setup() {
+    manifest = Fixtures.manifest(size);
+    json = Fixtures.json(size);
+  }
+
+  @Benchmark
+  public Manifest fromJson() {
+    return Manifest.fromJson(json);
+  }
+
+  // parses and validates at once
+  @Benchmark
+  public Manifest fromJsonValidated() {
+    return Manifest.fromJson(json, true);
+  }
+
+  // parses, then rebuilds, which checks the manifest but reuses the parsed modules and subpacks
+  @Benchmark
+  public Manifest fromJsonThenBuild() {
+    return new Manifest.Builder(Manifest.fromJson(json)).build();
+  }
+
+  @Benchmark
+  public String toJson() {
+    return manifest.toJson();
+  }
+
+  // copies every set and runs all the validations of the constructors
+  @Benchmark
+  public Manifest build() {
+    return new Manifest.Builder(manifest).build();
+  }
+
+  // checks the file name and the extension of the entry, as generating script packs does
+  @Benchmark
+  public Module_ buildScriptModule() {
+    return new Module_.Builder()
+        .type(Module_.Type.SCRIPT)
+        .uuid(SCRIPT_UUID)
+        .entry(SCRIPT_ENTRY)
+        .build();
+  }
+
+  @Benchmark
+  public int hashCode_() {
+    return manifest.hashCode();
+  }
+
+  @Benchmark
+  public String toString_() {
+    return manifest.toString();
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2022 Risu
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.github.risu729.mcbe.manifest4j.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import io.github.risu729.mcbe.manifest4j.SemVer;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SemVerBenchmark {
+
+  private static final int COUNT = 1024;
+
+  private List<String> strings;
+  private SemVer[] semVers;
+
+  @Setup
+  public void setup() {
+    strings = Fixtures.semVerStrings(COUNT);
+    semVers = strings.stream()
+        .map(SemVer::fromString)
+        .toArray(SemVer[]::new);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(COUNT)
+  public void fromString(Blackhole blackhole) {
+    for (var e : strings) {
+      blackhole.consume(SemVer.fromString(e));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(COUNT)
+  public void compareTo(Blackhole blackhole) {
+    // wraps around, so that there are as many comparisons as declared
+    for (int i = 0; i < COUNT; i++) {
+      blackhole.consume(semVers[i].compareTo(semVers[(i + 1) % COUNT]));
+    }
+  }
+}
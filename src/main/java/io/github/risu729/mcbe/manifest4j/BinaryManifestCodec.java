@@ -0,0 +1,621 @@
+/*
+ * Copyright (c) 2022 Risu
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.github.risu729.mcbe.manifest4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Objects;
+import java.util.UUID;
+
+// compact binary form of manifests, not JSON
+// objects are written as a bit mask of the fields which are not null followed by the fields
+// UUIDs are two longs, integers are varints, enums are ordinals, capabilities are a bit set, and
+// strings are written once and then referred to by index
+// the format version must be incremented when the layout or the order of enum constants changes
+final class BinaryManifestCodec implements ManifestCodec {
+
+  static final BinaryManifestCodec INSTANCE = new BinaryManifestCodec();
+
+  // "M4JB"
+  private static final int MAGIC = 0x4d344a42;
+  static final int FORMAT_VERSION = 1;
+
+  private static final int NATURAL_ORDER = 0;
+  private static final int STRICT_ORDER = 1;
+
+  private static final Module_.Type[] TYPES = Module_.Type.values();
+  private static final Module_.Language[] LANGUAGES = Module_.Language.values();
+  private static final Header.PackScope[] PACK_SCOPES = Header.PackScope.values();
+  private static final Capability[] CAPABILITIES = Capability.values();
+
+  private BinaryManifestCodec() {
+  }
+
+  @Override
+  public Manifest decode(ByteBuffer input) {
+    Objects.requireNonNull(input, "input must not be null");
+    var decoder = new Decoder(input.duplicate());
+    return decoder.decode(() -> {
+      decoder.readHeader();
+      var manifest = decoder.readManifest();
+      if (decoder.hasRemaining()) {
+        throw new IllegalArgumentException("trailing bytes");
+      }
+      return manifest;
+    });
+  }
+
+  @Override
+  public void encode(Manifest manifest, OutputStream out) {
+    Objects.requireNonNull(manifest, "manifest must not be null");
+    Objects.requireNonNull(out, "output stream must not be null");
+    var encoder = new Encoder();
+    encoder.writeHeader();
+    encoder.writeManifest(manifest);
+    try {
+      encoder.writeTo(out);
+      out.flush();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public byte[] encode(Manifest manifest) {
+    Objects.requireNonNull(manifest, "manifest must not be null");
+    var encoder = new Encoder();
+    encoder.writeHeader();
+    encoder.writeManifest(manifest);
+    return encoder.toByteArray();
+  }
+
+  // strings are shared by all the manifests written by an encoder
+  static final class Encoder {
+
+    private byte[] buffer = new byte[256];
+    private int size;
+    private final HashMap<String, Integer> strings = new HashMap<>();
+
+    void writeHeader() {
+      writeInt(MAGIC);
+      writeVarint(FORMAT_VERSION);
+    }
+
+    void writeManifest(Manifest manifest) {
+      var formatVersion = manifest.getFormatVersion();
+      var header = manifest.getHeader();
+      var modules = manifest.getModules();
+      var dependencies = manifest.getDependencies();
+      var capabilities = manifest.getCapabilities();
+      var metadata = manifest.getMetadata();
+      var subpacks = manifest.getSubpacks();
+      writeVarint(mask(formatVersion, header, modules, dependencies, capabilities, metadata,
+          subpacks));
+      if (formatVersion != null) {
+        writeSignedVarint(formatVersion);
+      }
+      if (header != null) {
+        writeHeader(header);
+      }
+      if (modules != null) {
+        writeOrder(modules.comparator(), Module_.STRICT_COMPARATOR);
+        writeVarint(modules.size());
+        for (var e : modules) {
+          writeModule(e);
+        }
+      }
+      if (dependencies != null) {
+        writeOrder(dependencies.comparator(), Dependency.STRICT_COMPARATOR);
+        writeVarint(dependencies.size());
+        for (var e : dependencies) {
+          writeUUIDOrNull(e.getUUID());
+          writeSemVerOrNull(e.getVersion());
+        }
+      }
+      if (capabilities != null) {
+        long bits = 0;
+        for (var e : capabilities) {
+          bits |= 1L << e.ordinal();
+        }
+        writeVarint(bits);
+      }
+      if (metadata != null) {
+        writeMetadata(metadata);
+      }
+      if (subpacks != null) {
+        writeOrder(subpacks.comparator(), Subpack.STRICT_COMPARATOR);
+        writeVarint(subpacks.size());
+        for (var e : subpacks) {
+          writeVarint(mask(e.getFolderName(), e.getName(), e.getMemoryTier()));
+          if (e.getFolderName() != null) {
+            writeString(e.getFolderName().toString());
+          }
+          if (e.getName() != null) {
+            writeString(e.getName());
+          }
+          if (e.getMemoryTier() != null) {
+            writeSignedVarint(e.getMemoryTier());
+          }
+        }
+      }
+    }
+
+    private void writeHeader(Header header) {
+      var name = header.getName();
+      var description = header.getDescription();
+      var uuid = header.getUUID();
+      var version = header.getVersion();
+      var minEngineVersion = header.getMinEngineVersion();
+      var platformLocked = header.getPlatformLocked();
+      var packScope = header.getPackScope();
+      var baseGameVersion = header.getBaseGameVersion();
+      var lockTemplateOptions = header.getLockTemplateOptions();
+      writeVarint(mask(name, description, uuid, version, minEngineVersion, platformLocked,
+          packScope, baseGameVersion, lockTemplateOptions));
+      if (name != null) {
+        writeString(name);
+      }
+      if (description != null) {
+        writeString(description);
+      }
+      if (uuid != null) {
+        writeUUID(uuid);
+      }
+      if (version != null) {
+        writeSemVer(version);
+      }
+      if (minEngineVersion != null) {
+        writeSemVer(minEngineVersion);
+      }
+      if (platformLocked != null) {
+        writeByte(platformLocked ? 1 : 0);
+      }
+      if (packScope != null) {
+        writeVarint(packScope.ordinal());
+      }
+      if (baseGameVersion != null) {
+        writeSemVer(baseGameVersion);
+      }
+      if (lockTemplateOptions != null) {
+        writeByte(lockTemplateOptions ? 1 : 0);
+      }
+    }
+
+    private void writeModule(Module_ module) {
+      var type = module.getType();
+      var description = module.getDescription();
+      var uuid = module.getUUID();
+      var version = module.getVersion();
+      var language = module.getLanguage();
+      var entry = module.getEntry();
+      writeVarint(mask(type, description, uuid, version, language, entry));
+      if (type != null) {
+        writeVarint(type.ordinal());
+      }
+      if (description != null) {
+        writeString(description);
+      }
+      if (uuid != null) {
+        writeUUID(uuid);
+      }
+      if (version != null) {
+        writeSemVer(version);
+      }
+      if (language != null) {
+        writeVarint(language.ordinal());
+      }
+      if (entry != null) {
+        writeString(entry.toString());
+      }
+    }
+
+    private void writeMetadata(Metadata metadata) {
+      var authors = metadata.getAuthors();
+      var url = metadata.getURL();
+      var license = metadata.getLicense();
+      var generatedWith = metadata.getGeneratedWith();
+      writeVarint(mask(authors, url, license, generatedWith));
+      if (authors != null) {
+        writeOrder(authors.comparator(), null);
+        writeVarint(authors.size());
+        for (var e : authors) {
+          writeString(e);
+        }
+      }
+      if (url != null) {
+        writeString(url.toString());
+      }
+      if (license != null) {
+        writeString(license);
+      }
+      if (generatedWith != null) {
+        writeOrder(generatedWith.comparator(), Metadata.GeneratedWith.STRICT_COMPARATOR);
+        writeVarint(generatedWith.size());
+        for (var e : generatedWith) {
+          writeString(e.getName());
+          var versions = e.getVersions();
+          writeVarint(versions.size());
+          for (var version : versions) {
+            writeSemVer(version);
+          }
+        }
+      }
+    }
+
+    // sets are written in their order, so that they are read without sorting
+    private void writeOrder(Comparator<?> comparator, Comparator<?> strict) {
+      if (comparator == null) {
+        writeByte(NATURAL_ORDER);
+      } else if (comparator == strict) {
+        writeByte(STRICT_ORDER);
+      } else {
+        throw new IllegalArgumentException("unsupported comparator: " + comparator);
+      }
+    }
+
+    private void writeUUIDOrNull(UUID uuid) {
+      writeByte(uuid == null ? 0 : 1);
+      if (uuid != null) {
+        writeUUID(uuid);
+      }
+    }
+
+    private void writeSemVerOrNull(SemVer version) {
+      writeByte(version == null ? 0 : 1);
+      if (version != null) {
+        writeSemVer(version);
+      }
+    }
+
+    private void writeUUID(UUID uuid) {
+      writeLong(uuid.getMostSignificantBits());
+      writeLong(uuid.getLeastSignificantBits());
+    }
+
+    private void writeSemVer(SemVer version) {
+      writeVarint(version.getMajor());
+      writeVarint(version.getMinor());
+      writeVarint(version.getPatch());
+    }
+
+    // 0 for a new string followed by its length and UTF-8 bytes, or the index of the string
+    // plus 1 if already written
+    private void writeString(String string) {
+      var index = strings.putIfAbsent(string, strings.size());
+      if (index != null) {
+        writeVarint(index + 1L);
+        return;
+      }
+      var bytes = string.getBytes(StandardCharsets.UTF_8);
+      writeVarint(0);
+      writeVarint(bytes.length);
+      ensureCapacity(bytes.length);
+      System.arraycopy(bytes, 0, buffer, size, bytes.length);
+      size += bytes.length;
+    }
+
+    private void writeSignedVarint(int value) {
+      writeVarint(((value << 1) ^ (value >> 31)) & 0xffffffffL);
+    }
+
+    void writeVarint(long value) {
+      ensureCapacity(10);
+      while ((value & ~0x7fL) != 0) {
+        buffer[size++] = (byte) ((value & 0x7f) | 0x80);
+        value >>>= 7;
+      }
+      buffer[size++] = (byte) value;
+    }
+
+    private void writeInt(int value) {
+      ensureCapacity(4);
+      for (int shift = 24; shift >= 0; shift -= 8) {
+        buffer[size++] = (byte) (value >>> shift);
+      }
+    }
+
+    private void writeLong(long value) {
+      ensureCapacity(8);
+      for (int shift = 56; shift >= 0; shift -= 8) {
+        buffer[size++] = (byte) (value >>> shift);
+      }
+    }
+
+    private void writeByte(int value) {
+      ensureCapacity(1);
+      buffer[size++] = (byte) value;
+    }
+
+    private void ensureCapacity(int length) {
+      if (size + length > buffer.length) {
+        buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + length));
+      }
+    }
+
+    int size() {
+      return size;
+    }
+
+    void writeTo(OutputStream out) throws IOException {
+      out.write(buffer, 0, size);
+    }
+
+    byte[] toByteArray() {
+      return Arrays.copyOf(buffer, size);
+    }
+
+    // writes the buffered bytes and clears the buffer, keeping the strings
+    void flushTo(OutputStream out) throws IOException {
+      writeTo(out);
+      size = 0;
+    }
+  }
+
+  // malformed input is reported as IllegalArgumentException
+  static final class Decoder {
+
+    private final ByteBuffer in;
+    private final ArrayList<String> strings = new ArrayList<>();
+
+    Decoder(ByteBuffer in) {
+      this.in = in;
+    }
+
+    interface Action<T> {
+      T run();
+    }
+
+    <T> T decode(Action<T> action) {
+      try {
+        return action.run();
+      } catch (BufferUnderflowException e) {
+        throw new IllegalArgumentException("malformed binary manifest: truncated", e);
+      } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+        throw new IllegalArgumentException("malformed binary manifest: " + e.getMessage(), e);
+      }
+    }
+
+    boolean hasRemaining() {
+      return in.hasRemaining();
+    }
+
+    void readHeader() {
+      if (in.getInt() != MAGIC) {
+        throw new IllegalArgumentException("not a binary manifest");
+      }
+      int version = readInt();
+      if (version != FORMAT_VERSION) {
+        throw new IllegalArgumentException("unsupported format version: " + version);
+      }
+    }
+
+    Manifest readManifest() {
+      int mask = readInt();
+      var formatVersion = (mask & 1) == 0 ? null : readSignedInt();
+      var header = (mask & 1 << 1) == 0 ? null : readHeaderObject();
+      SortedArraySet<Module_> modules = null;
+      if ((mask & 1 << 2) != 0) {
+        var comparator = readOrder(Module_.STRICT_COMPARATOR);
+        var elements = new Object[readLength()];
+        for (int i = 0; i < elements.length; i++) {
+          elements[i] = readModule();
+        }
+        modules = SortedArraySet.ofSorted(elements, comparator);
+      }
+      SortedArraySet<Dependency> dependencies = null;
+      if ((mask & 1 << 3) != 0) {
+        var comparator = readOrder(Dependency.STRICT_COMPARATOR);
+        var elements = new Object[readLength()];
+        for (int i = 0; i < elements.length; i++) {
+          var uuid = in.get() == 0 ? null : readUUID();
+          var version = in.get() == 0 ? null : readSemVer();
+          elements[i] = new Dependency(uuid, version);
+        }
+        dependencies = SortedArraySet.ofSorted(elements, comparator);
+      }
+      EnumSet<Capability> capabilities = null;
+      if ((mask & 1 << 4) != 0) {
+        long bits = readLong();
+        if (bits >>> CAPABILITIES.length != 0) {
+          throw new IllegalArgumentException("unknown capability");
+        }
+        capabilities = EnumSet.noneOf(Capability.class);
+        for (var e : CAPABILITIES) {
+          if ((bits & 1L << e.ordinal()) != 0) {
+            capabilities.add(e);
+          }
+        }
+      }
+      var metadata = (mask & 1 << 5) == 0 ? null : readMetadata();
+      SortedArraySet<Subpack> subpacks = null;
+      if ((mask & 1 << 6) != 0) {
+        var comparator = readOrder(Subpack.STRICT_COMPARATOR);
+        var elements = new Object[readLength()];
+        for (int i = 0; i < elements.length; i++) {
+          int subpackMask = readInt();
+          var folderName = (subpackMask & 1) == 0 ? null : Path.of(readString());
+          var name = (subpackMask & 1 << 1) == 0 ? null : readString();
+          var memoryTier = (subpackMask & 1 << 2) == 0 ? null : readSignedInt();
+          elements[i] = new Subpack(folderName, name, memoryTier);
+        }
+        subpacks = SortedArraySet.ofSorted(elements, comparator);
+      }
+      return new Manifest(formatVersion, header, modules, dependencies, capabilities, metadata,
+          subpacks);
+    }
+
+    private Header readHeaderObject() {
+      int mask = readInt();
+      var name = (mask & 1) == 0 ? null : readString();
+      var description = (mask & 1 << 1) == 0 ? null : readString();
+      var uuid = (mask & 1 << 2) == 0 ? null : readUUID();
+      var version = (mask & 1 << 3) == 0 ? null : readSemVer();
+      var minEngineVersion = (mask & 1 << 4) == 0 ? null : readSemVer();
+      var platformLocked = (mask & 1 << 5) == 0 ? null : in.get() != 0;
+      var packScope = (mask & 1 << 6) == 0 ? null : PACK_SCOPES[readInt()];
+      var baseGameVersion = (mask & 1 << 7) == 0 ? null : readSemVer();
+      var lockTemplateOptions = (mask & 1 << 8) == 0 ? null : in.get() != 0;
+      return new Header(name, description, uuid, version, minEngineVersion, platformLocked,
+          packScope, baseGameVersion, lockTemplateOptions);
+    }
+
+    private Module_ readModule() {
+      int mask = readInt();
+      var type = (mask & 1) == 0 ? null : TYPES[readInt()];
+      var description = (mask & 1 << 1) == 0 ? null : readString();
+      var uuid = (mask & 1 << 2) == 0 ? null : readUUID();
+      var version = (mask & 1 << 3) == 0 ? null : readSemVer();
+      var language = (mask & 1 << 4) == 0 ? null : LANGUAGES[readInt()];
+      var entry = (mask & 1 << 5) == 0 ? null : Path.of(readString());
+      return new Module_(type, description, uuid, version, language, entry);
+    }
+
+    private Metadata readMetadata() {
+      int mask = readInt();
+      SortedArraySet<String> authors = null;
+      if ((mask & 1) != 0) {
+        var comparator = readOrder(null);
+        var elements = new Object[readLength()];
+        for (int i = 0; i < elements.length; i++) {
+          elements[i] = readString();
+        }
+        authors = SortedArraySet.ofSorted(elements, comparator);
+      }
+      URL url = null;
+      if ((mask & 1 << 1) != 0) {
+        var string = readString();
+        try {
+          url = new URL(string);
+        } catch (MalformedURLException e) {
+          throw new IllegalArgumentException(e.getMessage(), e);
+        }
+      }
+      var license = (mask & 1 << 2) == 0 ? null : readString();
+      SortedArraySet<Metadata.GeneratedWith> generatedWith = null;
+      if ((mask & 1 << 3) != 0) {
+        var comparator = readOrder(Metadata.GeneratedWith.STRICT_COMPARATOR);
+        var elements = new Object[readLength()];
+        for (int i = 0; i < elements.length; i++) {
+          var name = readString();
+          var versions = new Object[readLength()];
+          for (int j = 0; j < versions.length; j++) {
+            versions[j] = readSemVer();
+          }
+          elements[i] = new Metadata.GeneratedWith(name,
+              SortedArraySet.<SemVer>ofSorted(versions, null));
+        }
+        generatedWith = SortedArraySet.ofSorted(elements, comparator);
+      }
+      return new Metadata(authors, url, license, generatedWith);
+    }
+
+    private <E> Comparator<E> readOrder(Comparator<E> strict) {
+      return switch (in.get()) {
+        case NATURAL_ORDER -> null;
+        case STRICT_ORDER -> {
+          if (strict == null) {
+            throw new IllegalArgumentException("unsupported order");
+          }
+          yield strict;
+        }
+        default -> throw new IllegalArgumentException("unsupported order");
+      };
+    }
+
+    private UUID readUUID() {
+      return new UUID(in.getLong(), in.getLong());
+    }
+
+    private SemVer readSemVer() {
+      return SemVer.of(readInt(), readInt(), readInt());
+    }
+
+    private String readString() {
+      long index = readLong();
+      if (index != 0) {
+        if (index > strings.size()) {
+          throw new IllegalArgumentException("invalid string index: " + index);
+        }
+        return strings.get((int) index - 1);
+      }
+      int length = readLength();
+      String string;
+      if (in.hasArray()) {
+        if (length > in.remaining()) {
+          throw new BufferUnderflowException();
+        }
+        string = new String(in.array(), in.arrayOffset() + in.position(), length,
+            StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+      } else {
+        var bytes = new byte[length];
+        in.get(bytes);
+        string = new String(bytes, StandardCharsets.UTF_8);
+      }
+      strings.add(string);
+      return string;
+    }
+
+    // a length which the remaining bytes can hold at least one byte per element of
+    int readLength() {
+      int length = readInt();
+      if (length < 0 || length > in.remaining()) {
+        throw new IllegalArgumentException("invalid length: " + length);
+      }
+      return length;
+    }
+
+    private int readSignedInt() {
+      int value = readInt();
+      return (value >>> 1) ^ -(value & 1);
+    }
+
+    private int readInt() {
+      long value = readLong();
+      if (value >>> 32 != 0) {
+        throw new IllegalArgumentException("varint too large");
+      }
+      return (int) value;
+    }
+
+    private long readLong() {
+      long value = 0;
+      for (int shift = 0; shift < 64; shift += 7) {
+        byte b = in.get();
+        value |= (long) (b & 0x7f) << shift;
+        if (b >= 0) {
+          return value;
+        }
+      }
+      throw new IllegalArgumentException("varint too long");
+    }
+  }
+
+  // a bit for each value which is not null, in the order of the arguments
+  private static int mask(Object... values) {
+    int mask = 0;
+    for (int i = 0; i < values.length; i++) {
+      if (values[i] != null) {
+        mask |= 1 << i;
+      }
+    }
+    return mask;
+  }
+}
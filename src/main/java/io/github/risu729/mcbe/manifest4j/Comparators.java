@@ -0,0 +1,29 @@
+/*
+ * Copyright (c) 2022 Risu
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.github.risu729.mcbe.manifest4j;
+
+// null-first comparison of fields for the hand-written comparators of the model classes,
+// which are called for every lookup in the sets of manifests
+final class Comparators {
+
+  private Comparators() {
+  }
+
+  static <T extends Comparable<? super T>> int compare(T a, T b) {
+    if (a == b) {
+      return 0;
+    }
+    if (a == null) {
+      return -1;
+    }
+    if (b == null) {
+      return 1;
+    }
+    return a.compareTo(b);
+  }
+}
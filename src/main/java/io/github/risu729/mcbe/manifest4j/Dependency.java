@@ -11,18 +11,23 @@ import java.util.Comparator;
 import java.util.Objects;
 import java.util.UUID;
 
+import com.google.gson.annotations.JsonAdapter;
+
 import io.github.risu729.mcbe.manifest4j.gson.ManifestGson;
 
+@JsonAdapter(ModelAdapterFactory.class)
 public final class Dependency implements Comparable<Dependency> {
 
   static final Comparator<Dependency> STRICT_COMPARATOR =
-      Comparator.comparing(Dependency::getUUID, Comparator.nullsFirst(Comparator.naturalOrder()));
-  private static final Comparator<Dependency> COMPARATOR = STRICT_COMPARATOR
-      .thenComparing(Dependency::getVersion, Comparator.nullsFirst(Comparator.naturalOrder()));
+      (a, b) -> Comparators.compare(a.uuid, b.uuid);
 
   private final UUID uuid; // necessary
   private final SemVer version; // necessary
 
+  // computed on first use
+  private transient int hash;
+  private transient String string;
+
   public UUID getUUID() {
     return uuid;
   }
@@ -73,9 +78,19 @@ public final class Dependency implements Comparable<Dependency> {
     this.version = Objects.requireNonNullElse(builder.version, SemVer.DEFAULT);
   }
 
+  // without validation, only for deserialization
+  Dependency(UUID uuid, SemVer version) {
+    this.uuid = uuid;
+    this.version = version;
+  }
+
   @Override
   public int compareTo(Dependency other) {
-    return COMPARATOR.compare(this, other);
+    int result = Comparators.compare(uuid, other.uuid);
+    if (result != 0) {
+      return result;
+    }
+    return Comparators.compare(version, other.version);
   }
 
   @Override
@@ -90,14 +105,24 @@ public final class Dependency implements Comparable<Dependency> {
 
   @Override
   public int hashCode() {
-    int hash = 1;
+    int hash = this.hash;
+    if (hash != 0) {
+      return hash;
+    }
+    hash = 1;
     hash = hash * 31 + Objects.hashCode(uuid);
     hash = hash * 31 + Objects.hashCode(version);
+    this.hash = hash;
     return hash;
   }
 
   @Override
   public String toString() {
-    return ManifestGson.SERIALIZE_NULLS.toJson(this);
+    var string = this.string;
+    if (string == null) {
+      string = ManifestGson.serializeNulls().toJson(this);
+      this.string = string;
+    }
+    return string;
   }
 }
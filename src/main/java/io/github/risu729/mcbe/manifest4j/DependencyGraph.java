@@ -0,0 +1,338 @@
+/*
+ * Copyright (c) 2022 Risu
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.github.risu729.mcbe.manifest4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+// resolves dependencies between manifests by the UUID and version in their headers
+// manifests are numbered and the graph is kept in int arrays, so that building it and
+// computing the load order are linear in the number of manifests and dependencies
+public final class DependencyGraph {
+
+  private final List<Manifest> manifests;
+  // the first manifest of each UUID, the rest are chained by next in the given order
+  private final UuidTable index;
+  private final int[] next;
+  // header versions by index, to avoid chasing pointers while resolving
+  private final SemVer[] versions;
+  // dependencies of manifest i are targets[edgeStart[i]] to targets[edgeStart[i + 1] - 1]
+  private final int[] edgeStart;
+  private final int[] targets;
+  private final List<Manifest> loadOrder;
+  private final List<Problem> problems;
+
+  public static DependencyGraph of(Collection<Manifest> manifests) {
+    Objects.requireNonNull(manifests, "manifests must not be null");
+    var list = List.copyOf(manifests);
+    return new DependencyGraph(list);
+  }
+
+  public List<Manifest> getManifests() {
+    return manifests;
+  }
+
+  // dependencies come before their dependents, manifests in a cycle are adjacent
+  public List<Manifest> getLoadOrder() {
+    return loadOrder;
+  }
+
+  public List<Problem> getProblems() {
+    return problems;
+  }
+
+  // every manifest with the UUID, in the given order
+  public List<Manifest> get(UUID uuid) {
+    Objects.requireNonNull(uuid, "UUID must not be null");
+    var list = new ArrayList<Manifest>(1);
+    for (int i = index.get(uuid); i >= 0; i = next[i]) {
+      list.add(manifests.get(i));
+    }
+    return Collections.unmodifiableList(list);
+  }
+
+  // the resolved dependencies of the manifest, which must be in this graph
+  public List<Manifest> getDependencies(Manifest manifest) {
+    int node = indexOf(manifest);
+    var list = new ArrayList<Manifest>(edgeStart[node + 1] - edgeStart[node]);
+    for (int i = edgeStart[node]; i < edgeStart[node + 1]; i++) {
+      list.add(manifests.get(targets[i]));
+    }
+    return Collections.unmodifiableList(list);
+  }
+
+  public static final class Problem {
+
+    private final Type type;
+    private final Manifest manifest;
+    private final Dependency dependency;
+    private final List<Manifest> manifests;
+
+    public Type getType() {
+      return type;
+    }
+
+    // the dependent for MISSING and VERSION_MISMATCH, otherwise the first of the manifests
+    public Manifest getManifest() {
+      return manifest;
+    }
+
+    // null for DUPLICATE and CYCLE
+    public Dependency getDependency() {
+      return dependency;
+    }
+
+    // the manifests with the UUID for VERSION_MISMATCH, the manifests with the same UUID and
+    // version for DUPLICATE, the manifests in the cycle for CYCLE, and empty for MISSING
+    public List<Manifest> getManifests() {
+      return manifests;
+    }
+
+    public enum Type {
+      MISSING,
+      VERSION_MISMATCH,
+      DUPLICATE,
+      CYCLE
+    }
+
+    private Problem(Type type, Manifest manifest, Dependency dependency,
+        List<Manifest> manifests) {
+      this.type = type;
+      this.manifest = manifest;
+      this.dependency = dependency;
+      this.manifests = manifests;
+    }
+  }
+
+  private DependencyGraph(List<Manifest> manifests) {
+    int size = manifests.size();
+    this.manifests = manifests;
+    this.index = new UuidTable(size);
+    this.next = new int[size];
+    this.versions = new SemVer[size];
+    var problems = new ArrayList<Problem>();
+
+    // in reverse, so that each chain is in the given order
+    Arrays.fill(next, UuidTable.ABSENT);
+    int[] shared = new int[0];
+    int sharedCount = 0;
+    for (int i = size - 1; i >= 0; i--) {
+      var header = manifests.get(i).getHeader();
+      if (header == null) {
+        continue;
+      }
+      versions[i] = header.getVersion();
+      var uuid = header.getUUID();
+      if (uuid != null) {
+        next[i] = index.put(uuid, i);
+        if (next[i] >= 0) {
+          if (sharedCount == shared.length) {
+            shared = Arrays.copyOf(shared, Math.max(sharedCount * 2, 16));
+          }
+          shared[sharedCount++] = i;
+        }
+      }
+    }
+
+    // only UUIDs shared by more than one manifest can have duplicates
+    for (int s = 0; s < sharedCount; s++) {
+      int first = shared[s];
+      if (index.get(uuid(manifests.get(first))) != first) {
+        continue;
+      }
+      // chains are short, usually two manifests
+      boolean[] reported = new boolean[chainLength(first)];
+      for (int j = first, k = 0; j >= 0; j = next[j], k++) {
+        if (reported[k]) {
+          continue;
+        }
+        var version = versions[j];
+        List<Manifest> duplicates = null;
+        for (int l = next[j], m = k + 1; l >= 0; l = next[l], m++) {
+          if (Objects.equals(version, versions[l])) {
+            if (duplicates == null) {
+              duplicates = new ArrayList<>();
+              duplicates.add(manifests.get(j));
+            }
+            duplicates.add(manifests.get(l));
+            reported[m] = true;
+          }
+        }
+        if (duplicates != null) {
+          problems.add(new Problem(Problem.Type.DUPLICATE, duplicates.get(0), null,
+              Collections.unmodifiableList(duplicates)));
+        }
+      }
+    }
+
+    this.edgeStart = new int[size + 1];
+    int[] targets = new int[Math.max(size, 16)];
+    int edges = 0;
+    for (int i = 0; i < size; i++) {
+      edgeStart[i] = edges;
+      var manifest = manifests.get(i);
+      var dependencies = manifest.getDependencies();
+      if (dependencies == null) {
+        continue;
+      }
+      for (var dependency : dependencies) {
+        int target = resolve(manifest, dependency, problems);
+        if (target < 0) {
+          continue;
+        }
+        if (edges == targets.length) {
+          targets = Arrays.copyOf(targets, edges * 2);
+        }
+        targets[edges++] = target;
+      }
+    }
+    edgeStart[size] = edges;
+    this.targets = targets;
+
+    this.loadOrder = Collections.unmodifiableList(sort(problems));
+    this.problems = Collections.unmodifiableList(problems);
+  }
+
+  private int resolve(Manifest manifest, Dependency dependency, List<Problem> problems) {
+    int first = dependency == null || dependency.getUUID() == null
+        ? UuidTable.ABSENT
+        : index.get(dependency.getUUID());
+    if (first < 0) {
+      problems.add(new Problem(Problem.Type.MISSING, manifest, dependency, List.of()));
+      return UuidTable.ABSENT;
+    }
+    var version = dependency.getVersion();
+    if (version == null) {
+      return first;
+    }
+    for (int i = first; i >= 0; i = next[i]) {
+      if (version.equals(versions[i])) {
+        return i;
+      }
+    }
+    var candidates = new ArrayList<Manifest>();
+    for (int i = first; i >= 0; i = next[i]) {
+      candidates.add(manifests.get(i));
+    }
+    problems.add(new Problem(Problem.Type.VERSION_MISMATCH, manifest, dependency,
+        Collections.unmodifiableList(candidates)));
+    return UuidTable.ABSENT;
+  }
+
+  // Tarjan's algorithm without recursion, as dependency chains may be arbitrarily long
+  // strongly connected components are completed dependencies first, which is the load order
+  private List<Manifest> sort(List<Problem> problems) {
+    int size = manifests.size();
+    var order = new ArrayList<Manifest>(size);
+    int[] discovery = new int[size]; // 0 if not visited yet
+    int[] low = new int[size];
+    int[] edge = new int[size];
+    int[] callStack = new int[size];
+    int[] componentStack = new int[size];
+    boolean[] onStack = new boolean[size];
+    int counter = 0;
+    int componentTop = 0;
+
+    for (int root = 0; root < size; root++) {
+      if (discovery[root] != 0) {
+        continue;
+      }
+      int callTop = 0;
+      callStack[callTop++] = root;
+      discovery[root] = low[root] = ++counter;
+      edge[root] = edgeStart[root];
+      componentStack[componentTop++] = root;
+      onStack[root] = true;
+
+      while (callTop > 0) {
+        int node = callStack[callTop - 1];
+        if (edge[node] < edgeStart[node + 1]) {
+          int target = targets[edge[node]++];
+          if (discovery[target] == 0) {
+            discovery[target] = low[target] = ++counter;
+            edge[target] = edgeStart[target];
+            componentStack[componentTop++] = target;
+            onStack[target] = true;
+            callStack[callTop++] = target;
+          } else if (onStack[target]) {
+            low[node] = Math.min(low[node], discovery[target]);
+          }
+          continue;
+        }
+
+        callTop--;
+        if (callTop > 0) {
+          int parent = callStack[callTop - 1];
+          low[parent] = Math.min(low[parent], low[node]);
+        }
+        if (low[node] != discovery[node]) {
+          continue;
+        }
+        int start = order.size();
+        int member;
+        do {
+          member = componentStack[--componentTop];
+          onStack[member] = false;
+          order.add(manifests.get(member));
+        } while (member != node);
+        if (order.size() - start > 1 || dependsOnItself(node)) {
+          problems.add(new Problem(Problem.Type.CYCLE, order.get(start), null,
+              List.copyOf(order.subList(start, order.size()))));
+        }
+      }
+    }
+    return order;
+  }
+
+  private boolean dependsOnItself(int node) {
+    for (int i = edgeStart[node]; i < edgeStart[node + 1]; i++) {
+      if (targets[i] == node) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private int chainLength(int first) {
+    int length = 0;
+    for (int i = first; i >= 0; i = next[i]) {
+      length++;
+    }
+    return length;
+  }
+
+  // by identity, as equal manifests may appear more than once
+  private int indexOf(Manifest manifest) {
+    Objects.requireNonNull(manifest, "manifest must not be null");
+    var uuid = uuid(manifest);
+    if (uuid != null) {
+      for (int i = index.get(uuid); i >= 0; i = next[i]) {
+        if (manifests.get(i) == manifest) {
+          return i;
+        }
+      }
+    } else {
+      for (int i = 0; i < manifests.size(); i++) {
+        if (manifests.get(i) == manifest) {
+          return i;
+        }
+      }
+    }
+    throw new IllegalArgumentException("manifest is not in this graph: " + manifest);
+  }
+
+  private static UUID uuid(Manifest manifest) {
+    var header = manifest.getHeader();
+    return header == null ? null : header.getUUID();
+  }
+}
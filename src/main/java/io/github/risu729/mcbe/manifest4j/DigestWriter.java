@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2022 Risu
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.github.risu729.mcbe.manifest4j;
+
+import java.io.Writer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+// encodes characters as UTF-8 into a digest, without keeping them
+// unpaired surrogates are encoded as '?', the same as String.getBytes
+final class DigestWriter extends Writer {
+
+  private final MessageDigest digest;
+  private final byte[] buffer = new byte[256];
+  private int size;
+  // a high surrogate waiting for the low surrogate, or 0
+  private char highSurrogate;
+
+  DigestWriter(MessageDigest digest) {
+    this.digest = digest;
+  }
+
+  static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      // every implementation of Java is required to support SHA-256
+      throw new AssertionError(e);
+    }
+  }
+
+  @Override
+  public void write(int c) {
+    put((char) c);
+  }
+
+  @Override
+  public void write(char[] cbuf, int off, int len) {
+    for (int i = off; i < off + len; i++) {
+      put(cbuf[i]);
+    }
+  }
+
+  @Override
+  public void write(String str, int off, int len) {
+    for (int i = off; i < off + len; i++) {
+      put(str.charAt(i));
+    }
+  }
+
+  private void put(char c) {
+    // room for a '?' and a code point
+    if (size > buffer.length - 5) {
+      digest.update(buffer, 0, size);
+      size = 0;
+    }
+    if (highSurrogate != 0) {
+      char high = highSurrogate;
+      highSurrogate = 0;
+      if (Character.isLowSurrogate(c)) {
+        int codePoint = Character.toCodePoint(high, c);
+        buffer[size++] = (byte) (0xf0 | codePoint >> 18);
+        buffer[size++] = (byte) (0x80 | codePoint >> 12 & 0x3f);
+        buffer[size++] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+        buffer[size++] = (byte) (0x80 | codePoint & 0x3f);
+        return;
+      }
+      buffer[size++] = '?';
+    }
+    if (c < 0x80) {
+      buffer[size++] = (byte) c;
+    } else if (c < 0x800) {
+      buffer[size++] = (byte) (0xc0 | c >> 6);
+      buffer[size++] = (byte) (0x80 | c & 0x3f);
+    } else if (Character.isHighSurrogate(c)) {
+      highSurrogate = c;
+    } else if (Character.isLowSurrogate(c)) {
+      buffer[size++] = '?';
+    } else {
+      buffer[size++] = (byte) (0xe0 | c >> 12);
+      buffer[size++] = (byte) (0x80 | c >> 6 & 0x3f);
+      buffer[size++] = (byte) (0x80 | c & 0x3f);
+    }
+  }
+
+  @Override
+  public void flush() {
+  }
+
+  @Override
+  public void close() {
+  }
+
+  // completes the digest, and resets it
+  byte[] digest() {
+    digest.update(buffer, 0, size);
+    size = 0;
+    if (highSurrogate != 0) {
+      highSurrogate = 0;
+      digest.update((byte) '?');
+    }
+    return digest.digest();
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2022 Risu
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.github.risu729.mcbe.manifest4j;
+
+import java.nio.file.Path;
+
+// names of files and folders in packs, which must be valid on Windows
+// checked in a single pass over the chars, as the regular expressions used before dominated the
+// time to build a module of a script
+final class FileNames {
+
+  // Windows limits a name to 255 code points
+  private static final int MAX_LENGTH = 255;
+
+  private FileNames() {
+  }
+
+  // dots are allowed, but not at the end, and the part before the first dot must not be reserved
+  static boolean isValidFile(CharSequence name) {
+    return isValid(name, true);
+  }
+
+  // dots are not allowed at all
+  static boolean isValidFolder(CharSequence name) {
+    return isValid(name, false);
+  }
+
+  private static boolean isValid(CharSequence name, boolean dotted) {
+    int length = name.length();
+    if (length == 0) {
+      return false;
+    }
+    // the length of the part before the first dot, or of the whole name
+    int stem = length;
+    int codePoints = 0;
+    char previous = 0;
+    for (int i = 0; i < length; i++) {
+      char c = name.charAt(i);
+      if (c == '.') {
+        if (!dotted || i == length - 1) {
+          return false;
+        }
+        stem = Math.min(stem, i);
+      } else if (c < 0x20 || c == 0x7f || isReservedChar(c)) {
+        return false;
+      } else if (c == ' ' && (i == 0 || i == length - 1)) {
+        return false;
+      }
+      if (!Character.isLowSurrogate(c) || !Character.isHighSurrogate(previous)) {
+        codePoints++;
+      }
+      previous = c;
+    }
+    return codePoints <= MAX_LENGTH && !isReservedName(name, stem);
+  }
+
+  private static boolean isReservedChar(char c) {
+    return switch (c) {
+      case '<', '>', ':', '"', '/', '\\', '|', '?', '*' -> true;
+      default -> false;
+    };
+  }
+
+  // CON, PRN, AUX, NUL, COM1 to COM9 and LPT1 to LPT9, ignoring case
+  private static boolean isReservedName(CharSequence name, int length) {
+    if (length == 3) {
+      return matches(name, "CON") || matches(name, "PRN") || matches(name, "AUX")
+          || matches(name, "NUL");
+    }
+    if (length == 4) {
+      char digit = name.charAt(3);
+      return digit >= '1' && digit <= '9' && (matches(name, "COM") || matches(name, "LPT"));
+    }
+    return false;
+  }
+
+  // whether the name starts with the upper case ASCII letters, ignoring case
+  private static boolean matches(CharSequence name, String letters) {
+    for (int i = 0; i < letters.length(); i++) {
+      // setting the bit 0x20 turns only ASCII letters to lower case, which are all compared
+      if ((name.charAt(i) | 0x20) != (letters.charAt(i) | 0x20)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // the single name of the normalized path, also if directly under the relative parent, or null
+  // the name keeps the root of an absolute path, so that it is not a valid name
+  static Path directChild(Path path, Path parent) {
+    path = path.normalize();
+    if (path.getNameCount() == 1) {
+      return path;
+    }
+    if (path.getNameCount() == 2 && !path.isAbsolute() && path.getName(0).equals(parent)) {
+      return path.getName(1);
+    }
+    return null;
+  }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2022 Risu
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.github.risu729.mcbe.manifest4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Objects;
+
+import com.google.gson.JsonSyntaxException;
+
+final class GsonManifestCodec implements ManifestCodec {
+
+  static final GsonManifestCodec INSTANCE = new GsonManifestCodec(false);
+  static final GsonManifestCodec VALIDATING = new GsonManifestCodec(true);
+
+  private final boolean validate;
+
+  private GsonManifestCodec(boolean validate) {
+    this.validate = validate;
+  }
+
+  @Override
+  public Manifest decode(ByteBuffer input) {
+    Objects.requireNonNull(input, "input must not be null");
+    CharBuffer json;
+    try {
+      // malformed input is reported as by decode(Path), instead of being replaced
+      json = StandardCharsets.UTF_8.newDecoder()
+          .onMalformedInput(CodingErrorAction.REPORT)
+          .onUnmappableCharacter(CodingErrorAction.REPORT)
+          .decode(input.duplicate());
+    } catch (CharacterCodingException e) {
+      throw new JsonSyntaxException(e);
+    }
+    return Manifest.fromJson(json.toString(), validate);
+  }
+
+  @Override
+  public Manifest decode(Path path) throws IOException {
+    return Manifest.fromJson(path, validate);
+  }
+
+  @Override
+  public void encode(Manifest manifest, OutputStream out) {
+    Objects.requireNonNull(manifest, "manifest must not be null");
+    manifest.toJson(out);
+  }
+}
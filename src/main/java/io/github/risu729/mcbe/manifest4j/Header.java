@@ -10,8 +10,11 @@ package io.github.risu729.mcbe.manifest4j;
 import java.util.Objects;
 import java.util.UUID;
 
+import com.google.gson.annotations.JsonAdapter;
+
 import io.github.risu729.mcbe.manifest4j.gson.ManifestGson;
 
+@JsonAdapter(ModelAdapterFactory.class)
 public final class Header {
 
   static final Boolean DEFAULT_LOCK_TEMPLATE_OPTIONS = false;
@@ -32,6 +35,10 @@ public final class Header {
   // necessary and only for when Module.type == world_template
   private final Boolean lockTemplateOptions;
 
+  // computed on first use
+  private transient int hash;
+  private transient String string;
+
   public static Header of(String name) {
     return new Builder().name(name).build();
   }
@@ -88,6 +95,7 @@ public final class Header {
     private PackScope packScope;
     private SemVer baseGameVersion;
     private Boolean lockTemplateOptions;
+    private UuidGenerator uuidGenerator;
 
     public Builder() {
     }
@@ -119,6 +127,12 @@ public final class Header {
       return this;
     }
 
+    // generates the UUID if not given, UuidGenerator.getDefault() if null
+    public Builder uuidGenerator(UuidGenerator uuidGenerator) {
+      this.uuidGenerator = uuidGenerator;
+      return this;
+    }
+
     public Builder version(SemVer version) {
       this.version = version;
       return this;
@@ -163,7 +177,9 @@ public final class Header {
   private Header(Builder builder) {
     this.name = Objects.requireNonNull(builder.name, "name is necessary");
     this.description = builder.description;
-    this.uuid = Objects.requireNonNullElse(builder.uuid, UUID.randomUUID());
+    this.uuid = Objects.requireNonNullElseGet(builder.uuid,
+        () -> Objects.requireNonNullElseGet(builder.uuidGenerator, UuidGenerator::getDefault)
+            .generate(name, null));
     this.version = Objects.requireNonNullElse(builder.version, SemVer.DEFAULT);
     this.minEngineVersion = builder.minEngineVersion;
     this.platformLocked = builder.platformLocked;
@@ -172,6 +188,21 @@ public final class Header {
     this.lockTemplateOptions = builder.lockTemplateOptions;
   }
 
+  // without validation, only for deserialization
+  Header(String name, String description, UUID uuid, SemVer version, SemVer minEngineVersion,
+      Boolean platformLocked, PackScope packScope, SemVer baseGameVersion,
+      Boolean lockTemplateOptions) {
+    this.name = name;
+    this.description = description;
+    this.uuid = uuid;
+    this.version = version;
+    this.minEngineVersion = minEngineVersion;
+    this.platformLocked = platformLocked;
+    this.packScope = packScope;
+    this.baseGameVersion = baseGameVersion;
+    this.lockTemplateOptions = lockTemplateOptions;
+  }
+
   @Override
   public boolean equals(Object obj) {
     if (obj == this) {
@@ -192,7 +223,11 @@ public final class Header {
 
   @Override
   public int hashCode() {
-    int hash = 1;
+    int hash = this.hash;
+    if (hash != 0) {
+      return hash;
+    }
+    hash = 1;
     hash = hash * 31 + Objects.hashCode(name);
     hash = hash * 31 + Objects.hashCode(description);
     hash = hash * 31 + Objects.hashCode(uuid);
@@ -202,11 +237,17 @@ public final class Header {
     hash = hash * 31 + Objects.hashCode(packScope);
     hash = hash * 31 + Objects.hashCode(baseGameVersion);
     hash = hash * 31 + Objects.hashCode(lockTemplateOptions);
+    this.hash = hash;
     return hash;
   }
 
   @Override
   public String toString() {
-    return ManifestGson.SERIALIZE_NULLS.toJson(this);
+    var string = this.string;
+    if (string == null) {
+      string = ManifestGson.serializeNulls().toJson(this);
+      this.string = string;
+    }
+    return string;
   }
 }
\ No newline at end of file
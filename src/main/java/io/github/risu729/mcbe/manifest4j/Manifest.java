@@ -7,15 +7,32 @@
 
 package io.github.risu729.mcbe.manifest4j;
 
+import java.io.InputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.Collection;
 import java.util.EnumSet;
+import java.util.NavigableSet;
 import java.util.Objects;
 import java.util.Set;
+import java.util.SortedSet;
 import java.util.stream.Collectors;
 import java.util.TreeSet;
 
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+
 import io.github.risu729.mcbe.manifest4j.gson.ManifestGson;
 
+@JsonAdapter(ModelAdapterFactory.class)
 public final class Manifest {
 
   public static final Metadata.GeneratedWith MANIFEST4J_GENERATED_WITH =
@@ -24,26 +41,179 @@ public final class Manifest {
       .build();
 
   private static final Integer DEFAULT_FORMAT_VERSION = 2;
-  private static final Integer MAX_FORMAT_VERSION = 2;
+  static final Integer MAX_FORMAT_VERSION = 2;
+
+  private static final int DEFAULT_BUFFER_SIZE = 8192;
 
   private final Integer formatVersion; // necessary
   private final Header header; // necessary
-  private final TreeSet<Module_> modules; // necesarry at least one
-  private final TreeSet<Dependency> dependencies;
+  private final SortedArraySet<Module_> modules; // necesarry at least one
+  private final SortedArraySet<Dependency> dependencies;
   private final EnumSet<Capability> capabilities;
   private final Metadata metadata;
-  private final TreeSet<Subpack> subpacks;
+  private final SortedArraySet<Subpack> subpacks;
+
+  // the object is immutable, so these are computed on first use and may be computed more than
+  // once by racing threads, which is harmless as the results are equal
+  // transient to exclude them from serialization
+  private transient int hash;
+  private transient String json;
+  private transient String string;
+  // volatile unlike the others, as the contents of an array are not safely published with it
+  private transient volatile byte[] fingerprint;
 
   public static Manifest of(String name, Module_.Type type) {
-    return new Builder().header(Header.of(name)).modules(Module_.of(type)).build();
+    return new Builder().header(Header.of(name)).modules(Module_.of(type, name)).build();
   }
 
   public static Manifest fromJson(String json) {
-    return ManifestGson.NORMAL.fromJson(json, Manifest.class);
+    return fromJson(json, false);
+  }
+
+  // if validate is true, values are passed to the builders as they are read, so that the checks
+  // and defaults of build apply, and violations are thrown as JsonSyntaxException
+  public static Manifest fromJson(String json, boolean validate) {
+    return gson(validate).fromJson(json, Manifest.class);
+  }
+
+  public static Manifest fromJson(Reader reader) {
+    return fromJson(reader, false);
+  }
+
+  public static Manifest fromJson(Reader reader, boolean validate) {
+    Objects.requireNonNull(reader, "reader must not be null");
+    return gson(validate).fromJson(reader, Manifest.class);
+  }
+
+  // the stream is read as UTF-8 and is not closed
+  public static Manifest fromJson(InputStream in) {
+    return fromJson(in, DEFAULT_BUFFER_SIZE);
+  }
+
+  public static Manifest fromJson(InputStream in, int bufferSize) {
+    Objects.requireNonNull(in, "input stream must not be null");
+    return fromJson(Channels.newChannel(in), bufferSize);
+  }
+
+  // the channel is read as UTF-8 and is not closed
+  public static Manifest fromJson(ReadableByteChannel channel) {
+    return fromJson(channel, DEFAULT_BUFFER_SIZE);
+  }
+
+  public static Manifest fromJson(ReadableByteChannel channel, int bufferSize) {
+    Objects.requireNonNull(channel, "channel must not be null");
+    checkBufferSize(bufferSize);
+    // bufferSize is the size of the byte buffer, no other buffer is put between
+    return fromJson(Channels.newReader(channel, StandardCharsets.UTF_8.newDecoder(), bufferSize));
+  }
+
+  public static Manifest fromJson(Path path) throws IOException {
+    return fromJson(path, DEFAULT_BUFFER_SIZE);
+  }
+
+  public static Manifest fromJson(Path path, boolean validate) throws IOException {
+    return fromJson(path, DEFAULT_BUFFER_SIZE, validate);
+  }
+
+  public static Manifest fromJson(Path path, int bufferSize) throws IOException {
+    return fromJson(path, bufferSize, false);
+  }
+
+  public static Manifest fromJson(Path path, int bufferSize, boolean validate)
+      throws IOException {
+    Objects.requireNonNull(path, "path must not be null");
+    checkBufferSize(bufferSize);
+    try (var channel = FileChannel.open(path)) {
+      // manifest.json is usually much smaller than the buffer
+      long size = channel.size();
+      if (size < bufferSize) {
+        bufferSize = Math.max((int) size, 1);
+      }
+      return fromJson(Channels.newReader(channel, StandardCharsets.UTF_8.newDecoder(), bufferSize),
+          validate);
+    } catch (JsonIOException e) {
+      if (e.getCause() instanceof IOException cause) {
+        throw cause;
+      }
+      throw e;
+    }
   }
 
   public String toJson() {
-    return ManifestGson.NORMAL.toJson(this);
+    var json = this.json;
+    if (json == null) {
+      json = ManifestGson.normal().toJson(this);
+      this.json = json;
+    }
+    return json;
+  }
+
+  // streamed unless toJson() has been called
+  public void toJson(Appendable writer) {
+    Objects.requireNonNull(writer, "writer must not be null");
+    var json = this.json;
+    if (json == null) {
+      ManifestGson.normal().toJson(this, writer);
+      return;
+    }
+    try {
+      writer.append(json);
+    } catch (IOException e) {
+      throw new JsonIOException(e);
+    }
+  }
+
+  // the stream is written as UTF-8, and is flushed but not closed
+  public void toJson(OutputStream out) {
+    toJson(out, DEFAULT_BUFFER_SIZE);
+  }
+
+  public void toJson(OutputStream out, int bufferSize) {
+    Objects.requireNonNull(out, "output stream must not be null");
+    checkBufferSize(bufferSize);
+    Writer writer = Channels.newWriter(Channels.newChannel(out),
+        StandardCharsets.UTF_8.newEncoder(), bufferSize);
+    toJson(writer);
+    try {
+      writer.flush();
+      out.flush();
+    } catch (IOException e) {
+      throw new JsonIOException(e);
+    }
+  }
+
+  // compact JSON which is the same for manifests with the same content, whatever the
+  // whitespace, the order of keys and elements, or the form of values in the source
+  // keys are in the order of toJson(), and elements of sets in their natural order
+  public String toCanonicalJson() {
+    return ManifestGson.canonical().toJson(this);
+  }
+
+  public void toCanonicalJson(Appendable writer) {
+    Objects.requireNonNull(writer, "writer must not be null");
+    ManifestGson.canonical().toJson(this, writer);
+  }
+
+  // SHA-256 of toCanonicalJson() in UTF-8, which is streamed into the digest
+  public byte[] fingerprint() {
+    var fingerprint = this.fingerprint;
+    if (fingerprint == null) {
+      var writer = new DigestWriter(DigestWriter.sha256());
+      ManifestGson.canonical().toJson(this, writer);
+      fingerprint = writer.digest();
+      this.fingerprint = fingerprint;
+    }
+    return fingerprint.clone();
+  }
+
+  private static Gson gson(boolean validate) {
+    return validate ? ModelAdapterFactory.validatingGson() : ManifestGson.normal();
+  }
+
+  private static void checkBufferSize(int bufferSize) {
+    if (bufferSize <= 0) {
+      throw new IllegalArgumentException("buffer size must be positive: " + bufferSize);
+    }
   }
   
   public Integer getFormatVersion() {
@@ -54,27 +224,24 @@ public final class Manifest {
     return header;
   }
 
-  @SuppressWarnings("unchecked")
-  public TreeSet<Module_> getModules() {
-    return (TreeSet<Module_>) modules.clone();
+  public NavigableSet<Module_> getModules() {
+    return modules;
   }
 
-  @SuppressWarnings("unchecked")
-  public TreeSet<Dependency> getDependencies() {
-    return (TreeSet<Dependency>) dependencies.clone();
+  public NavigableSet<Dependency> getDependencies() {
+    return dependencies;
   }
 
   public EnumSet<Capability> getCapabilities() {
-    return capabilities.clone();
+    return capabilities == null ? null : capabilities.clone();
   }
 
   public Metadata getMetadata() {
     return metadata;
   }
 
-  @SuppressWarnings("unchecked")
-  public TreeSet<Subpack> getSubpacks() {
-    return (TreeSet<Subpack>) subpacks.clone();
+  public NavigableSet<Subpack> getSubpacks() {
+    return subpacks;
   }
 
   public static class Builder {
@@ -143,6 +310,16 @@ public final class Manifest {
       return this;
     }
 
+    // for deserialization, adds an element without wrapping it in a collection
+    Builder addModule(Module_ module) {
+      Objects.requireNonNull(module, "module must not be null");
+      if (this.modules == null) {
+        this.modules = new TreeSet<>(Module_.STRICT_COMPARATOR);
+      }
+      this.modules.add(module);
+      return this;
+    }
+
     public Builder dependencies(Dependency... dependencies) {
       return dependencies(dependencies == null ? null : Set.of(dependencies));
     }
@@ -170,6 +347,16 @@ public final class Manifest {
       return this;
     }
 
+    // for deserialization, adds an element without wrapping it in a collection
+    Builder addDependency(Dependency dependency) {
+      Objects.requireNonNull(dependency, "dependency must not be null");
+      if (this.dependencies == null) {
+        this.dependencies = new TreeSet<>(Dependency.STRICT_COMPARATOR);
+      }
+      this.dependencies.add(dependency);
+      return this;
+    }
+
     public Builder capabilities(Capability... capabilities) {
       return capabilities(capabilities == null ? null : Set.of(capabilities));
     }
@@ -230,12 +417,21 @@ public final class Manifest {
       return this;
     }
 
+    // for deserialization, adds an element without wrapping it in a collection
+    Builder addSubpack(Subpack subpack) {
+      Objects.requireNonNull(subpack, "subpack must not be null");
+      if (this.subpacks == null) {
+        this.subpacks = new TreeSet<>(Subpack.STRICT_COMPARATOR);
+      }
+      this.subpacks.add(subpack);
+      return this;
+    }
+
     public Manifest build() {
       return new Manifest(this);
     }
   }
 
-  @SuppressWarnings("unchecked")
   private Manifest(Builder builder) {
     this.formatVersion = Objects.requireNonNullElse(builder.formatVersion, DEFAULT_FORMAT_VERSION);
 
@@ -256,7 +452,7 @@ public final class Manifest {
         }
       }
     }
-    this.modules = (TreeSet<Module_>) builder.modules.clone();
+    this.modules = SortedArraySet.copyOf(builder.modules);
 
     Objects.requireNonNull(builder.header, "header is necessary");
     var headerBuilder = new Header.Builder(builder.header);
@@ -299,22 +495,27 @@ public final class Manifest {
 
     this.header = headerBuilder.build();
 
-    if (builder.dependencies == null) {
-      this.dependencies = null;
-    } else {
-      this.dependencies = (TreeSet<Dependency>) builder.dependencies.clone();
-    }
+    this.dependencies = SortedArraySet.copyOf(builder.dependencies);
     if (builder.capabilities == null) {
       this.capabilities = null;
     } else {
       this.capabilities = builder.capabilities.clone();
     }
     this.metadata = builder.metadata;
-    if (builder.subpacks == null) {
-      this.subpacks = null;
-    } else {
-      this.subpacks = (TreeSet<Subpack>) builder.subpacks.clone();
-    }
+    this.subpacks = SortedArraySet.copyOf(builder.subpacks);
+  }
+
+  // without validation, only for deserialization
+  Manifest(Integer formatVersion, Header header, SortedSet<Module_> modules,
+      SortedSet<Dependency> dependencies, EnumSet<Capability> capabilities, Metadata metadata,
+      SortedSet<Subpack> subpacks) {
+    this.formatVersion = formatVersion;
+    this.header = header;
+    this.modules = SortedArraySet.copyOf(modules);
+    this.dependencies = SortedArraySet.copyOf(dependencies);
+    this.capabilities = capabilities;
+    this.metadata = metadata;
+    this.subpacks = SortedArraySet.copyOf(subpacks);
   }
 
   @Override
@@ -334,7 +535,11 @@ public final class Manifest {
 
   @Override
   public int hashCode() {
-    int hash = 1;
+    int hash = this.hash;
+    if (hash != 0) {
+      return hash;
+    }
+    hash = 1;
     hash = hash * 31 + Objects.hashCode(formatVersion);
     hash = hash * 31 + Objects.hashCode(header);
     hash = hash * 31 + Objects.hashCode(modules);
@@ -342,11 +547,17 @@ public final class Manifest {
     hash = hash * 31 + Objects.hashCode(capabilities);
     hash = hash * 31 + Objects.hashCode(metadata);
     hash = hash * 31 + Objects.hashCode(subpacks);
+    this.hash = hash;
     return hash;
   }
 
   @Override
   public String toString() {
-    return ManifestGson.SERIALIZE_NULLS.toJson(this);
+    var string = this.string;
+    if (string == null) {
+      string = ManifestGson.serializeNulls().toJson(this);
+      this.string = string;
+    }
+    return string;
   }
 }
@@ -0,0 +1,346 @@
+/*
+ * Copyright (c) 2022 Risu
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.github.risu729.mcbe.manifest4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+// reads manifest.json files out of .mcpack, .mcaddon and other zip archives without extracting
+// only the central directory and the manifest entries are read, nested archives are
+// read from memory, or directly from the outer archive if they are stored uncompressed
+public final class ManifestArchive {
+
+  private static final Set<String> ARCHIVE_EXTENSIONS =
+      Set.of(".mcpack", ".mcaddon", ".mcworld", ".mctemplate", ".zip");
+
+  // separates the name of a nested archive and the name of an entry in it, as in jar URLs
+  private static final String NESTED_SEPARATOR = "!/";
+  // .mcaddon archives nest .mcpack archives one level deep, archives nested deeper than this are
+  // recorded as errors, which bounds the recursion and the inflated levels held in memory
+  private static final int MAX_NESTING = 2;
+
+  private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+  private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+  private static final int END_SIGNATURE = 0x06054b50;
+  private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+  private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+  private static final int END_SIZE = 22;
+  private static final int ZIP64_LOCATOR_SIZE = 20;
+  private static final int CENTRAL_HEADER_SIZE = 46;
+  private static final int LOCAL_HEADER_SIZE = 30;
+  private static final int MAX_COMMENT_SIZE = 0xffff;
+  private static final int ZIP64_EXTRA_ID = 0x0001;
+  private static final long ZIP64_MAGIC = 0xffffffffL;
+
+  private static final int STORED = 0;
+  private static final int DEFLATED = 8;
+  private static final int MAX_DEFLATE_RATIO = 1032;
+
+  private ManifestArchive() {
+  }
+
+  public static boolean isArchive(Path path) {
+    var fileName = Objects.requireNonNull(path, "path must not be null").getFileName();
+    return fileName != null && isArchiveName(fileName.toString());
+  }
+
+  public static Result read(Path archive) throws IOException {
+    return read(archive, ManifestCodec.gson());
+  }
+
+  public static Result read(Path archive, ManifestCodec codec) throws IOException {
+    Objects.requireNonNull(archive, "archive must not be null");
+    Objects.requireNonNull(codec, "codec must not be null");
+    try (var channel = FileChannel.open(archive)) {
+      var result = new Result();
+      read(new FileSource(channel), "", 0, codec, result);
+      return result;
+    }
+  }
+
+  public static final class Result {
+
+    private final Map<String, Manifest> manifests = new TreeMap<>();
+    private final Map<String, Exception> errors = new TreeMap<>();
+
+    private Result() {
+    }
+
+    // keyed by the entry name such as "BP/manifest.json" or "RP.mcpack!/manifest.json"
+    public Map<String, Manifest> getManifests() {
+      return Collections.unmodifiableMap(manifests);
+    }
+
+    // entries or nested archives which could not be read or parsed
+    public Map<String, Exception> getErrors() {
+      return Collections.unmodifiableMap(errors);
+    }
+  }
+
+  private static boolean isArchiveName(String name) {
+    int dot = name.lastIndexOf('.');
+    return dot >= 0 && ARCHIVE_EXTENSIONS.contains(name.substring(dot).toLowerCase(Locale.ENGLISH));
+  }
+
+  private static void read(Source source, String prefix, int nesting, ManifestCodec codec,
+      Result result) throws IOException {
+    long size = source.size();
+    // the end of central directory record is followed only by a comment
+    int tailSize = (int) Math.min(size, END_SIZE + MAX_COMMENT_SIZE + ZIP64_LOCATOR_SIZE);
+    var tail = source.read(size - tailSize, tailSize);
+    int end = -1;
+    for (int i = tailSize - END_SIZE; i >= 0; i--) {
+      if (tail.getInt(i) == END_SIGNATURE) {
+        end = i;
+        break;
+      }
+    }
+    if (end < 0) {
+      throw new ZipException("not a zip archive");
+    }
+
+    long entries = Short.toUnsignedLong(tail.getShort(end + 10));
+    long directorySize = Integer.toUnsignedLong(tail.getInt(end + 12));
+    long directoryOffset = Integer.toUnsignedLong(tail.getInt(end + 16));
+    if (end >= ZIP64_LOCATOR_SIZE
+        && tail.getInt(end - ZIP64_LOCATOR_SIZE) == ZIP64_LOCATOR_SIGNATURE) {
+      var zip64End = source.read(tail.getLong(end - ZIP64_LOCATOR_SIZE + 8), 56);
+      if (zip64End.getInt(0) != ZIP64_END_SIGNATURE) {
+        throw new ZipException("invalid zip64 end of central directory record");
+      }
+      entries = zip64End.getLong(32);
+      directorySize = zip64End.getLong(40);
+      directoryOffset = zip64End.getLong(48);
+    }
+    if (directorySize > Integer.MAX_VALUE || directoryOffset + directorySize > size) {
+      throw new ZipException("invalid central directory");
+    }
+
+    var directory = source.read(directoryOffset, (int) directorySize);
+    int pos = 0;
+    for (long i = 0; i < entries; i++) {
+      if (pos + CENTRAL_HEADER_SIZE > directory.limit()
+          || directory.getInt(pos) != CENTRAL_HEADER_SIGNATURE) {
+        throw new ZipException("invalid central directory header");
+      }
+      int flags = Short.toUnsignedInt(directory.getShort(pos + 8));
+      int method = Short.toUnsignedInt(directory.getShort(pos + 10));
+      long compressedSize = Integer.toUnsignedLong(directory.getInt(pos + 20));
+      long uncompressedSize = Integer.toUnsignedLong(directory.getInt(pos + 24));
+      int nameLength = Short.toUnsignedInt(directory.getShort(pos + 28));
+      int extraLength = Short.toUnsignedInt(directory.getShort(pos + 30));
+      int commentLength = Short.toUnsignedInt(directory.getShort(pos + 32));
+      long localOffset = Integer.toUnsignedLong(directory.getInt(pos + 42));
+
+      if ((long) pos + CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength
+          > directory.limit()) {
+        throw new ZipException("invalid central directory header");
+      }
+
+      int extra = pos + CENTRAL_HEADER_SIZE + nameLength;
+      for (int e = extra; e + 4 <= extra + extraLength; ) {
+        int id = Short.toUnsignedInt(directory.getShort(e));
+        int length = Short.toUnsignedInt(directory.getShort(e + 2));
+        if (id == ZIP64_EXTRA_ID) {
+          int field = e + 4;
+          int fieldsEnd = field + length;
+          if (fieldsEnd > extra + extraLength) {
+            throw new ZipException("invalid zip64 extra field");
+          }
+          if (uncompressedSize == ZIP64_MAGIC) {
+            uncompressedSize = zip64Value(directory, field, fieldsEnd);
+            field += 8;
+          }
+          if (compressedSize == ZIP64_MAGIC) {
+            compressedSize = zip64Value(directory, field, fieldsEnd);
+            field += 8;
+          }
+          if (localOffset == ZIP64_MAGIC) {
+            localOffset = zip64Value(directory, field, fieldsEnd);
+          }
+          break;
+        }
+        e += 4 + length;
+      }
+
+      byte[] nameBytes = new byte[nameLength];
+      directory.get(pos + CENTRAL_HEADER_SIZE, nameBytes);
+      // archives made on Windows may use backslashes
+      var name = new String(nameBytes, StandardCharsets.UTF_8).replace('\\', '/');
+      pos = extra + extraLength + commentLength;
+
+      if (name.endsWith("/")) {
+        continue;
+      }
+      var fileName = name.substring(name.lastIndexOf('/') + 1);
+      boolean isManifest = fileName.equals(ManifestScanner.MANIFEST_FILE_NAME);
+      boolean isArchive = !isManifest && isArchiveName(fileName);
+      if (!isManifest && !isArchive) {
+        continue;
+      }
+
+      var entry = new Entry(prefix + name, flags, method, compressedSize, uncompressedSize,
+          localOffset);
+      try {
+        if (isManifest) {
+          result.manifests.put(entry.name, codec.decode(entry.read(source)));
+        } else if (nesting >= MAX_NESTING) {
+          throw new ZipException("too deeply nested archive");
+        } else {
+          read(entry.open(source), entry.name + NESTED_SEPARATOR, nesting + 1, codec, result);
+        }
+      } catch (IOException | RuntimeException e) {
+        result.errors.put(entry.name, e);
+      }
+    }
+  }
+
+  // a value of the zip64 extra field, which must not run past the end of the field
+  private static long zip64Value(ByteBuffer directory, int field, int end) throws ZipException {
+    if (field + 8 > end) {
+      throw new ZipException("invalid zip64 extra field");
+    }
+    return directory.getLong(field);
+  }
+
+  private record Entry(String name, int flags, int method, long compressedSize,
+      long uncompressedSize, long localOffset) {
+
+    private long dataOffset(Source source) throws IOException {
+      if ((flags & 1) != 0) {
+        throw new ZipException("encrypted entry");
+      }
+      var header = source.read(localOffset, LOCAL_HEADER_SIZE);
+      if (header.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+        throw new ZipException("invalid local file header");
+      }
+      return localOffset + LOCAL_HEADER_SIZE
+          + Short.toUnsignedInt(header.getShort(26)) + Short.toUnsignedInt(header.getShort(28));
+    }
+
+    private ByteBuffer read(Source source) throws IOException {
+      if (compressedSize > Integer.MAX_VALUE || uncompressedSize > Integer.MAX_VALUE - 8) {
+        throw new ZipException("entry too large");
+      }
+      // deflate compresses at most about 1032 to 1, so a larger size is corrupt
+      // and would only allocate memory
+      if (method == DEFLATED && uncompressedSize > compressedSize * MAX_DEFLATE_RATIO + 1024) {
+        throw new ZipException("invalid uncompressed size");
+      }
+      var data = source.read(dataOffset(source), (int) compressedSize);
+      return switch (method) {
+        case STORED -> data;
+        case DEFLATED -> inflate(data);
+        default -> throw new ZipException("unsupported compression method: " + method);
+      };
+    }
+
+    private Source open(Source source) throws IOException {
+      if (method == STORED) {
+        return new SubSource(source, dataOffset(source), compressedSize);
+      }
+      return new BufferSource(read(source));
+    }
+
+    private ByteBuffer inflate(ByteBuffer data) throws ZipException {
+      var inflater = new Inflater(true);
+      try {
+        inflater.setInput(data);
+        byte[] bytes = new byte[(int) uncompressedSize];
+        int length = 0;
+        while (length < bytes.length) {
+          int n = inflater.inflate(bytes, length, bytes.length - length);
+          if (n == 0 && (inflater.finished() || inflater.needsInput()
+              || inflater.needsDictionary())) {
+            break;
+          }
+          length += n;
+        }
+        if (length != bytes.length) {
+          throw new ZipException("truncated entry");
+        }
+        return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+      } catch (DataFormatException e) {
+        throw new ZipException(e.getMessage());
+      } finally {
+        inflater.end();
+      }
+    }
+  }
+
+  // buffers returned are little-endian, and positioned from 0 to the length
+  private interface Source {
+
+    long size() throws IOException;
+
+    ByteBuffer read(long offset, int length) throws IOException;
+  }
+
+  private record FileSource(FileChannel channel) implements Source {
+
+    @Override
+    public long size() throws IOException {
+      return channel.size();
+    }
+
+    @Override
+    public ByteBuffer read(long offset, int length) throws IOException {
+      // before allocating, as the length may come from a corrupt header
+      if (offset < 0 || offset + length > channel.size()) {
+        throw new ZipException("unexpected end of archive");
+      }
+      var buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer, offset + buffer.position()) < 0) {
+          throw new ZipException("unexpected end of archive");
+        }
+      }
+      return buffer.flip();
+    }
+  }
+
+  private record BufferSource(ByteBuffer buffer) implements Source {
+
+    @Override
+    public long size() {
+      return buffer.limit();
+    }
+
+    @Override
+    public ByteBuffer read(long offset, int length) throws IOException {
+      if (offset < 0 || offset + length > buffer.limit()) {
+        throw new ZipException("unexpected end of archive");
+      }
+      return buffer.slice((int) offset, length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+  }
+
+  private record SubSource(Source source, long offset, long size) implements Source {
+
+    @Override
+    public ByteBuffer read(long offset, int length) throws IOException {
+      if (offset < 0 || offset + length > size) {
+        throw new ZipException("unexpected end of archive");
+      }
+      return source.read(this.offset + offset, length);
+    }
+  }
+}
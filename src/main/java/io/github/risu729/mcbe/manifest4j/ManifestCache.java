@@ -0,0 +1,351 @@
+/*
+ * Copyright (c) 2022 Risu
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.github.risu729.mcbe.manifest4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.Set;
+
+// caches parsed manifests by path, entries are reused only while the modified time and the size
+// of the file are unchanged
+// eviction is least recently used, but a new entry is admitted only if it is read more often
+// than the entry it would evict, so that a scan of many files does not flush frequently read ones
+public final class ManifestCache implements Closeable {
+
+  private static final int DEFAULT_MAXIMUM_SIZE = 1024;
+
+  private final ManifestCodec codec;
+  private final int maximumSize;
+  private final long maximumBytes;
+  // in access order, the eldest is the least recently used
+  private final LinkedHashMap<Path, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private final FrequencySketch sketch;
+  private long bytes;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  private final LongAdder invalidations = new LongAdder();
+
+  // null if not watching
+  private final WatchService watchService;
+  private final Set<Path> watchedDirectories = new HashSet<>();
+
+  public static ManifestCache of() {
+    return new Builder().build();
+  }
+
+  public Manifest get(Path path) throws IOException {
+    var key = Objects.requireNonNull(path, "path must not be null").toAbsolutePath().normalize();
+    var attributes = Files.readAttributes(key, BasicFileAttributes.class);
+    var modified = attributes.lastModifiedTime();
+    long size = attributes.size();
+    synchronized (this) {
+      sketch.increment(key.hashCode());
+      var entry = entries.get(key);
+      if (entry != null && entry.size == size && entry.modified.equals(modified)) {
+        hits.increment();
+        return entry.manifest;
+      }
+    }
+    misses.increment();
+    // if the file is modified while reading, the modified time differs on the next read
+    var manifest = codec.decode(key);
+    put(key, new Entry(manifest, modified, size));
+    return manifest;
+  }
+
+  public synchronized void invalidate(Path path) {
+    var key = Objects.requireNonNull(path, "path must not be null").toAbsolutePath().normalize();
+    remove(key);
+  }
+
+  public synchronized void invalidateAll() {
+    invalidations.add(entries.size());
+    entries.clear();
+    bytes = 0;
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  public Stats stats() {
+    return new Stats(hits.sum(), misses.sum(), evictions.sum(), invalidations.sum());
+  }
+
+  // stops watching, the cache is still usable without invalidation by watching
+  @Override
+  public void close() throws IOException {
+    if (watchService != null) {
+      watchService.close();
+    }
+  }
+
+  public static final class Stats {
+
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long invalidations;
+
+    private Stats(long hits, long misses, long evictions, long invalidations) {
+      this.hits = hits;
+      this.misses = misses;
+      this.evictions = evictions;
+      this.invalidations = invalidations;
+    }
+
+    public long getHits() {
+      return hits;
+    }
+
+    public long getMisses() {
+      return misses;
+    }
+
+    // removed to make room for other entries
+    public long getEvictions() {
+      return evictions;
+    }
+
+    // removed by invalidate, invalidateAll or changes of the files
+    public long getInvalidations() {
+      return invalidations;
+    }
+
+    public double getHitRate() {
+      long requests = hits + misses;
+      return requests == 0 ? 1 : (double) hits / requests;
+    }
+  }
+
+  public static class Builder {
+
+    private ManifestCodec codec;
+    private Integer maximumSize;
+    private Long maximumBytes;
+    private boolean watch;
+
+    public Builder() {
+    }
+
+    public Builder codec(ManifestCodec codec) {
+      this.codec = codec;
+      return this;
+    }
+
+    // the maximum number of entries, 1024 by default if maximum bytes is not set either
+    public Builder maximumSize(Integer maximumSize) {
+      if (maximumSize != null && maximumSize < 1) {
+        throw new IllegalArgumentException("maximum size must be positive: " + maximumSize);
+      }
+      this.maximumSize = maximumSize;
+      return this;
+    }
+
+    // the maximum total size of the cached files, as an estimate of the memory used
+    public Builder maximumBytes(Long maximumBytes) {
+      if (maximumBytes != null && maximumBytes < 1) {
+        throw new IllegalArgumentException("maximum bytes must be positive: " + maximumBytes);
+      }
+      this.maximumBytes = maximumBytes;
+      return this;
+    }
+
+    // removes entries as soon as the files are changed, with a daemon thread
+    public Builder watch(boolean watch) {
+      this.watch = watch;
+      return this;
+    }
+
+    public ManifestCache build() {
+      return new ManifestCache(this);
+    }
+  }
+
+  private ManifestCache(Builder builder) {
+    this.codec = Objects.requireNonNullElse(builder.codec, ManifestCodec.gson());
+    this.maximumSize = builder.maximumSize == null
+        ? (builder.maximumBytes == null ? DEFAULT_MAXIMUM_SIZE : Integer.MAX_VALUE)
+        : builder.maximumSize;
+    this.maximumBytes = Objects.requireNonNullElse(builder.maximumBytes, Long.MAX_VALUE);
+    this.sketch = new FrequencySketch(Math.min(maximumSize, 1 << 20));
+    if (builder.watch) {
+      try {
+        this.watchService = FileSystems.getDefault().newWatchService();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      var thread = new Thread(this::watch, "manifest-cache-watcher");
+      thread.setDaemon(true);
+      thread.start();
+    } else {
+      this.watchService = null;
+    }
+  }
+
+  private synchronized void put(Path key, Entry entry) {
+    var previous = entries.remove(key);
+    if (previous != null) {
+      bytes -= previous.size;
+    }
+    if (entry.size > maximumBytes) {
+      return;
+    }
+    // every victim is chosen before any is evicted, so that a rejected entry evicts nothing
+    int frequency = sketch.frequency(key.hashCode());
+    int victims = 0;
+    long freed = 0;
+    for (var victim : entries.entrySet()) {
+      if (entries.size() - victims < maximumSize && bytes - freed + entry.size <= maximumBytes) {
+        break;
+      }
+      // a replaced entry was admitted before
+      if (previous == null && frequency <= sketch.frequency(victim.getKey().hashCode())) {
+        return;
+      }
+      victims++;
+      freed += victim.getValue().size;
+    }
+    var iterator = entries.values().iterator();
+    for (int i = 0; i < victims; i++) {
+      bytes -= iterator.next().size;
+      iterator.remove();
+      evictions.increment();
+    }
+    entries.put(key, entry);
+    bytes += entry.size;
+    register(key.getParent());
+  }
+
+  private void remove(Path key) {
+    var entry = entries.remove(key);
+    if (entry != null) {
+      bytes -= entry.size;
+      invalidations.increment();
+    }
+  }
+
+  private void register(Path directory) {
+    if (watchService == null || directory == null || watchedDirectories.contains(directory)) {
+      return;
+    }
+    try {
+      directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+          StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+      watchedDirectories.add(directory);
+    } catch (IOException | ClosedWatchServiceException e) {
+      // entries are still checked by the modified time and the size
+    }
+  }
+
+  private void watch() {
+    while (true) {
+      WatchKey key;
+      try {
+        key = watchService.take();
+      } catch (InterruptedException | ClosedWatchServiceException e) {
+        return;
+      }
+      var directory = (Path) key.watchable();
+      var events = key.pollEvents();
+      synchronized (this) {
+        for (var event : events) {
+          if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+            removeDirectory(directory);
+          } else {
+            remove(directory.resolve((Path) event.context()));
+          }
+        }
+        if (!key.reset()) {
+          watchedDirectories.remove(directory);
+          removeDirectory(directory);
+        }
+      }
+    }
+  }
+
+  private void removeDirectory(Path directory) {
+    var iterator = entries.entrySet().iterator();
+    while (iterator.hasNext()) {
+      var entry = iterator.next();
+      if (directory.equals(entry.getKey().getParent())) {
+        iterator.remove();
+        bytes -= entry.getValue().size;
+        invalidations.increment();
+      }
+    }
+  }
+
+  private record Entry(Manifest manifest, FileTime modified, long size) {
+  }
+
+  // count-min sketch of 4-bit counters, halved periodically so that old reads are forgotten
+  private static final class FrequencySketch {
+
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    private static final int[] SEEDS = {0x97cb3127, 0xb9cd94a1, 0xc2b2ae35, 0x27d4eb2f};
+
+    private final byte[] counters;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    private FrequencySketch(int expectedSize) {
+      int width = Integer.highestOneBit(Math.max(expectedSize, 16) * 2 - 1) << 1;
+      this.counters = new byte[width * DEPTH];
+      this.mask = width - 1;
+      this.sampleSize = width * 10;
+    }
+
+    private void increment(int hash) {
+      for (int i = 0; i < DEPTH; i++) {
+        int index = index(hash, i);
+        if (counters[index] < MAX_COUNT) {
+          counters[index]++;
+        }
+      }
+      if (++additions == sampleSize) {
+        for (int i = 0; i < counters.length; i++) {
+          counters[i] >>= 1;
+        }
+        additions /= 2;
+      }
+    }
+
+    private int frequency(int hash) {
+      int frequency = MAX_COUNT;
+      for (int i = 0; i < DEPTH; i++) {
+        frequency = Math.min(frequency, counters[index(hash, i)]);
+      }
+      return frequency;
+    }
+
+    private int index(int hash, int row) {
+      int h = hash * SEEDS[row];
+      h ^= h >>> 16;
+      return row * (mask + 1) + (h & mask);
+    }
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2022 Risu
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.github.risu729.mcbe.manifest4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+
+// converts manifests from and to bytes, UTF-8 JSON unless otherwise noted
+// implementations must be thread-safe
+public interface ManifestCodec {
+
+  // the default, same as Manifest.fromJson and Manifest.toJson
+  static ManifestCodec gson() {
+    return GsonManifestCodec.INSTANCE;
+  }
+
+  // same as Manifest.fromJson with validate
+  static ManifestCodec gson(boolean validate) {
+    return validate ? GsonManifestCodec.VALIDATING : GsonManifestCodec.INSTANCE;
+  }
+
+  // tokenizes bytes directly against the schema of manifest.json, and falls back to Gson
+  // for anything unusual such as comments or malformed JSON
+  // produces the same manifests and throws the same exceptions as gson()
+  static ManifestCodec utf8() {
+    return Utf8ManifestCodec.INSTANCE;
+  }
+
+  // a compact binary form, not JSON, which keeps the manifests exactly as they are
+  // decodes only what was encoded by the same format version
+  static ManifestCodec binary() {
+    return BinaryManifestCodec.INSTANCE;
+  }
+
+  // decodes from the position to the limit, without changing them
+  Manifest decode(ByteBuffer input);
+
+  default Manifest decode(byte[] input) {
+    Objects.requireNonNull(input, "input must not be null");
+    return decode(ByteBuffer.wrap(input));
+  }
+
+  default Manifest decode(Path path) throws IOException {
+    Objects.requireNonNull(path, "path must not be null");
+    return decode(Files.readAllBytes(path));
+  }
+
+  // the stream is flushed but not closed
+  void encode(Manifest manifest, OutputStream out);
+
+  default byte[] encode(Manifest manifest) {
+    var out = new ByteArrayOutputStream();
+    encode(manifest, out);
+    return out.toByteArray();
+  }
+}
@@ -0,0 +1,450 @@
+/*
+ * Copyright (c) 2022 Risu
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.github.risu729.mcbe.manifest4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import io.github.risu729.mcbe.manifest4j.concurrent.BoundedTasks;
+
+// applies an edit to many manifest.json files concurrently, and rewrites only the files of which
+// the canonical JSON changes
+// each file is replaced by renaming a temporary file in the same directory over it, so a file is
+// never seen half written, and after a crash a file is either old or new, or a temporary file
+// named ".manifest-*.tmp" is left beside it
+// the temporary files are synced by the threads writing them, and the directories are synced
+// once for every batch of renames, instead of once for each file
+public final class ManifestEditor {
+
+  private static final int DEFAULT_BATCH_SIZE = 256;
+
+  private static final String TEMP_PREFIX = ".manifest-";
+  private static final String TEMP_SUFFIX = ".tmp";
+
+  private final ManifestCodec codec;
+  private final Executor executor;
+  private final int parallelism;
+  private final int batchSize;
+  private final boolean sync;
+  private final boolean dryRun;
+
+  public static ManifestEditor of() {
+    return new Builder().build();
+  }
+
+  // edits the builder of a manifest, which is filled with the manifest
+  @FunctionalInterface
+  public interface Edit {
+
+    void apply(Manifest manifest, Manifest.Builder builder);
+
+    default Edit andThen(Edit after) {
+      Objects.requireNonNull(after, "edit must not be null");
+      return (manifest, builder) -> {
+        apply(manifest, builder);
+        after.apply(manifest, builder);
+      };
+    }
+  }
+
+  // increments the patch version of the header, 1.0.0 is assumed if there is no version
+  public static Edit bumpVersion() {
+    return (manifest, builder) -> {
+      var header = requireHeader(manifest);
+      var version = Objects.requireNonNullElse(header.getVersion(), SemVer.DEFAULT);
+      builder.header(new Header.Builder(header)
+          .version(SemVer.of(version.getMajor(), version.getMinor(), version.getPatch() + 1))
+          .build());
+    };
+  }
+
+  // sets min_engine_version of the header if it is lower or not set
+  public static Edit raiseMinEngineVersion(SemVer minEngineVersion) {
+    Objects.requireNonNull(minEngineVersion, "min_engine_version must not be null");
+    return (manifest, builder) -> {
+      var header = requireHeader(manifest);
+      var current = header.getMinEngineVersion();
+      if (current == null || current.compareTo(minEngineVersion) < 0) {
+        builder.header(new Header.Builder(header).minEngineVersion(minEngineVersion).build());
+      }
+    };
+  }
+
+  // replaces generated_with of the same name, and creates the metadata if absent
+  public static Edit addGeneratedWith(Metadata.GeneratedWith generatedWith) {
+    Objects.requireNonNull(generatedWith, "generated_with must not be null");
+    return (manifest, builder) -> {
+      var metadata = manifest.getMetadata();
+      var entries = new ArrayList<Metadata.GeneratedWith>();
+      if (metadata != null && metadata.getGeneratedWith() != null) {
+        for (var e : metadata.getGeneratedWith()) {
+          if (!e.getName().equals(generatedWith.getName())) {
+            entries.add(e);
+          }
+        }
+      }
+      entries.add(generatedWith);
+      var metadataBuilder =
+          metadata == null ? new Metadata.Builder() : new Metadata.Builder(metadata);
+      builder.metadata(metadataBuilder.generatedWith(entries).build());
+    };
+  }
+
+  private static Header requireHeader(Manifest manifest) {
+    return Objects.requireNonNull(manifest.getHeader(), "header is necessary");
+  }
+
+  public Result edit(Path file, Edit edit) throws InterruptedException {
+    return edit(Set.of(Objects.requireNonNull(file, "file must not be null")), edit);
+  }
+
+  // a file given more than once is edited once
+  public Result edit(Collection<Path> files, Edit edit) throws InterruptedException {
+    Objects.requireNonNull(edit, "edit must not be null");
+    return run(files, edit);
+  }
+
+  // rewrites the files which differ from what the codec writes, such as in whitespace
+  // the manifests are written as they are read, without the checks and defaults of the builders
+  public Result reformat(Collection<Path> files) throws InterruptedException {
+    return run(files, null);
+  }
+
+  // reformats if the edit is null
+  private Result run(Collection<Path> files, Edit edit) throws InterruptedException {
+    Objects.requireNonNull(files, "files must not be null");
+    var distinct = new LinkedHashSet<Path>();
+    for (var e : files) {
+      distinct.add(Objects.requireNonNull(e, "file must not be null"));
+    }
+    ExecutorService ownExecutor = null;
+    var executor = this.executor;
+    if (executor == null) {
+      ownExecutor = BoundedTasks.newThreadPool("manifest-editor", parallelism);
+      executor = ownExecutor;
+    }
+    try {
+      var run = new Run(executor, edit);
+      try {
+        for (var file : distinct) {
+          run.submit(file);
+        }
+        return run.await();
+      } catch (InterruptedException | RuntimeException | Error e) {
+        run.discard();
+        throw e;
+      }
+    } finally {
+      if (ownExecutor != null) {
+        ownExecutor.shutdownNow();
+      }
+    }
+  }
+
+  public static final class Result {
+
+    private final Map<Path, Manifest> changed;
+    private final Set<Path> unchanged;
+    private final Map<Path, Exception> errors;
+
+    private Result(Map<Path, Manifest> changed, Set<Path> unchanged,
+        Map<Path, Exception> errors) {
+      this.changed = Collections.unmodifiableMap(new TreeMap<>(changed));
+      this.unchanged = Collections.unmodifiableSet(new TreeSet<>(unchanged));
+      this.errors = Collections.unmodifiableMap(new TreeMap<>(errors));
+    }
+
+    // the files rewritten, with the new manifests, sorted by path
+    public Map<Path, Manifest> getChanged() {
+      return changed;
+    }
+
+    // the files left as they are, as the edit did not change them
+    public Set<Path> getUnchanged() {
+      return unchanged;
+    }
+
+    // the files which could not be read, edited or written, which are left as they are
+    public Map<Path, Exception> getErrors() {
+      return errors;
+    }
+  }
+
+  public static class Builder {
+
+    private ManifestCodec codec;
+    private Executor executor;
+    private Integer parallelism;
+    private Integer batchSize;
+    private boolean sync = true;
+    private boolean dryRun;
+
+    public Builder() {
+    }
+
+    // reads and writes the files, gson() if null
+    public Builder codec(ManifestCodec codec) {
+      this.codec = codec;
+      return this;
+    }
+
+    // reads and rewrites the files, and is left running after an edit
+    // if null, a fixed thread pool of the parallelism is created for each edit
+    public Builder executor(Executor executor) {
+      this.executor = executor;
+      return this;
+    }
+
+    // the maximum number of files edited at the same time
+    public Builder parallelism(Integer parallelism) {
+      if (parallelism != null && parallelism < 1) {
+        throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+      }
+      this.parallelism = parallelism;
+      return this;
+    }
+
+    // the number of files renamed before the directories are synced
+    public Builder batchSize(Integer batchSize) {
+      if (batchSize != null && batchSize < 1) {
+        throw new IllegalArgumentException("batch size must be positive: " + batchSize);
+      }
+      this.batchSize = batchSize;
+      return this;
+    }
+
+    // whether the files and directories are synced to the storage device, true by default
+    // without syncing, a crash may leave files empty even though they were renamed
+    public Builder sync(boolean sync) {
+      this.sync = sync;
+      return this;
+    }
+
+    // whether the files are left as they are, and only reported in getChanged, false by default
+    public Builder dryRun(boolean dryRun) {
+      this.dryRun = dryRun;
+      return this;
+    }
+
+    public ManifestEditor build() {
+      return new ManifestEditor(this);
+    }
+  }
+
+  private ManifestEditor(Builder builder) {
+    this.codec = Objects.requireNonNullElse(builder.codec, ManifestCodec.gson());
+    this.executor = builder.executor;
+    this.parallelism =
+        Objects.requireNonNullElse(builder.parallelism, BoundedTasks.DEFAULT_PARALLELISM);
+    this.batchSize = Objects.requireNonNullElse(builder.batchSize, DEFAULT_BATCH_SIZE);
+    this.sync = builder.sync;
+    this.dryRun = builder.dryRun;
+  }
+
+  private final class Run {
+
+    private final BoundedTasks tasks;
+    // null to reformat
+    private final Edit edit;
+    private final Map<Path, Manifest> changed = new ConcurrentHashMap<>();
+    private final Set<Path> unchanged = ConcurrentHashMap.newKeySet();
+    private final Map<Path, Exception> errors = new ConcurrentHashMap<>();
+    // written temporary files waiting to be renamed, guarded by this
+    private final List<Pending> pending = new ArrayList<>();
+
+    private Run(Executor executor, Edit edit) {
+      this.tasks = new BoundedTasks(executor, parallelism);
+      this.edit = edit;
+    }
+
+    private void submit(Path file) throws InterruptedException {
+      tasks.submit(() -> {
+        try {
+          rewrite(file);
+        } catch (IOException | RuntimeException e) {
+          errors.put(file, e);
+        }
+      });
+      List<Pending> batch = null;
+      synchronized (this) {
+        if (pending.size() >= batchSize) {
+          batch = new ArrayList<>(pending);
+          pending.clear();
+        }
+      }
+      if (batch != null) {
+        commit(batch);
+      }
+    }
+
+    private void rewrite(Path file) throws IOException {
+      Manifest edited;
+      byte[] encoded;
+      if (edit == null) {
+        var original = Files.readAllBytes(file);
+        edited = codec.decode(original);
+        encoded = codec.encode(edited);
+        if (Arrays.equals(encoded, original)) {
+          unchanged.add(file);
+          return;
+        }
+      } else {
+        var manifest = codec.decode(file);
+        var builder = new Manifest.Builder(manifest);
+        edit.apply(manifest, builder);
+        edited = builder.build();
+        if (edited.toCanonicalJson().equals(manifest.toCanonicalJson())) {
+          unchanged.add(file);
+          return;
+        }
+        encoded = null;
+      }
+      if (dryRun) {
+        changed.put(file, edited);
+        return;
+      }
+      if (encoded == null) {
+        encoded = codec.encode(edited);
+      }
+      var temp = writeTemporary(file, encoded, sync);
+      synchronized (this) {
+        pending.add(new Pending(file, temp, edited));
+      }
+    }
+
+    // renames the temporary files, and then syncs each of their directories once
+    private void commit(List<Pending> batch) {
+      var directories = new LinkedHashSet<Path>();
+      for (var e : batch) {
+        try {
+          Files.move(e.temp, e.file, StandardCopyOption.ATOMIC_MOVE,
+              StandardCopyOption.REPLACE_EXISTING);
+          changed.put(e.file, e.manifest);
+          directories.add(e.temp.getParent());
+        } catch (IOException | RuntimeException ex) {
+          errors.put(e.file, ex);
+          try {
+            Files.deleteIfExists(e.temp);
+          } catch (IOException suppressed) {
+            ex.addSuppressed(suppressed);
+          }
+        }
+      }
+      if (!sync) {
+        return;
+      }
+      for (var directory : directories) {
+        syncDirectory(directory);
+      }
+    }
+
+    // deletes the temporary files not renamed yet, when the edit is abandoned
+    private void discard() {
+      List<Pending> batch;
+      synchronized (this) {
+        batch = new ArrayList<>(pending);
+        pending.clear();
+      }
+      for (var e : batch) {
+        try {
+          Files.deleteIfExists(e.temp);
+        } catch (IOException ex) {
+          // left behind, as after a crash
+        }
+      }
+    }
+
+    private Result await() throws InterruptedException {
+      tasks.await();
+      List<Pending> batch;
+      synchronized (this) {
+        batch = new ArrayList<>(pending);
+        pending.clear();
+      }
+      commit(batch);
+      return new Result(changed, unchanged, errors);
+    }
+  }
+
+  private record Pending(Path file, Path temp, Manifest manifest) {
+  }
+
+  // writes the bytes to a new temporary file beside the file, to be renamed over it
+  static Path writeTemporary(Path file, byte[] bytes, boolean sync) throws IOException {
+    var temp = createTemporary(file);
+    try (var channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+      var buffer = ByteBuffer.wrap(bytes);
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      if (sync) {
+        channel.force(true);
+      }
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(temp);
+      throw e;
+    }
+    return temp;
+  }
+
+  // an empty temporary file beside the file, with the permissions of the file if it exists
+  static Path createTemporary(Path file) throws IOException {
+    var directory = file.toAbsolutePath().getParent();
+    while (true) {
+      var temp = directory.resolve(TEMP_PREFIX
+          + Long.toUnsignedString(ThreadLocalRandom.current().nextLong()) + TEMP_SUFFIX);
+      try {
+        // unlike createTempFile, which makes the file readable only by the owner, the default
+        // permissions of new files are applied
+        Files.createFile(temp);
+      } catch (FileAlreadyExistsException e) {
+        continue;
+      }
+      try {
+        Files.setPosixFilePermissions(temp, Files.getPosixFilePermissions(file));
+      } catch (NoSuchFileException | UnsupportedOperationException e) {
+        // a new file, or not a POSIX file system
+      } catch (IOException | RuntimeException e) {
+        Files.deleteIfExists(temp);
+        throw e;
+      }
+      return temp;
+    }
+  }
+
+  static void syncDirectory(Path directory) {
+    try (var channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+      channel.force(true);
+    } catch (IOException e) {
+      // directories cannot be opened on some platforms such as Windows, where renames are
+      // durable without syncing the directory
+    }
+  }
+}
@@ -0,0 +1,425 @@
+/*
+ * Copyright (c) 2022 Risu
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.github.risu729.mcbe.manifest4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.Deque;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+import io.github.risu729.mcbe.manifest4j.concurrent.BoundedTasks;
+
+// loads and writes manifests without blocking the caller, for example in a non-blocking server
+// at most the parallelism of operations are in flight, the others wait in a queue rather than
+// on a thread, so that a burst of requests neither blocks nor piles up threads
+public final class ManifestFiles {
+
+  // the operations started by the current thread, run one after another instead of nested when
+  // an operation completes at once and starts the next, such as a file which does not exist
+  private static final ThreadLocal<Deque<Runnable>> STARTING = new ThreadLocal<>();
+
+  private final ManifestCodec codec;
+  private final Executor executor;
+  private final int parallelism;
+  private final boolean sync;
+
+  // the operations waiting for one in flight to complete
+  private final Deque<Runnable> queue = new ArrayDeque<>();
+  private int running;
+
+  public static ManifestFiles of() {
+    return new Builder().build();
+  }
+
+  public CompletableFuture<Manifest> loadAsync(Path file) {
+    Objects.requireNonNull(file, "file must not be null");
+    return submit(() -> executor == null ? read(file) : supply(() -> codec.decode(file)));
+  }
+
+  // never completes exceptionally for a file which could not be read or parsed, but records it
+  public CompletableFuture<Result> loadAllAsync(Collection<Path> files) {
+    Objects.requireNonNull(files, "files must not be null");
+    var copy = new ArrayList<>(files);
+    for (var e : copy) {
+      Objects.requireNonNull(e, "file must not be null");
+    }
+    var manifests = new ConcurrentHashMap<Path, Manifest>();
+    var errors = new ConcurrentHashMap<Path, Exception>();
+    var futures = new CompletableFuture<?>[copy.size()];
+    for (int i = 0; i < futures.length; i++) {
+      var file = copy.get(i);
+      futures[i] = loadAsync(file).handle((manifest, e) -> {
+        if (e == null) {
+          // null for an empty file or the literal null
+          if (manifest == null) {
+            errors.put(file, new IllegalStateException("no manifest in the file"));
+          } else {
+            manifests.put(file, manifest);
+          }
+          return null;
+        }
+        if (e instanceof CompletionException && e.getCause() != null) {
+          e = e.getCause();
+        }
+        // errors fail the whole load
+        if (!(e instanceof Exception exception)) {
+          throw new CompletionException(e);
+        }
+        errors.put(file, exception);
+        return null;
+      });
+    }
+    return CompletableFuture.allOf(futures).thenApply(v -> new Result(manifests, errors));
+  }
+
+  // replaces the file atomically, so that readers see either the old or the new manifest
+  public CompletableFuture<Void> writeAsync(Path file, Manifest manifest) {
+    Objects.requireNonNull(file, "file must not be null");
+    Objects.requireNonNull(manifest, "manifest must not be null");
+    if (executor == null) {
+      return submit(() -> write(file, manifest));
+    }
+    return submit(() -> supply(() -> {
+      var temp = ManifestEditor.writeTemporary(file, codec.encode(manifest), sync);
+      replace(temp, file);
+      return null;
+    }));
+  }
+
+  public static final class Result {
+
+    private final Map<Path, Manifest> manifests;
+    private final Map<Path, Exception> errors;
+
+    private Result(Map<Path, Manifest> manifests, Map<Path, Exception> errors) {
+      this.manifests = Collections.unmodifiableMap(new TreeMap<>(manifests));
+      this.errors = Collections.unmodifiableMap(new TreeMap<>(errors));
+    }
+
+    // sorted by path
+    public Map<Path, Manifest> getManifests() {
+      return manifests;
+    }
+
+    // files which could not be read or parsed
+    public Map<Path, Exception> getErrors() {
+      return errors;
+    }
+  }
+
+  public static class Builder {
+
+    private ManifestCodec codec;
+    private Executor executor;
+    private Integer parallelism;
+    private Boolean sync;
+
+    public Builder() {
+    }
+
+    public Builder codec(ManifestCodec codec) {
+      this.codec = codec;
+      return this;
+    }
+
+    // runs the blocking reads and writes, and is left running
+    // if null, files are read and written by AsynchronousFileChannel, whose threads also decode
+    // the manifests, and only opening a file blocks the thread starting the operation
+    public Builder executor(Executor executor) {
+      this.executor = executor;
+      return this;
+    }
+
+    // the maximum number of operations in flight
+    public Builder parallelism(Integer parallelism) {
+      if (parallelism != null && parallelism < 1) {
+        throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+      }
+      this.parallelism = parallelism;
+      return this;
+    }
+
+    // whether written files are synced to the disk before the futures complete, true by default
+    public Builder sync(Boolean sync) {
+      this.sync = sync;
+      return this;
+    }
+
+    public ManifestFiles build() {
+      return new ManifestFiles(this);
+    }
+  }
+
+  private ManifestFiles(Builder builder) {
+    this.codec = Objects.requireNonNullElse(builder.codec, ManifestCodec.gson());
+    this.executor = builder.executor;
+    this.parallelism =
+        Objects.requireNonNullElse(builder.parallelism, BoundedTasks.DEFAULT_PARALLELISM);
+    this.sync = Objects.requireNonNullElse(builder.sync, true);
+  }
+
+  // starts the operation if fewer than the parallelism are in flight, or queues it
+  private <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> operation) {
+    var future = new CompletableFuture<T>();
+    Runnable start = () -> {
+      CompletableFuture<T> started;
+      try {
+        started = operation.get();
+      } catch (RuntimeException | Error e) {
+        started = CompletableFuture.failedFuture(e);
+      }
+      started.whenComplete((value, e) -> {
+        var next = release();
+        if (e == null) {
+          future.complete(value);
+        } else {
+          future.completeExceptionally(e);
+        }
+        if (next != null) {
+          start(next);
+        }
+      });
+    };
+    synchronized (this) {
+      if (running >= parallelism) {
+        queue.add(start);
+        return future;
+      }
+      running++;
+    }
+    start(start);
+    return future;
+  }
+
+  // the next operation, which takes over the slot of the completed one, or null
+  private synchronized Runnable release() {
+    var next = queue.poll();
+    if (next == null) {
+      running--;
+    }
+    return next;
+  }
+
+  private static void start(Runnable operation) {
+    var starting = STARTING.get();
+    if (starting != null) {
+      starting.add(operation);
+      return;
+    }
+    starting = new ArrayDeque<>();
+    STARTING.set(starting);
+    try {
+      for (var e = operation; e != null; e = starting.poll()) {
+        e.run();
+      }
+    } finally {
+      STARTING.remove();
+    }
+  }
+
+  private <T> CompletableFuture<T> supply(IOSupplier<T> supplier) {
+    var future = new CompletableFuture<T>();
+    try {
+      executor.execute(() -> {
+        try {
+          future.complete(supplier.get());
+        } catch (IOException | RuntimeException | Error e) {
+          future.completeExceptionally(e);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+
+  private CompletableFuture<Manifest> read(Path file) {
+    var future = new CompletableFuture<Manifest>();
+    AsynchronousFileChannel channel;
+    try {
+      channel = AsynchronousFileChannel.open(file, StandardOpenOption.READ);
+    } catch (IOException | RuntimeException e) {
+      future.completeExceptionally(e);
+      return future;
+    }
+    try {
+      long size = channel.size();
+      // the same limit as Files.readAllBytes
+      if (size > Integer.MAX_VALUE - 8) {
+        throw new IOException("file is too large: " + file);
+      }
+      new Read(channel, ByteBuffer.allocate((int) size), future).next();
+    } catch (IOException | RuntimeException e) {
+      close(channel, e);
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+
+  private CompletableFuture<Void> write(Path file, Manifest manifest) {
+    var future = new CompletableFuture<Void>();
+    Path temp;
+    try {
+      var buffer = ByteBuffer.wrap(codec.encode(manifest));
+      temp = ManifestEditor.createTemporary(file);
+      AsynchronousFileChannel channel;
+      try {
+        channel = AsynchronousFileChannel.open(temp, StandardOpenOption.WRITE);
+      } catch (IOException | RuntimeException e) {
+        delete(temp, e);
+        throw e;
+      }
+      new Write(channel, buffer, file, temp, future).next();
+    } catch (IOException | RuntimeException e) {
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+
+  private void replace(Path temp, Path file) throws IOException {
+    try {
+      Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException | RuntimeException e) {
+      delete(temp, e);
+      throw e;
+    }
+    if (sync) {
+      ManifestEditor.syncDirectory(temp.getParent());
+    }
+  }
+
+  private static void close(AsynchronousFileChannel channel, Throwable exception) {
+    try {
+      channel.close();
+    } catch (IOException e) {
+      exception.addSuppressed(e);
+    }
+  }
+
+  private static void delete(Path temp, Throwable exception) {
+    try {
+      Files.deleteIfExists(temp);
+    } catch (IOException e) {
+      exception.addSuppressed(e);
+    }
+  }
+
+  // reads until the buffer is full, as the size of the file when opened, or the end of the file
+  private final class Read implements CompletionHandler<Integer, Void> {
+
+    private final AsynchronousFileChannel channel;
+    private final ByteBuffer buffer;
+    private final CompletableFuture<Manifest> future;
+
+    private Read(AsynchronousFileChannel channel, ByteBuffer buffer,
+        CompletableFuture<Manifest> future) {
+      this.channel = channel;
+      this.buffer = buffer;
+      this.future = future;
+    }
+
+    private void next() throws IOException {
+      if (buffer.hasRemaining()) {
+        channel.read(buffer, buffer.position(), null, this);
+        return;
+      }
+      channel.close();
+      future.complete(codec.decode(buffer.flip()));
+    }
+
+    @Override
+    public void completed(Integer count, Void attachment) {
+      try {
+        if (count < 0) {
+          // truncated while read
+          buffer.limit(buffer.position());
+        }
+        next();
+      } catch (IOException | RuntimeException | Error e) {
+        failed(e, attachment);
+      }
+    }
+
+    @Override
+    public void failed(Throwable exception, Void attachment) {
+      close(channel, exception);
+      future.completeExceptionally(exception);
+    }
+  }
+
+  private final class Write implements CompletionHandler<Integer, Void> {
+
+    private final AsynchronousFileChannel channel;
+    private final ByteBuffer buffer;
+    private final Path file;
+    private final Path temp;
+    private final CompletableFuture<Void> future;
+
+    private Write(AsynchronousFileChannel channel, ByteBuffer buffer, Path file, Path temp,
+        CompletableFuture<Void> future) {
+      this.channel = channel;
+      this.buffer = buffer;
+      this.file = file;
+      this.temp = temp;
+      this.future = future;
+    }
+
+    private void next() throws IOException {
+      if (buffer.hasRemaining()) {
+        channel.write(buffer, buffer.position(), null, this);
+        return;
+      }
+      if (sync) {
+        channel.force(true);
+      }
+      channel.close();
+      replace(temp, file);
+      future.complete(null);
+    }
+
+    @Override
+    public void completed(Integer count, Void attachment) {
+      try {
+        next();
+      } catch (IOException | RuntimeException | Error e) {
+        failed(e, attachment);
+      }
+    }
+
+    @Override
+    public void failed(Throwable exception, Void attachment) {
+      close(channel, exception);
+      delete(temp, exception);
+      future.completeExceptionally(exception);
+    }
+  }
+
+  @FunctionalInterface
+  private interface IOSupplier<T> {
+
+    T get() throws IOException;
+  }
+}
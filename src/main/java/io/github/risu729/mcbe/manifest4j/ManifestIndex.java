@@ -0,0 +1,383 @@
+/*
+ * Copyright (c) 2022 Risu
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.github.risu729.mcbe.manifest4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+// a file of manifests sorted by the UUID and version in their headers, which is memory-mapped
+// and searched in place, so that opening it takes the same time however many manifests it has
+// a manifest is decoded from its binary form only when requested, and is not cached
+// the file must not be modified in place while opened, write replaces it instead
+public final class ManifestIndex {
+
+  // "M4JI"
+  private static final int MAGIC = 0x4d344a49;
+  private static final int FORMAT_VERSION = 1;
+
+  // magic, format version, count and padding, then the entries
+  private static final int HEADER_SIZE = 16;
+
+  // UUID, offset and length of the manifest in the data, flags, version and module types
+  private static final int ENTRY_SIZE = 48;
+  private static final int MOST = 0;
+  private static final int LEAST = 8;
+  private static final int OFFSET = 16;
+  private static final int LENGTH = 24;
+  private static final int FLAGS = 28;
+  private static final int MAJOR = 32;
+  private static final int MINOR = 36;
+  private static final int PATCH = 40;
+  private static final int TYPES = 44;
+
+  private static final int HAS_VERSION = 1;
+
+  // a buffer maps at most 2GB, so the data is split into segments which no manifest crosses
+  private static final int SEGMENT_SIZE = 1 << 30;
+
+  private static final Module_.Type[] TYPE_VALUES = Module_.Type.values();
+
+  private static final Comparator<Manifest> ORDER = Comparator
+      .comparing((Manifest e) -> e.getHeader().getUUID())
+      .thenComparing(e -> e.getHeader().getVersion(),
+          Comparator.nullsFirst(Comparator.naturalOrder()));
+
+  private final ByteBuffer entries;
+  private final ByteBuffer[] segments;
+  private final int size;
+
+  private ManifestIndex(ByteBuffer entries, ByteBuffer[] segments, int size) {
+    this.entries = entries;
+    this.segments = segments;
+    this.size = size;
+  }
+
+  // manifests with the same UUID and version are written once, the last one wins
+  // written to a temporary file which is renamed over the file, so that an index opened before
+  // keeps its mapping of the old file, and an interrupted write leaves the old file
+  public static void write(Collection<Manifest> manifests, Path file) throws IOException {
+    Objects.requireNonNull(manifests, "manifests must not be null");
+    Objects.requireNonNull(file, "file must not be null");
+    var sorted = new ArrayList<Manifest>(manifests.size());
+    for (var manifest : manifests) {
+      Objects.requireNonNull(manifest, "manifest must not be null");
+      var header = manifest.getHeader();
+      if (header == null || header.getUUID() == null) {
+        throw new IllegalArgumentException("header UUID must not be null: " + manifest);
+      }
+      sorted.add(manifest);
+    }
+    // stable, so the last of the equal manifests stays last
+    sorted.sort(ORDER);
+    int count = 0;
+    for (int i = 0; i < sorted.size(); i++) {
+      if (i + 1 < sorted.size() && ORDER.compare(sorted.get(i), sorted.get(i + 1)) == 0) {
+        continue;
+      }
+      sorted.set(count++, sorted.get(i));
+    }
+    if ((long) count * ENTRY_SIZE > Integer.MAX_VALUE - HEADER_SIZE) {
+      throw new IllegalArgumentException("too many manifests: " + count);
+    }
+
+    long dataStart = HEADER_SIZE + (long) count * ENTRY_SIZE;
+    var table = ByteBuffer.allocate(count * ENTRY_SIZE);
+    var temp = ManifestEditor.createTemporary(file);
+    try (var channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+      var buffer = ByteBuffer.allocate(1 << 16);
+      long offset = 0;
+      channel.position(dataStart);
+      for (int i = 0; i < count; i++) {
+        var manifest = sorted.get(i);
+        var bytes = BinaryManifestCodec.INSTANCE.encode(manifest);
+        if (bytes.length > SEGMENT_SIZE) {
+          throw new IllegalArgumentException("manifest too large: " + manifest);
+        }
+        // skips to the next segment, the gap is left unwritten
+        long remaining = SEGMENT_SIZE - offset % SEGMENT_SIZE;
+        if (bytes.length > remaining) {
+          write(channel, buffer.flip());
+          buffer.clear();
+          channel.position(channel.position() + remaining);
+          offset += remaining;
+        }
+        putEntry(table, manifest, offset, bytes.length);
+        if (bytes.length > buffer.remaining()) {
+          write(channel, buffer.flip());
+          buffer.clear();
+        }
+        if (bytes.length > buffer.remaining()) {
+          write(channel, ByteBuffer.wrap(bytes));
+        } else {
+          buffer.put(bytes);
+        }
+        offset += bytes.length;
+      }
+      write(channel, buffer.flip());
+      channel.position(HEADER_SIZE);
+      write(channel, table.flip());
+      channel.position(0);
+      write(channel, ByteBuffer.allocate(HEADER_SIZE)
+          .putInt(MAGIC)
+          .putInt(FORMAT_VERSION)
+          .putInt(count)
+          .rewind());
+      channel.force(true);
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(temp);
+      throw e;
+    }
+    try {
+      Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(temp);
+      throw e;
+    }
+    ManifestEditor.syncDirectory(temp.getParent());
+  }
+
+  private static void putEntry(ByteBuffer table, Manifest manifest, long offset, int length) {
+    var header = manifest.getHeader();
+    var uuid = header.getUUID();
+    var version = header.getVersion();
+    int types = 0;
+    if (manifest.getModules() != null) {
+      for (var module : manifest.getModules()) {
+        if (module.getType() != null) {
+          types |= 1 << module.getType().ordinal();
+        }
+      }
+    }
+    table.putLong(uuid.getMostSignificantBits())
+        .putLong(uuid.getLeastSignificantBits())
+        .putLong(offset)
+        .putInt(length)
+        .putInt(version == null ? 0 : HAS_VERSION)
+        .putInt(version == null ? 0 : version.getMajor())
+        .putInt(version == null ? 0 : version.getMinor())
+        .putInt(version == null ? 0 : version.getPatch())
+        .putInt(types);
+  }
+
+  private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  // maps the file, nothing is read but the header
+  public static ManifestIndex open(Path file) throws IOException {
+    Objects.requireNonNull(file, "file must not be null");
+    try (var channel = FileChannel.open(file)) {
+      long fileSize = channel.size();
+      if (fileSize < HEADER_SIZE) {
+        throw new IOException("not a manifest index: " + file);
+      }
+      var header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+      if (header.getInt(0) != MAGIC) {
+        throw new IOException("not a manifest index: " + file);
+      }
+      if (header.getInt(4) != FORMAT_VERSION) {
+        throw new IOException("unsupported format version of manifest index: "
+            + header.getInt(4) + ": " + file);
+      }
+      int size = header.getInt(8);
+      long dataStart = HEADER_SIZE + (long) size * ENTRY_SIZE;
+      if (size < 0 || dataStart > fileSize) {
+        throw new IOException("corrupt manifest index: " + file);
+      }
+      var entries = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE,
+          (long) size * ENTRY_SIZE);
+      long dataSize = fileSize - dataStart;
+      var segments = new ByteBuffer[(int) ((dataSize + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+      for (int i = 0; i < segments.length; i++) {
+        long position = (long) i * SEGMENT_SIZE;
+        segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, dataStart + position,
+            Math.min(SEGMENT_SIZE, dataSize - position));
+      }
+      // the mappings stay valid after the channel is closed
+      return new ManifestIndex(entries, segments, size);
+    }
+  }
+
+  public int size() {
+    return size;
+  }
+
+  // entries are sorted by UUID, and then by version with the one without version first
+
+  public UUID getUUID(int index) {
+    int entry = entry(index);
+    return new UUID(entries.getLong(entry + MOST), entries.getLong(entry + LEAST));
+  }
+
+  // null if the manifest has no version
+  public SemVer getVersion(int index) {
+    int entry = entry(index);
+    if ((entries.getInt(entry + FLAGS) & HAS_VERSION) == 0) {
+      return null;
+    }
+    return SemVer.of(entries.getInt(entry + MAJOR), entries.getInt(entry + MINOR),
+        entries.getInt(entry + PATCH));
+  }
+
+  // the types of the modules, without decoding the manifest
+  public EnumSet<Module_.Type> getModuleTypes(int index) {
+    int types = entries.getInt(entry(index) + TYPES);
+    var set = EnumSet.noneOf(Module_.Type.class);
+    for (var e : TYPE_VALUES) {
+      if ((types & 1 << e.ordinal()) != 0) {
+        set.add(e);
+      }
+    }
+    return set;
+  }
+
+  // decodes the manifest
+  public Manifest getManifest(int index) {
+    int entry = entry(index);
+    long offset = entries.getLong(entry + OFFSET);
+    int length = entries.getInt(entry + LENGTH);
+    int segment = (int) (offset / SEGMENT_SIZE);
+    int position = (int) (offset % SEGMENT_SIZE);
+    if (offset < 0 || segment >= segments.length || length < 0
+        || length > segments[segment].capacity() - position) {
+      throw new IllegalStateException("corrupt manifest index: entry " + index);
+    }
+    return BinaryManifestCodec.INSTANCE.decode(segments[segment].slice(position, length));
+  }
+
+  // the index of the manifest, or -1 if not found
+  // version may be null for manifests without version
+  public int indexOf(UUID uuid, SemVer version) {
+    Objects.requireNonNull(uuid, "UUID must not be null");
+    long most = uuid.getMostSignificantBits();
+    long least = uuid.getLeastSignificantBits();
+    int index = lowerBound(most, least);
+    for (; index < size && compareUUID(index, most, least) == 0; index++) {
+      int result = compareVersion(index, version);
+      if (result == 0) {
+        return index;
+      }
+      if (result > 0) {
+        break;
+      }
+    }
+    return -1;
+  }
+
+  // null if not found
+  public Manifest get(UUID uuid, SemVer version) {
+    int index = indexOf(uuid, version);
+    return index < 0 ? null : getManifest(index);
+  }
+
+  // the manifest with the highest version, or null if not found
+  public Manifest getLatest(UUID uuid) {
+    Objects.requireNonNull(uuid, "UUID must not be null");
+    long most = uuid.getMostSignificantBits();
+    long least = uuid.getLeastSignificantBits();
+    int end = upperBound(most, least);
+    return end > 0 && compareUUID(end - 1, most, least) == 0 ? getManifest(end - 1) : null;
+  }
+
+  // every version of the UUID, sorted by version
+  public List<Manifest> getAll(UUID uuid) {
+    Objects.requireNonNull(uuid, "UUID must not be null");
+    long most = uuid.getMostSignificantBits();
+    long least = uuid.getLeastSignificantBits();
+    int begin = lowerBound(most, least);
+    int end = upperBound(most, least);
+    var list = new ArrayList<Manifest>(end - begin);
+    for (int i = begin; i < end; i++) {
+      list.add(getManifest(i));
+    }
+    return Collections.unmodifiableList(list);
+  }
+
+  public boolean contains(UUID uuid) {
+    Objects.requireNonNull(uuid, "UUID must not be null");
+    long most = uuid.getMostSignificantBits();
+    long least = uuid.getLeastSignificantBits();
+    int index = lowerBound(most, least);
+    return index < size && compareUUID(index, most, least) == 0;
+  }
+
+  // the first entry not less than the UUID
+  private int lowerBound(long most, long least) {
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (compareUUID(middle, most, least) < 0) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  // the first entry greater than the UUID
+  private int upperBound(long most, long least) {
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (compareUUID(middle, most, least) <= 0) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  // in the order of UUID.compareTo
+  private int compareUUID(int index, long most, long least) {
+    int entry = index * ENTRY_SIZE;
+    int result = Long.compare(entries.getLong(entry + MOST), most);
+    return result != 0 ? result : Long.compare(entries.getLong(entry + LEAST), least);
+  }
+
+  // in the order of SemVer.compareTo, with null first
+  private int compareVersion(int index, SemVer version) {
+    int entry = index * ENTRY_SIZE;
+    boolean hasVersion = (entries.getInt(entry + FLAGS) & HAS_VERSION) != 0;
+    if (!hasVersion || version == null) {
+      return Boolean.compare(hasVersion, version != null);
+    }
+    int major = entries.getInt(entry + MAJOR);
+    if (major != version.getMajor()) {
+      return Integer.compare(major, version.getMajor());
+    }
+    int minor = entries.getInt(entry + MINOR);
+    if (minor != version.getMinor()) {
+      return Integer.compare(minor, version.getMinor());
+    }
+    return Integer.compare(entries.getInt(entry + PATCH), version.getPatch());
+  }
+
+  private int entry(int index) {
+    Objects.checkIndex(index, size);
+    return index * ENTRY_SIZE;
+  }
+}
@@ -0,0 +1,389 @@
+/*
+ * Copyright (c) 2022 Risu
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.github.risu729.mcbe.manifest4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Objects;
+
+// canonicalizes equal immutable values, so that a value repeated across many manifests is kept
+// in memory once
+// values are held weakly, and are removed once nothing else refers to them
+// interning a manifest or a part of it interns every value in it, such as versions and strings
+public final class ManifestInterner {
+
+  private static final int STRIPES = 16;
+  private static final int STRIPE_SHIFT = Integer.SIZE - Integer.numberOfTrailingZeros(STRIPES);
+
+  private final Stripe[] stripes = new Stripe[STRIPES];
+
+  public static ManifestInterner of() {
+    return new ManifestInterner();
+  }
+
+  private ManifestInterner() {
+    for (int i = 0; i < STRIPES; i++) {
+      stripes[i] = new Stripe();
+    }
+  }
+
+  // null if the manifest is null
+  public Manifest intern(Manifest manifest) {
+    if (manifest == null) {
+      return null;
+    }
+    var canonical = lookup(manifest);
+    if (canonical != null) {
+      return canonical;
+    }
+    // the sets are always SortedArraySet, returned as they are by the getters
+    var modules = (SortedArraySet<Module_>) manifest.getModules();
+    var dependencies = (SortedArraySet<Dependency>) manifest.getDependencies();
+    var subpacks = (SortedArraySet<Subpack>) manifest.getSubpacks();
+    var header = intern(manifest.getHeader());
+    var internedModules = modules == null ? null : modules.map(this::intern);
+    var internedDependencies = dependencies == null ? null : dependencies.map(this::intern);
+    var metadata = intern(manifest.getMetadata());
+    var internedSubpacks = subpacks == null ? null : subpacks.map(this::intern);
+    if (header != manifest.getHeader() || internedModules != modules
+        || internedDependencies != dependencies || metadata != manifest.getMetadata()
+        || internedSubpacks != subpacks) {
+      manifest = new Manifest(manifest.getFormatVersion(), header, internedModules,
+          internedDependencies, manifest.getCapabilities(), metadata, internedSubpacks);
+    }
+    return add(manifest);
+  }
+
+  public Header intern(Header header) {
+    if (header == null) {
+      return null;
+    }
+    var canonical = lookup(header);
+    if (canonical != null) {
+      return canonical;
+    }
+    var name = intern(header.getName());
+    var description = intern(header.getDescription());
+    var version = intern(header.getVersion());
+    var minEngineVersion = intern(header.getMinEngineVersion());
+    var baseGameVersion = intern(header.getBaseGameVersion());
+    if (name != header.getName() || description != header.getDescription()
+        || version != header.getVersion() || minEngineVersion != header.getMinEngineVersion()
+        || baseGameVersion != header.getBaseGameVersion()) {
+      header = new Header(name, description, header.getUUID(), version, minEngineVersion,
+          header.getPlatformLocked(), header.getPackScope(), baseGameVersion,
+          header.getLockTemplateOptions());
+    }
+    return add(header);
+  }
+
+  public Module_ intern(Module_ module) {
+    if (module == null) {
+      return null;
+    }
+    var canonical = lookup(module);
+    if (canonical != null) {
+      return canonical;
+    }
+    var description = intern(module.getDescription());
+    var version = intern(module.getVersion());
+    var entry = intern(module.getEntry());
+    if (description != module.getDescription() || version != module.getVersion()
+        || entry != module.getEntry()) {
+      module = new Module_(module.getType(), description, module.getUUID(), version,
+          module.getLanguage(), entry);
+    }
+    return add(module);
+  }
+
+  public Dependency intern(Dependency dependency) {
+    if (dependency == null) {
+      return null;
+    }
+    var canonical = lookup(dependency);
+    if (canonical != null) {
+      return canonical;
+    }
+    var version = intern(dependency.getVersion());
+    if (version != dependency.getVersion()) {
+      dependency = new Dependency(dependency.getUUID(), version);
+    }
+    return add(dependency);
+  }
+
+  public Subpack intern(Subpack subpack) {
+    if (subpack == null) {
+      return null;
+    }
+    var canonical = lookup(subpack);
+    if (canonical != null) {
+      return canonical;
+    }
+    var folderName = intern(subpack.getFolderName());
+    var name = intern(subpack.getName());
+    if (folderName != subpack.getFolderName() || name != subpack.getName()) {
+      subpack = new Subpack(folderName, name, subpack.getMemoryTier());
+    }
+    return add(subpack);
+  }
+
+  public Metadata intern(Metadata metadata) {
+    if (metadata == null) {
+      return null;
+    }
+    var canonical = lookup(metadata);
+    if (canonical != null) {
+      return canonical;
+    }
+    var authors = (SortedArraySet<String>) metadata.getAuthors();
+    var generatedWith = (SortedArraySet<Metadata.GeneratedWith>) metadata.getGeneratedWith();
+    var internedAuthors = authors == null ? null : authors.map(this::intern);
+    var license = intern(metadata.getLicense());
+    var internedGeneratedWith = generatedWith == null ? null : generatedWith.map(this::intern);
+    if (internedAuthors != authors || license != metadata.getLicense()
+        || internedGeneratedWith != generatedWith) {
+      metadata = new Metadata(internedAuthors, metadata.getURL(), license, internedGeneratedWith);
+    }
+    return add(metadata);
+  }
+
+  public Metadata.GeneratedWith intern(Metadata.GeneratedWith generatedWith) {
+    if (generatedWith == null) {
+      return null;
+    }
+    var canonical = lookup(generatedWith);
+    if (canonical != null) {
+      return canonical;
+    }
+    var versions = (SortedArraySet<SemVer>) generatedWith.getVersions();
+    var name = intern(generatedWith.getName());
+    var internedVersions = versions.map(this::intern);
+    if (name != generatedWith.getName() || internedVersions != versions) {
+      generatedWith = new Metadata.GeneratedWith(name, internedVersions);
+    }
+    return add(generatedWith);
+  }
+
+  public SemVer intern(SemVer version) {
+    return version == null ? null : add(version);
+  }
+
+  public String intern(String string) {
+    return string == null ? null : add(string);
+  }
+
+  public Path intern(Path path) {
+    return path == null ? null : add(path);
+  }
+
+  // the number of values currently interned
+  public int size() {
+    int size = 0;
+    for (var stripe : stripes) {
+      size += stripe.size();
+    }
+    return size;
+  }
+
+  // a codec which interns the decoded manifests
+  public ManifestCodec codec(ManifestCodec codec) {
+    Objects.requireNonNull(codec, "codec must not be null");
+    return new InterningCodec(codec, this);
+  }
+
+  private <T> T lookup(T value) {
+    int hash = hash(value);
+    return stripe(hash).get(value, hash);
+  }
+
+  private <T> T add(T value) {
+    int hash = hash(value);
+    return stripe(hash).add(value, hash);
+  }
+
+  private Stripe stripe(int hash) {
+    // the table of a stripe uses the low bits
+    return stripes[(hash * 0x9e3779b9) >>> STRIPE_SHIFT];
+  }
+
+  // equals is not enough for manifests and metadata, as their sets may consider different
+  // elements equal by the comparators of the builders
+  private static boolean equivalent(Object a, Object b) {
+    if (a.getClass() != b.getClass()) {
+      return false;
+    }
+    if (a instanceof Manifest x) {
+      var y = (Manifest) b;
+      return Objects.equals(x.getFormatVersion(), y.getFormatVersion())
+          && Objects.equals(x.getHeader(), y.getHeader())
+          && identical(x.getModules(), y.getModules())
+          && identical(x.getDependencies(), y.getDependencies())
+          && Objects.equals(x.getCapabilities(), y.getCapabilities())
+          && (x.getMetadata() == y.getMetadata()
+              || (x.getMetadata() != null && y.getMetadata() != null
+                  && equivalent(x.getMetadata(), y.getMetadata())))
+          && identical(x.getSubpacks(), y.getSubpacks());
+    }
+    if (a instanceof Metadata x) {
+      var y = (Metadata) b;
+      // URL.equals resolves host names
+      return identical(x.getAuthors(), y.getAuthors())
+          && Objects.equals(x.getURL() == null ? null : x.getURL().toExternalForm(),
+              y.getURL() == null ? null : y.getURL().toExternalForm())
+          && Objects.equals(x.getLicense(), y.getLicense())
+          && identical(x.getGeneratedWith(), y.getGeneratedWith());
+    }
+    return a.equals(b);
+  }
+
+  // consistent with equivalent, URL.hashCode resolves host names as well
+  private static int hash(Object value) {
+    if (value instanceof Manifest x) {
+      int hash = 1;
+      hash = hash * 31 + Objects.hashCode(x.getFormatVersion());
+      hash = hash * 31 + Objects.hashCode(x.getHeader());
+      hash = hash * 31 + Objects.hashCode(x.getModules());
+      hash = hash * 31 + Objects.hashCode(x.getDependencies());
+      hash = hash * 31 + Objects.hashCode(x.getCapabilities());
+      hash = hash * 31 + (x.getMetadata() == null ? 0 : hash(x.getMetadata()));
+      hash = hash * 31 + Objects.hashCode(x.getSubpacks());
+      return hash;
+    }
+    if (value instanceof Metadata x) {
+      int hash = 1;
+      hash = hash * 31 + Objects.hashCode(x.getAuthors());
+      hash = hash * 31 + (x.getURL() == null ? 0 : x.getURL().toExternalForm().hashCode());
+      hash = hash * 31 + Objects.hashCode(x.getLicense());
+      hash = hash * 31 + Objects.hashCode(x.getGeneratedWith());
+      return hash;
+    }
+    return value.hashCode();
+  }
+
+  private static boolean identical(Object a, Object b) {
+    return SortedArraySet.identical((SortedArraySet<?>) a, (SortedArraySet<?>) b);
+  }
+
+  // weak hash table, chained, locked as a whole
+  private static final class Stripe {
+
+    private final ReferenceQueue<Object> queue = new ReferenceQueue<>();
+    private Entry[] table = new Entry[16];
+    private int size;
+
+    private synchronized int size() {
+      expunge();
+      return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    private synchronized <T> T get(T value, int hash) {
+      expunge();
+      for (var e = table[hash & (table.length - 1)]; e != null; e = e.next) {
+        if (e.hash == hash) {
+          var canonical = e.get();
+          if (canonical != null && equivalent(value, canonical)) {
+            return (T) canonical;
+          }
+        }
+      }
+      return null;
+    }
+
+    // the canonical value, which is the value itself if not interned yet
+    private synchronized <T> T add(T value, int hash) {
+      var canonical = get(value, hash);
+      if (canonical != null) {
+        return canonical;
+      }
+      if (size >= table.length - (table.length >>> 2)) {
+        resize();
+      }
+      int index = hash & (table.length - 1);
+      table[index] = new Entry(value, hash, table[index], queue);
+      size++;
+      return value;
+    }
+
+    private void resize() {
+      var newTable = new Entry[table.length * 2];
+      for (var e : table) {
+        while (e != null) {
+          var next = e.next;
+          int index = e.hash & (newTable.length - 1);
+          e.next = newTable[index];
+          newTable[index] = e;
+          e = next;
+        }
+      }
+      table = newTable;
+    }
+
+    // removes entries of collected values
+    private void expunge() {
+      for (Object reference; (reference = queue.poll()) != null; ) {
+        var entry = (Entry) reference;
+        int index = entry.hash & (table.length - 1);
+        Entry previous = null;
+        for (var e = table[index]; e != null; previous = e, e = e.next) {
+          if (e == entry) {
+            if (previous == null) {
+              table[index] = e.next;
+            } else {
+              previous.next = e.next;
+            }
+            size--;
+            break;
+          }
+        }
+      }
+    }
+  }
+
+  private static final class Entry extends WeakReference<Object> {
+
+    private final int hash;
+    private Entry next;
+
+    private Entry(Object value, int hash, Entry next, ReferenceQueue<Object> queue) {
+      super(value, queue);
+      this.hash = hash;
+      this.next = next;
+    }
+  }
+
+  private static final class InterningCodec implements ManifestCodec {
+
+    private final ManifestCodec codec;
+    private final ManifestInterner interner;
+
+    private InterningCodec(ManifestCodec codec, ManifestInterner interner) {
+      this.codec = codec;
+      this.interner = interner;
+    }
+
+    @Override
+    public Manifest decode(ByteBuffer input) {
+      return interner.intern(codec.decode(input));
+    }
+
+    @Override
+    public Manifest decode(Path path) throws IOException {
+      return interner.intern(codec.decode(path));
+    }
+
+    @Override
+    public void encode(Manifest manifest, OutputStream out) {
+      codec.encode(manifest, out);
+    }
+  }
+}
@@ -0,0 +1,641 @@
+/*
+ * Copyright (c) 2022 Risu
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.github.risu729.mcbe.manifest4j;
+
+import java.lang.reflect.Type;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedSet;
+import java.util.UUID;
+import java.util.function.Function;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import io.github.risu729.mcbe.manifest4j.gson.ManifestGson;
+
+// the difference between two manifests as operations in the style of JSON Patch
+// paths are JSON pointers into manifest.json, except that elements of sets are addressed by
+// their keys instead of indices: the UUID of modules and dependencies, the folder name of
+// subpacks, the name of generated_with, and the values of authors and capabilities
+// a set whose keys are missing or duplicated is replaced as a whole
+// header and metadata are compared field by field, the elements of sets as a whole
+public final class ManifestPatch {
+
+  private static final Gson GSON = ManifestGson.normal();
+
+  private static final String[] HEADER_FIELDS = {"name", "description", "uuid", "version",
+      "min_engine_version", "platform_locked", "pack_scope", "base_game_version",
+      "lock_template_options"};
+  private static final Type[] HEADER_TYPES = {String.class, String.class, UUID.class,
+      SemVer.class, SemVer.class, Boolean.class, Header.PackScope.class, SemVer.class,
+      Boolean.class};
+
+  private static final KeyedSet<Module_> MODULES = new KeyedSet<>("modules", Module_.class,
+      e -> e.getUUID() == null ? null : e.getUUID().toString());
+  private static final KeyedSet<Dependency> DEPENDENCIES = new KeyedSet<>("dependencies",
+      Dependency.class, e -> e.getUUID() == null ? null : e.getUUID().toString());
+  private static final KeyedSet<Capability> CAPABILITIES = new KeyedSet<>("capabilities",
+      Capability.class, e -> GSON.toJsonTree(e).getAsString());
+  private static final KeyedSet<Subpack> SUBPACKS = new KeyedSet<>("subpacks", Subpack.class,
+      e -> e.getFolderName() == null ? null : e.getFolderName().toString());
+  private static final KeyedSet<String> AUTHORS = new KeyedSet<>("authors", String.class,
+      Function.identity());
+  // written as in manifest.json, the versions keyed by the name
+  private static final KeyedSet<Metadata.GeneratedWith> GENERATED_WITH = new KeyedSet<>(
+      "generated_with", Metadata.GeneratedWith.class, Metadata.GeneratedWith::getName) {
+
+    @Override
+    JsonElement toJson(Metadata.GeneratedWith element) {
+      var array = new JsonArray();
+      for (var version : element.getVersions()) {
+        array.add(version.toString());
+      }
+      return array;
+    }
+
+    @Override
+    Metadata.GeneratedWith fromJson(String key, JsonElement value) {
+      var versions = new ArrayList<SemVer>();
+      for (var e : value.getAsJsonArray()) {
+        versions.add(SemVer.fromString(e.getAsString()));
+      }
+      return new Metadata.GeneratedWith(key, SortedArraySet.copyOf(versions, null));
+    }
+
+    @Override
+    JsonElement toJson(Collection<Metadata.GeneratedWith> elements) {
+      var object = new JsonObject();
+      for (var e : elements) {
+        object.add(e.getName(), toJson(e));
+      }
+      return object;
+    }
+
+    @Override
+    List<Metadata.GeneratedWith> fromJson(JsonElement value) {
+      var list = new ArrayList<Metadata.GeneratedWith>();
+      for (var e : value.getAsJsonObject().entrySet()) {
+        list.add(fromJson(e.getKey(), e.getValue()));
+      }
+      return list;
+    }
+  };
+
+  private final List<Operation> operations;
+
+  private ManifestPatch(List<Operation> operations) {
+    this.operations = operations;
+  }
+
+  // the patch which turns the source into the target
+  public static ManifestPatch diff(Manifest source, Manifest target) {
+    Objects.requireNonNull(source, "source must not be null");
+    Objects.requireNonNull(target, "target must not be null");
+    var operations = new ArrayList<Operation>();
+    diffValue(operations, "/format_version", source.getFormatVersion(),
+        target.getFormatVersion(), Integer.class);
+    diffHeader(operations, source.getHeader(), target.getHeader());
+    diffSet(operations, "", MODULES, source.getModules(), target.getModules());
+    diffSet(operations, "", DEPENDENCIES, source.getDependencies(), target.getDependencies());
+    diffSet(operations, "", CAPABILITIES, source.getCapabilities(), target.getCapabilities());
+    diffMetadata(operations, source.getMetadata(), target.getMetadata());
+    diffSet(operations, "", SUBPACKS, source.getSubpacks(), target.getSubpacks());
+    return new ManifestPatch(Collections.unmodifiableList(operations));
+  }
+
+  private static void diffHeader(List<Operation> operations, Header source, Header target) {
+    if (source == null || target == null) {
+      diffValue(operations, "/header", source, target, Header.class);
+      return;
+    }
+    var sourceFields = fields(source);
+    var targetFields = fields(target);
+    for (int i = 0; i < HEADER_FIELDS.length; i++) {
+      diffValue(operations, "/header/" + HEADER_FIELDS[i], sourceFields[i], targetFields[i],
+          HEADER_TYPES[i]);
+    }
+  }
+
+  private static void diffMetadata(List<Operation> operations, Metadata source,
+      Metadata target) {
+    if (source == null || target == null) {
+      diffValue(operations, "/metadata", source, target, Metadata.class);
+      return;
+    }
+    diffSet(operations, "/metadata", AUTHORS, source.getAuthors(), target.getAuthors());
+    diffValue(operations, "/metadata/url", source.getURL(), target.getURL(), URL.class);
+    diffValue(operations, "/metadata/license", source.getLicense(), target.getLicense(),
+        String.class);
+    diffSet(operations, "/metadata", GENERATED_WITH, source.getGeneratedWith(),
+        target.getGeneratedWith());
+  }
+
+  private static void diffValue(List<Operation> operations, String path, Object source,
+      Object target, Type type) {
+    if (same(source, target)) {
+      return;
+    }
+    if (target == null) {
+      operations.add(new Operation(Op.REMOVE, path, null));
+    } else {
+      operations.add(new Operation(source == null ? Op.ADD : Op.REPLACE, path,
+          GSON.toJsonTree(target, type)));
+    }
+  }
+
+  private static <E> void diffSet(List<Operation> operations, String parent, KeyedSet<E> set,
+      Collection<E> source, Collection<E> target) {
+    var path = parent + "/" + set.name;
+    if (source == null || target == null) {
+      if (source != target) {
+        operations.add(target == null
+            ? new Operation(Op.REMOVE, path, null)
+            : new Operation(Op.ADD, path, set.toJson(target)));
+      }
+      return;
+    }
+    var sourceElements = set.keyed(source);
+    var targetElements = set.keyed(target);
+    if (sourceElements == null || targetElements == null) {
+      if (!List.copyOf(source).equals(List.copyOf(target))) {
+        operations.add(new Operation(Op.REPLACE, path, set.toJson(target)));
+      }
+      return;
+    }
+    for (var key : sourceElements.keySet()) {
+      if (!targetElements.containsKey(key)) {
+        operations.add(new Operation(Op.REMOVE, path + "/" + escape(key), null));
+      }
+    }
+    for (var e : targetElements.entrySet()) {
+      var element = sourceElements.get(e.getKey());
+      if (element == null || !element.equals(e.getValue())) {
+        operations.add(new Operation(element == null ? Op.ADD : Op.REPLACE,
+            path + "/" + escape(e.getKey()), set.toJson(e.getValue())));
+      }
+    }
+  }
+
+  // URL.equals resolves host names
+  private static boolean same(Object a, Object b) {
+    if (a instanceof URL x && b instanceof URL y) {
+      return x.toExternalForm().equals(y.toExternalForm());
+    }
+    return Objects.equals(a, b);
+  }
+
+  public boolean isEmpty() {
+    return operations.isEmpty();
+  }
+
+  public List<Operation> getOperations() {
+    return operations;
+  }
+
+  // applies the operations in order, without validating the result, as parsing does
+  // a removed or replaced value must exist, and an added element replaces the one with the key
+  // throws IllegalArgumentException if an operation cannot be applied
+  public Manifest apply(Manifest manifest) {
+    Objects.requireNonNull(manifest, "manifest must not be null");
+    var state = new State(manifest);
+    for (var operation : operations) {
+      try {
+        state.apply(operation);
+      } catch (JsonParseException | IllegalStateException | UnsupportedOperationException e) {
+        throw new IllegalArgumentException("invalid value: " + operation, e);
+      }
+    }
+    return state.build();
+  }
+
+  // compact, an array of objects with op, path and value
+  public String toJson() {
+    var array = new JsonArray();
+    for (var operation : operations) {
+      array.add(operation.toJsonObject());
+    }
+    return ManifestGson.canonical().toJson(array);
+  }
+
+  // throws JsonSyntaxException for malformed JSON, and IllegalArgumentException for invalid
+  // operations
+  public static ManifestPatch fromJson(String json) {
+    Objects.requireNonNull(json, "json must not be null");
+    var element = JsonParser.parseString(json);
+    if (!element.isJsonArray()) {
+      throw new IllegalArgumentException("patch must be an array: " + json);
+    }
+    var operations = new ArrayList<Operation>();
+    for (var e : element.getAsJsonArray()) {
+      if (!e.isJsonObject()) {
+        throw new IllegalArgumentException("operation must be an object: " + e);
+      }
+      var object = e.getAsJsonObject();
+      var op = object.get("op");
+      var path = object.get("path");
+      if (op == null || !op.isJsonPrimitive() || path == null || !path.isJsonPrimitive()
+          || !path.getAsString().startsWith("/")) {
+        throw new IllegalArgumentException("invalid operation: " + e);
+      }
+      var type = Op.of(op.getAsString());
+      var value = object.get("value");
+      if ((type == Op.REMOVE) != (value == null)) {
+        throw new IllegalArgumentException("invalid operation: " + e);
+      }
+      operations.add(new Operation(type, path.getAsString(), value));
+    }
+    return new ManifestPatch(Collections.unmodifiableList(operations));
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    return (obj instanceof ManifestPatch other) && operations.equals(other.operations);
+  }
+
+  @Override
+  public int hashCode() {
+    return operations.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return toJson();
+  }
+
+  public enum Op {
+    ADD,
+    REMOVE,
+    REPLACE;
+
+    private static Op of(String name) {
+      for (var e : values()) {
+        if (e.toString().equals(name)) {
+          return e;
+        }
+      }
+      throw new IllegalArgumentException("unknown op: " + name);
+    }
+
+    @Override
+    public String toString() {
+      return name().toLowerCase(Locale.ENGLISH);
+    }
+  }
+
+  public static final class Operation {
+
+    private final Op op;
+    private final String path;
+    private final JsonElement value; // null for remove
+
+    private Operation(Op op, String path, JsonElement value) {
+      this.op = op;
+      this.path = path;
+      this.value = value;
+    }
+
+    public Op getOp() {
+      return op;
+    }
+
+    public String getPath() {
+      return path;
+    }
+
+    // the value as JSON, or null for remove
+    public String getValue() {
+      return value == null ? null : ManifestGson.canonical().toJson(value);
+    }
+
+    private JsonObject toJsonObject() {
+      var object = new JsonObject();
+      object.addProperty("op", op.toString());
+      object.addProperty("path", path);
+      if (value != null) {
+        object.add("value", value);
+      }
+      return object;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      return (obj instanceof Operation other)
+          && op == other.op
+          && path.equals(other.path)
+          && Objects.equals(value, other.value);
+    }
+
+    @Override
+    public int hashCode() {
+      int hash = 1;
+      hash = hash * 31 + op.hashCode();
+      hash = hash * 31 + path.hashCode();
+      hash = hash * 31 + Objects.hashCode(value);
+      return hash;
+    }
+
+    @Override
+    public String toString() {
+      return ManifestGson.canonical().toJson(toJsonObject());
+    }
+  }
+
+  // the manifest being patched, with the sets as lists
+  private static final class State {
+
+    private Integer formatVersion;
+    private Object[] header;
+    private List<Module_> modules;
+    private final Comparator<? super Module_> modulesOrder;
+    private List<Dependency> dependencies;
+    private final Comparator<? super Dependency> dependenciesOrder;
+    private List<Capability> capabilities;
+    private Object[] metadata;
+    private final Comparator<? super String> authorsOrder;
+    private final Comparator<? super Metadata.GeneratedWith> generatedWithOrder;
+    private List<Subpack> subpacks;
+    private final Comparator<? super Subpack> subpacksOrder;
+
+    private State(Manifest manifest) {
+      formatVersion = manifest.getFormatVersion();
+      header = manifest.getHeader() == null ? null : fields(manifest.getHeader());
+      modules = copy(manifest.getModules());
+      modulesOrder = comparator(manifest.getModules());
+      dependencies = copy(manifest.getDependencies());
+      dependenciesOrder = comparator(manifest.getDependencies());
+      capabilities = copy(manifest.getCapabilities());
+      metadata = manifest.getMetadata() == null ? null : fields(manifest.getMetadata());
+      var source = manifest.getMetadata();
+      authorsOrder = source == null ? null : comparator(source.getAuthors());
+      generatedWithOrder = source == null ? null : comparator(source.getGeneratedWith());
+      subpacks = copy(manifest.getSubpacks());
+      subpacksOrder = comparator(manifest.getSubpacks());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void apply(Operation operation) {
+      var segments = segments(operation.path);
+      var value = operation.value;
+      switch (segments[0]) {
+        case "format_version" -> {
+          checkLength(operation, segments, 1);
+          formatVersion = (Integer) set(operation, formatVersion, Integer.class);
+        }
+        case "header" -> {
+          if (segments.length == 1) {
+            var replaced = (Header) set(operation, header, Header.class);
+            header = replaced == null ? null : fields(replaced);
+            return;
+          }
+          checkLength(operation, segments, 2);
+          int index = List.of(HEADER_FIELDS).indexOf(segments[1]);
+          if (index < 0 || header == null) {
+            throw invalidPath(operation);
+          }
+          header[index] = set(operation, header[index], HEADER_TYPES[index]);
+        }
+        case "modules" -> modules = apply(operation, segments, 1, MODULES, modules);
+        case "dependencies" ->
+            dependencies = apply(operation, segments, 1, DEPENDENCIES, dependencies);
+        case "capabilities" ->
+            capabilities = apply(operation, segments, 1, CAPABILITIES, capabilities);
+        case "metadata" -> {
+          if (segments.length == 1) {
+            var replaced = (Metadata) set(operation, metadata, Metadata.class);
+            metadata = replaced == null ? null : fields(replaced);
+            return;
+          }
+          if (metadata == null) {
+            throw invalidPath(operation);
+          }
+          switch (segments[1]) {
+            case "authors" -> metadata[0] =
+                apply(operation, segments, 2, AUTHORS, (List<String>) metadata[0]);
+            case "url" -> {
+              checkLength(operation, segments, 2);
+              metadata[1] = set(operation, metadata[1], URL.class);
+            }
+            case "license" -> {
+              checkLength(operation, segments, 2);
+              metadata[2] = set(operation, metadata[2], String.class);
+            }
+            case "generated_with" -> metadata[3] = apply(operation, segments, 2,
+                GENERATED_WITH, (List<Metadata.GeneratedWith>) metadata[3]);
+            default -> throw invalidPath(operation);
+          }
+        }
+        case "subpacks" -> subpacks = apply(operation, segments, 1, SUBPACKS, subpacks);
+        default -> throw invalidPath(operation);
+      }
+    }
+
+    // the new value of a field
+    private static Object set(Operation operation, Object current, Type type) {
+      check(operation, current != null);
+      if (operation.op == Op.REMOVE) {
+        return null;
+      }
+      var value = GSON.fromJson(operation.value, type);
+      if (value == null) {
+        throw new IllegalArgumentException("invalid value: " + operation);
+      }
+      return value;
+    }
+
+    // the new elements of a set, the path is of the set if depth segments, or of an element
+    private static <E> List<E> apply(Operation operation, String[] segments, int depth,
+        KeyedSet<E> set, List<E> current) {
+      if (segments.length == depth) {
+        check(operation, current != null);
+        return operation.op == Op.REMOVE ? null : set.fromJson(operation.value);
+      }
+      checkLength(operation, segments, depth + 1);
+      if (current == null) {
+        throw invalidPath(operation);
+      }
+      var key = segments[depth];
+      var list = new ArrayList<E>(current.size() + 1);
+      for (var e : current) {
+        if (!key.equals(set.key.apply(e))) {
+          list.add(e);
+        }
+      }
+      check(operation, list.size() != current.size());
+      if (operation.op != Op.REMOVE) {
+        var element = set.fromJson(key, operation.value);
+        if (element == null) {
+          throw new IllegalArgumentException("invalid value: " + operation);
+        }
+        if (!key.equals(set.key.apply(element))) {
+          throw new IllegalArgumentException("value does not match the key: " + operation);
+        }
+        list.add(element);
+      }
+      return list;
+    }
+
+    private Manifest build() {
+      return new Manifest(formatVersion,
+          header == null ? null : new Header((String) header[0], (String) header[1],
+              (UUID) header[2], (SemVer) header[3], (SemVer) header[4], (Boolean) header[5],
+              (Header.PackScope) header[6], (SemVer) header[7], (Boolean) header[8]),
+          sorted(modules, modulesOrder),
+          sorted(dependencies, dependenciesOrder),
+          capabilities == null ? null : capabilities.isEmpty()
+              ? EnumSet.noneOf(Capability.class) : EnumSet.copyOf(capabilities),
+          metadata == null ? null : metadata(),
+          sorted(subpacks, subpacksOrder));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Metadata metadata() {
+      return new Metadata(sorted((List<String>) metadata[0], authorsOrder), (URL) metadata[1],
+          (String) metadata[2],
+          sorted((List<Metadata.GeneratedWith>) metadata[3], generatedWithOrder));
+    }
+
+    private static <E> List<E> copy(Collection<E> set) {
+      return set == null ? null : new ArrayList<>(set);
+    }
+
+    private static <E> Comparator<? super E> comparator(Collection<E> set) {
+      return set instanceof SortedSet<E> sorted ? sorted.comparator() : null;
+    }
+
+    // the order of the builders cannot hold elements with the same key, which a patch made
+    // from parsed manifests may bring, so such sets are in the natural order as if parsed
+    private static <E> SortedArraySet<E> sorted(List<E> list,
+        Comparator<? super E> comparator) {
+      if (list == null) {
+        return null;
+      }
+      var set = SortedArraySet.copyOf(list, comparator);
+      return set.size() == list.size() || comparator == null
+          ? set
+          : SortedArraySet.copyOf(list, null);
+    }
+
+    // remove and replace need an existing value
+    private static void check(Operation operation, boolean exists) {
+      if (operation.op != Op.ADD && !exists) {
+        throw new IllegalArgumentException("nothing to " + operation.op + ": " + operation);
+      }
+    }
+
+    private static void checkLength(Operation operation, String[] segments, int length) {
+      if (segments.length != length) {
+        throw invalidPath(operation);
+      }
+    }
+
+    private static IllegalArgumentException invalidPath(Operation operation) {
+      return new IllegalArgumentException("invalid path: " + operation);
+    }
+  }
+
+  private static Object[] fields(Header header) {
+    return new Object[] {header.getName(), header.getDescription(), header.getUUID(),
+        header.getVersion(), header.getMinEngineVersion(), header.getPlatformLocked(),
+        header.getPackScope(), header.getBaseGameVersion(), header.getLockTemplateOptions()};
+  }
+
+  // the sets as lists, as they are patched
+  private static Object[] fields(Metadata metadata) {
+    return new Object[] {
+        metadata.getAuthors() == null ? null : new ArrayList<>(metadata.getAuthors()),
+        metadata.getURL(), metadata.getLicense(),
+        metadata.getGeneratedWith() == null ? null : new ArrayList<>(metadata.getGeneratedWith())};
+  }
+
+  // JSON pointer escapes, "~" as "~0" and "/" as "~1"
+  private static String escape(String key) {
+    return key.replace("~", "~0").replace("/", "~1");
+  }
+
+  private static String[] segments(String path) {
+    var segments = path.substring(1).split("/", -1);
+    for (int i = 0; i < segments.length; i++) {
+      segments[i] = segments[i].replace("~1", "/").replace("~0", "~");
+    }
+    return segments;
+  }
+
+  // a set of which elements are identified by string keys
+  private static class KeyedSet<E> {
+
+    private final String name;
+    private final Class<E> type;
+    private final Function<E, String> key;
+
+    private KeyedSet(String name, Class<E> type, Function<E, String> key) {
+      this.name = name;
+      this.type = type;
+      this.key = key;
+    }
+
+    // by key, or null if a key is null or duplicated
+    private Map<String, E> keyed(Collection<E> elements) {
+      var map = new LinkedHashMap<String, E>();
+      for (var e : elements) {
+        var k = key.apply(e);
+        if (k == null || map.putIfAbsent(k, e) != null) {
+          return null;
+        }
+      }
+      return map;
+    }
+
+    JsonElement toJson(E element) {
+      return GSON.toJsonTree(element, type);
+    }
+
+    E fromJson(String key, JsonElement value) {
+      return GSON.fromJson(value, type);
+    }
+
+    JsonElement toJson(Collection<E> elements) {
+      var array = new JsonArray();
+      for (var e : elements) {
+        array.add(toJson(e));
+      }
+      return array;
+    }
+
+    List<E> fromJson(JsonElement value) {
+      var list = new ArrayList<E>();
+      for (var e : value.getAsJsonArray()) {
+        var element = e.isJsonNull() ? null : fromJson(null, e);
+        if (element == null) {
+          throw new IllegalArgumentException("invalid element: " + e);
+        }
+        list.add(element);
+      }
+      return list;
+    }
+  }
+}
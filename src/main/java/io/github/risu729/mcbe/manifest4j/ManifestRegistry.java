@@ -0,0 +1,320 @@
+/*
+ * Copyright (c) 2022 Risu
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.github.risu729.mcbe.manifest4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+// indexes manifests by the UUID and version in their headers
+// reads never lock, they see the latest published snapshot, which is never modified
+// writes are serialized and copy only the stripe of the UUID, so they stay cheap for large
+// registries, and publish a new snapshot atomically
+public final class ManifestRegistry {
+
+  // a power of two, the high bits of the hash select the stripe
+  private static final int STRIPES = 64;
+  private static final int STRIPE_SHIFT = Integer.SIZE - Integer.numberOfTrailingZeros(STRIPES);
+
+  private static final Comparator<Manifest> VERSION_COMPARATOR = Comparator.comparing(
+      e -> e.getHeader().getVersion(), Comparator.nullsFirst(Comparator.naturalOrder()));
+
+  private static final Snapshot EMPTY = new Snapshot(emptyStripes(), 0);
+
+  private volatile Snapshot snapshot = EMPTY;
+
+  public static ManifestRegistry of() {
+    return new ManifestRegistry();
+  }
+
+  public static ManifestRegistry of(Collection<Manifest> manifests) {
+    var registry = new ManifestRegistry();
+    registry.putAll(manifests);
+    return registry;
+  }
+
+  private ManifestRegistry() {
+  }
+
+  // a consistent view of the registry, which is not affected by later writes
+  public Snapshot snapshot() {
+    return snapshot;
+  }
+
+  public Manifest get(UUID uuid, SemVer version) {
+    return snapshot.get(uuid, version);
+  }
+
+  public Manifest getLatest(UUID uuid) {
+    return snapshot.getLatest(uuid);
+  }
+
+  public List<Manifest> getAll(UUID uuid) {
+    return snapshot.getAll(uuid);
+  }
+
+  public boolean contains(UUID uuid) {
+    return snapshot.contains(uuid);
+  }
+
+  public int size() {
+    return snapshot.size();
+  }
+
+  // returns the manifest with the same UUID and version replaced, or null
+  public synchronized Manifest put(Manifest manifest) {
+    var uuid = uuidOf(manifest);
+    var current = snapshot;
+    int stripe = stripe(uuid);
+    var previous = current.stripes[stripe].get(uuid, manifest.getHeader().getVersion());
+    publish(current, stripe, current.stripes[stripe].with(List.of(manifest)));
+    return previous;
+  }
+
+  // published at once, readers see either none or all of the manifests
+  public synchronized void putAll(Collection<Manifest> manifests) {
+    Objects.requireNonNull(manifests, "manifests must not be null");
+    // grouped, so that each stripe is copied only once
+    @SuppressWarnings("unchecked")
+    var grouped = (List<Manifest>[]) new List<?>[STRIPES];
+    for (var manifest : manifests) {
+      int stripe = stripe(uuidOf(manifest));
+      if (grouped[stripe] == null) {
+        grouped[stripe] = new ArrayList<>();
+      }
+      grouped[stripe].add(manifest);
+    }
+    var current = snapshot;
+    var stripes = current.stripes.clone();
+    int size = current.size;
+    for (int i = 0; i < STRIPES; i++) {
+      if (grouped[i] != null) {
+        stripes[i] = current.stripes[i].with(grouped[i]);
+        size += stripes[i].size - current.stripes[i].size;
+      }
+    }
+    snapshot = new Snapshot(stripes, size);
+  }
+
+  // returns the removed manifest, or null
+  public synchronized Manifest remove(UUID uuid, SemVer version) {
+    Objects.requireNonNull(uuid, "UUID must not be null");
+    var current = snapshot;
+    int stripe = stripe(uuid);
+    var removed = current.stripes[stripe].get(uuid, version);
+    if (removed == null) {
+      return null;
+    }
+    publish(current, stripe, current.stripes[stripe].without(uuid, removed));
+    return removed;
+  }
+
+  // removes every version of the UUID, and returns them
+  public synchronized List<Manifest> remove(UUID uuid) {
+    Objects.requireNonNull(uuid, "UUID must not be null");
+    var current = snapshot;
+    int stripe = stripe(uuid);
+    var removed = current.stripes[stripe].getAll(uuid);
+    if (removed.isEmpty()) {
+      return removed;
+    }
+    publish(current, stripe, current.stripes[stripe].without(uuid, null));
+    return removed;
+  }
+
+  public synchronized void clear() {
+    snapshot = EMPTY;
+  }
+
+  private void publish(Snapshot current, int index, Stripe stripe) {
+    var stripes = current.stripes.clone();
+    stripes[index] = stripe;
+    snapshot = new Snapshot(stripes, current.size - current.stripes[index].size + stripe.size);
+  }
+
+  public static final class Snapshot {
+
+    private final Stripe[] stripes;
+    private final int size;
+
+    private Snapshot(Stripe[] stripes, int size) {
+      this.stripes = stripes;
+      this.size = size;
+    }
+
+    // null if not found, version may be null for manifests without version
+    public Manifest get(UUID uuid, SemVer version) {
+      Objects.requireNonNull(uuid, "UUID must not be null");
+      return stripes[stripe(uuid)].get(uuid, version);
+    }
+
+    // the manifest with the highest version, or null if not found
+    public Manifest getLatest(UUID uuid) {
+      Objects.requireNonNull(uuid, "UUID must not be null");
+      var versions = stripes[stripe(uuid)].versions(uuid);
+      return versions == null ? null : versions[versions.length - 1];
+    }
+
+    // every version of the UUID, sorted by version
+    public List<Manifest> getAll(UUID uuid) {
+      Objects.requireNonNull(uuid, "UUID must not be null");
+      return stripes[stripe(uuid)].getAll(uuid);
+    }
+
+    public boolean contains(UUID uuid) {
+      Objects.requireNonNull(uuid, "UUID must not be null");
+      return stripes[stripe(uuid)].versions(uuid) != null;
+    }
+
+    public int size() {
+      return size;
+    }
+
+    // in no particular order
+    public List<Manifest> getManifests() {
+      var list = new ArrayList<Manifest>(size);
+      for (var stripe : stripes) {
+        for (int i = 0; i < stripe.count; i++) {
+          Collections.addAll(list, stripe.versions[i]);
+        }
+      }
+      return Collections.unmodifiableList(list);
+    }
+  }
+
+  // immutable once published, the table maps a UUID to its index in versions
+  private static final class Stripe {
+
+    private final UuidTable table;
+    // manifests of each UUID sorted by version, only the first count are used
+    private final Manifest[][] versions;
+    // the number of UUIDs and the number of manifests
+    private final int count;
+    private final int size;
+
+    private Stripe(UuidTable table, Manifest[][] versions, int count, int size) {
+      this.table = table;
+      this.versions = versions;
+      this.count = count;
+      this.size = size;
+    }
+
+    private Manifest[] versions(UUID uuid) {
+      int index = table.get(uuid);
+      return index == UuidTable.ABSENT ? null : versions[index];
+    }
+
+    private Manifest get(UUID uuid, SemVer version) {
+      var manifests = versions(uuid);
+      if (manifests != null) {
+        for (var e : manifests) {
+          if (Objects.equals(e.getHeader().getVersion(), version)) {
+            return e;
+          }
+        }
+      }
+      return null;
+    }
+
+    private List<Manifest> getAll(UUID uuid) {
+      var manifests = versions(uuid);
+      return manifests == null ? List.of() : List.of(manifests);
+    }
+
+    private Stripe with(List<Manifest> manifests) {
+      // the copies are not published yet, so they may be modified
+      var copyTable = table.copy(count + manifests.size());
+      var copy = Arrays.copyOf(versions, Math.max(count + manifests.size(), 1));
+      int count = this.count;
+      int size = this.size;
+      for (var manifest : manifests) {
+        var uuid = manifest.getHeader().getUUID();
+        int index = copyTable.get(uuid);
+        if (index == UuidTable.ABSENT) {
+          copyTable.put(uuid, count);
+          copy[count++] = new Manifest[] {manifest};
+          size++;
+          continue;
+        }
+        // the arrays of versions may be shared with published stripes
+        var current = copy[index];
+        var version = manifest.getHeader().getVersion();
+        Manifest[] replaced = null;
+        for (int i = 0; i < current.length; i++) {
+          if (Objects.equals(current[i].getHeader().getVersion(), version)) {
+            replaced = current.clone();
+            replaced[i] = manifest;
+            break;
+          }
+        }
+        if (replaced == null) {
+          replaced = Arrays.copyOf(current, current.length + 1);
+          replaced[current.length] = manifest;
+          Arrays.sort(replaced, VERSION_COMPARATOR);
+          size++;
+        }
+        copy[index] = replaced;
+      }
+      return new Stripe(copyTable, copy, count, size);
+    }
+
+    // removes only the manifest if not null, otherwise every version of the UUID
+    private Stripe without(UUID uuid, Manifest manifest) {
+      int index = table.get(uuid);
+      if (manifest != null && versions[index].length > 1) {
+        var remaining = new Manifest[versions[index].length - 1];
+        int length = 0;
+        for (var e : versions[index]) {
+          if (e != manifest) {
+            remaining[length++] = e;
+          }
+        }
+        var copy = versions.clone();
+        copy[index] = remaining;
+        return new Stripe(table, copy, count, size - 1);
+      }
+
+      // indices are compacted, so the table is rebuilt
+      var copyTable = new UuidTable(count - 1);
+      var copy = new Manifest[Math.max(count - 1, 1)][];
+      int length = 0;
+      for (int i = 0; i < count; i++) {
+        if (i != index) {
+          copyTable.put(uuidOf(versions[i][0]), length);
+          copy[length++] = versions[i];
+        }
+      }
+      return new Stripe(copyTable, copy, length, size - versions[index].length);
+    }
+  }
+
+  private static Stripe[] emptyStripes() {
+    var stripes = new Stripe[STRIPES];
+    Arrays.fill(stripes, new Stripe(new UuidTable(0), new Manifest[1][], 0, 0));
+    return stripes;
+  }
+
+  private static int stripe(UUID uuid) {
+    return UuidTable.hash(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits())
+        >>> STRIPE_SHIFT;
+  }
+
+  private static UUID uuidOf(Manifest manifest) {
+    Objects.requireNonNull(manifest, "manifest must not be null");
+    var header = manifest.getHeader();
+    if (header == null || header.getUUID() == null) {
+      throw new IllegalArgumentException("header UUID must not be null: " + manifest);
+    }
+    return header.getUUID();
+  }
+}
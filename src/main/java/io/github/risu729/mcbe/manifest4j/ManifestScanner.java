@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2022 Risu
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.github.risu729.mcbe.manifest4j;
+
+import java.io.IOException;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.Files;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+
+import io.github.risu729.mcbe.manifest4j.concurrent.BoundedTasks;
+
+// finds every manifest.json under the roots, such as com.mojang or behavior_packs,
+// and parses them concurrently while the directories are still being walked
+public final class ManifestScanner {
+
+  public static final String MANIFEST_FILE_NAME = "manifest.json";
+
+  private final ManifestCodec codec;
+  private final Executor executor;
+  private final int parallelism;
+  private final int maxDepth;
+  private final boolean followLinks;
+
+  public static ManifestScanner of() {
+    return new Builder().build();
+  }
+
+  public Result scan(Path root) throws IOException, InterruptedException {
+    return scan(Set.of(Objects.requireNonNull(root, "root must not be null")));
+  }
+
+  public Result scan(Collection<Path> roots) throws IOException, InterruptedException {
+    Objects.requireNonNull(roots, "roots must not be null");
+    for (var e : roots) {
+      Objects.requireNonNull(e, "root must not be null");
+    }
+    ExecutorService ownExecutor = null;
+    var executor = this.executor;
+    if (executor == null) {
+      ownExecutor = BoundedTasks.newThreadPool("manifest-scanner", parallelism);
+      executor = ownExecutor;
+    }
+    try {
+      var scan = new Scan(executor);
+      for (var root : roots) {
+        scan.walk(root);
+      }
+      return scan.await();
+    } finally {
+      if (ownExecutor != null) {
+        ownExecutor.shutdownNow();
+      }
+    }
+  }
+
+  public static final class Result {
+
+    private final Map<Path, Manifest> manifests;
+    private final Map<Path, Exception> errors;
+
+    private Result(Map<Path, Manifest> manifests, Map<Path, Exception> errors) {
+      this.manifests = Collections.unmodifiableMap(new TreeMap<>(manifests));
+      this.errors = Collections.unmodifiableMap(new TreeMap<>(errors));
+    }
+
+    // keyed by the path of manifest.json, sorted by path
+    public Map<Path, Manifest> getManifests() {
+      return manifests;
+    }
+
+    // files or directories which could not be read or parsed
+    public Map<Path, Exception> getErrors() {
+      return errors;
+    }
+  }
+
+  public static class Builder {
+
+    private ManifestCodec codec;
+    private Executor executor;
+    private Integer parallelism;
+    private Integer maxDepth;
+    private boolean followLinks;
+
+    public Builder() {
+    }
+
+    public Builder codec(ManifestCodec codec) {
+      this.codec = codec;
+      return this;
+    }
+
+    // not shut down by the scanner, for example a virtual-thread-per-task executor
+    // if null, a fixed thread pool of the parallelism is created for each scan
+    public Builder executor(Executor executor) {
+      this.executor = executor;
+      return this;
+    }
+
+    // the maximum number of files read at the same time
+    public Builder parallelism(Integer parallelism) {
+      if (parallelism != null && parallelism < 1) {
+        throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+      }
+      this.parallelism = parallelism;
+      return this;
+    }
+
+    public Builder maxDepth(Integer maxDepth) {
+      if (maxDepth != null && maxDepth < 0) {
+        throw new IllegalArgumentException("max depth must not be negative: " + maxDepth);
+      }
+      this.maxDepth = maxDepth;
+      return this;
+    }
+
+    public Builder followLinks(boolean followLinks) {
+      this.followLinks = followLinks;
+      return this;
+    }
+
+    public ManifestScanner build() {
+      return new ManifestScanner(this);
+    }
+  }
+
+  private ManifestScanner(Builder builder) {
+    this.codec = Objects.requireNonNullElse(builder.codec, ManifestCodec.gson());
+    this.executor = builder.executor;
+    this.parallelism =
+        Objects.requireNonNullElse(builder.parallelism, BoundedTasks.DEFAULT_PARALLELISM);
+    this.maxDepth = Objects.requireNonNullElse(builder.maxDepth, Integer.MAX_VALUE);
+    this.followLinks = builder.followLinks;
+  }
+
+  private final class Scan {
+
+    private final BoundedTasks tasks;
+    private final Map<Path, Manifest> manifests = new ConcurrentHashMap<>();
+    private final Map<Path, Exception> errors = new ConcurrentHashMap<>();
+
+    private Scan(Executor executor) {
+      this.tasks = new BoundedTasks(executor, parallelism);
+    }
+
+    private void walk(Path root) throws IOException, InterruptedException {
+      var options = followLinks
+          ? EnumSet.of(FileVisitOption.FOLLOW_LINKS)
+          : EnumSet.noneOf(FileVisitOption.class);
+      try {
+        Files.walkFileTree(root, options, maxDepth, new SimpleFileVisitor<>() {
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+            if (attrs.isRegularFile() && file.getFileName() != null
+                && file.getFileName().toString().equals(MANIFEST_FILE_NAME)) {
+              submit(file);
+            }
+            return FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult visitFileFailed(Path file, IOException e) {
+            errors.put(file, e);
+            return FileVisitResult.CONTINUE;
+          }
+
+          // the directory could not be listed completely, the files already found are kept
+          @Override
+          public FileVisitResult postVisitDirectory(Path dir, IOException e) {
+            if (e != null) {
+              errors.put(dir, e);
+            }
+            return FileVisitResult.CONTINUE;
+          }
+        });
+      } catch (InterruptedWalkException e) {
+        throw e.getCause();
+      }
+    }
+
+    private void submit(Path file) {
+      try {
+        tasks.submit(() -> {
+          try {
+            manifests.put(file, codec.decode(file));
+          } catch (IOException | RuntimeException e) {
+            errors.put(file, e);
+          }
+        });
+      } catch (InterruptedException e) {
+        throw new InterruptedWalkException(e);
+      }
+    }
+
+    private Result await() throws InterruptedException {
+      tasks.await();
+      return new Result(manifests, errors);
+    }
+  }
+
+  // to throw InterruptedException through FileVisitor
+  private static final class InterruptedWalkException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private InterruptedWalkException(InterruptedException cause) {
+      super(cause);
+    }
+
+    @Override
+    public synchronized InterruptedException getCause() {
+      return (InterruptedException) super.getCause();
+    }
+  }
+}
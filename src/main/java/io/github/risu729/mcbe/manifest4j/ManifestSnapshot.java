@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2022 Risu
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.github.risu729.mcbe.manifest4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+// saves many manifests in the binary form of ManifestCodec.binary(), sharing the strings among
+// them, so that a large set of packs is loaded again without parsing JSON
+// a snapshot is only read by the same format version as it was written
+public final class ManifestSnapshot {
+
+  private ManifestSnapshot() {
+  }
+
+  // the stream is flushed but not closed
+  public static void write(Collection<Manifest> manifests, OutputStream out) throws IOException {
+    Objects.requireNonNull(manifests, "manifests must not be null");
+    Objects.requireNonNull(out, "output stream must not be null");
+    var encoder = new BinaryManifestCodec.Encoder();
+    encoder.writeHeader();
+    encoder.writeVarint(manifests.size());
+    for (var manifest : manifests) {
+      encoder.writeManifest(Objects.requireNonNull(manifest, "manifest must not be null"));
+      // keeps the strings but not the bytes of the written manifests
+      if (encoder.size() >= 8192) {
+        encoder.flushTo(out);
+      }
+    }
+    encoder.flushTo(out);
+    out.flush();
+  }
+
+  // reads to the end of the stream, which is not closed
+  public static List<Manifest> read(InputStream in) throws IOException {
+    Objects.requireNonNull(in, "input stream must not be null");
+    return read(ByteBuffer.wrap(in.readAllBytes()));
+  }
+
+  // reads from the position to the limit, without changing them
+  public static List<Manifest> read(ByteBuffer input) {
+    Objects.requireNonNull(input, "input must not be null");
+    var decoder = new BinaryManifestCodec.Decoder(input.duplicate());
+    return decoder.decode(() -> {
+      decoder.readHeader();
+      int count = decoder.readLength();
+      var manifests = new ArrayList<Manifest>(count);
+      for (int i = 0; i < count; i++) {
+        manifests.add(decoder.readManifest());
+      }
+      if (decoder.hasRemaining()) {
+        throw new IllegalArgumentException("trailing bytes");
+      }
+      return List.copyOf(manifests);
+    });
+  }
+}
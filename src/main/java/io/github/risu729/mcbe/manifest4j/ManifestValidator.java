@@ -0,0 +1,273 @@
+/*
+ * Copyright (c) 2022 Risu
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.github.risu729.mcbe.manifest4j;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Objects;
+
+// checks the rules enforced by the builders on a manifest, such as one read by fromJson,
+// and reports every violation at once instead of throwing on the first one
+// missing values which the builders fill, such as format_version, versions and UUIDs, are not
+// violations, so that a manifest is valid if and only if rebuilding it succeeds
+public final class ManifestValidator {
+
+  private static final Path SCRIPTS = Path.of("scripts");
+  private static final Path SUBPACKS = Path.of("subpacks");
+
+  private ManifestValidator() {
+  }
+
+  // empty if valid
+  public static List<Violation> validate(Manifest manifest) {
+    Objects.requireNonNull(manifest, "manifest must not be null");
+    var violations = new ArrayList<Violation>();
+    new Validation(violations).manifest(manifest);
+    return Collections.unmodifiableList(violations);
+  }
+
+  public static boolean isValid(Manifest manifest) {
+    return validate(manifest).isEmpty();
+  }
+
+  public static final class Violation {
+
+    private final Rule rule;
+    private final String path;
+    private final String message;
+    private final Object value;
+
+    public Rule getRule() {
+      return rule;
+    }
+
+    // the JSON path of the value, such as "header.min_engine_version" or "modules[1].entry"
+    public String getPath() {
+      return path;
+    }
+
+    public String getMessage() {
+      return message;
+    }
+
+    // null if the value is missing
+    public Object getValue() {
+      return value;
+    }
+
+    @Override
+    public String toString() {
+      return path + ": " + message + (value == null ? "" : ": " + value);
+    }
+
+    private Violation(Rule rule, String path, String message, Object value) {
+      this.rule = rule;
+      this.path = path;
+      this.message = message;
+      this.value = value;
+    }
+  }
+
+  public enum Rule {
+    NECESSARY,
+    FORMAT_VERSION,
+    MODULE_TYPES,
+    MIN_ENGINE_VERSION,
+    BASE_GAME_VERSION,
+    LOCK_TEMPLATE_OPTIONS,
+    SCRIPT_LANGUAGE,
+    SCRIPT_ENTRY,
+    FOLDER_NAME,
+    MEMORY_TIER
+  }
+
+  private record Validation(List<Violation> violations) {
+
+    private void add(Rule rule, String path, String message, Object value) {
+      violations.add(new Violation(rule, path, message, value));
+    }
+
+    private void necessary(Object value, String path) {
+      if (value == null) {
+        add(Rule.NECESSARY, path, "necessary", null);
+      }
+    }
+
+    private void manifest(Manifest manifest) {
+      var formatVersion = manifest.getFormatVersion();
+      if (formatVersion != null
+          && (formatVersion < 1 || formatVersion > Manifest.MAX_FORMAT_VERSION)) {
+        add(Rule.FORMAT_VERSION, "format_version",
+            "must be a positive integer which is " + Manifest.MAX_FORMAT_VERSION + " or less",
+            formatVersion);
+      }
+
+      var types = EnumSet.noneOf(Module_.Type.class);
+      var modules = manifest.getModules();
+      if (modules == null || modules.isEmpty()) {
+        add(Rule.NECESSARY, "modules", "necessary at least one", null);
+      } else {
+        int i = 0;
+        for (var module : modules) {
+          module(module, "modules[" + i++ + "]");
+          if (module != null && module.getType() != null) {
+            types.add(module.getType());
+          }
+        }
+      }
+      moduleTypes(types);
+
+      var header = manifest.getHeader();
+      if (header == null) {
+        add(Rule.NECESSARY, "header", "necessary", null);
+      } else {
+        header(header, formatVersion, types);
+      }
+
+      var dependencies = manifest.getDependencies();
+      if (dependencies != null) {
+        int i = 0;
+        for (var dependency : dependencies) {
+          var path = "dependencies[" + i++ + "]";
+          if (dependency == null) {
+            add(Rule.NECESSARY, path, "must not be null", null);
+            continue;
+          }
+          necessary(dependency.getUUID(), path + ".uuid");
+        }
+      }
+
+      var subpacks = manifest.getSubpacks();
+      if (subpacks != null) {
+        int i = 0;
+        for (var subpack : subpacks) {
+          subpack(subpack, "subpacks[" + i++ + "]");
+        }
+      }
+    }
+
+    // DATA, CLIENT_DATA, INTERFACE, and SCRIPT can be put in the same pack
+    // other types can be put in the same pack only if the type is the same
+    private void moduleTypes(EnumSet<Module_.Type> types) {
+      int sets = 0;
+      for (var set : Module_.PERMITTED_TYPE_SETS) {
+        for (var e : set) {
+          if (types.contains(e)) {
+            sets++;
+            break;
+          }
+        }
+      }
+      if (sets > 1) {
+        add(Rule.MODULE_TYPES, "modules", "must not contain types of different packs", types);
+      }
+    }
+
+    private void header(Header header, Integer formatVersion, EnumSet<Module_.Type> types) {
+      necessary(header.getName(), "header.name");
+
+      var minEngineVersion = header.getMinEngineVersion();
+      if (types.contains(Module_.Type.WORLD_TEMPLATE) || types.contains(Module_.Type.SKIN_PACK)) {
+        if (minEngineVersion != null) {
+          add(Rule.MIN_ENGINE_VERSION, "header.min_engine_version",
+              "must be null if the type of module is skin_pack or world_template",
+              minEngineVersion);
+        }
+      } else if ((formatVersion == null || formatVersion == 2) && minEngineVersion != null) {
+        if (minEngineVersion.compareTo(Header.MIN_MCBE_VERSION) < 0) {
+          add(Rule.MIN_ENGINE_VERSION, "header.min_engine_version",
+              "must be later than or equal to " + Header.MIN_MCBE_VERSION, minEngineVersion);
+        }
+      }
+
+      var baseGameVersion = header.getBaseGameVersion();
+      var lockTemplateOptions = header.getLockTemplateOptions();
+      if (types.contains(Module_.Type.WORLD_TEMPLATE)) {
+        if (baseGameVersion != null && baseGameVersion.compareTo(Header.MIN_MCBE_VERSION) < 0) {
+          add(Rule.BASE_GAME_VERSION, "header.base_game_version",
+              "must be later than or equal to " + Header.MIN_MCBE_VERSION, baseGameVersion);
+        }
+      } else {
+        if (baseGameVersion != null) {
+          add(Rule.BASE_GAME_VERSION, "header.base_game_version",
+              "must be null if the type of module is not world_template", baseGameVersion);
+        }
+        if (lockTemplateOptions != null) {
+          add(Rule.LOCK_TEMPLATE_OPTIONS, "header.lock_template_options",
+              "must be null if the type of module is not world_template", lockTemplateOptions);
+        }
+      }
+    }
+
+    private void module(Module_ module, String path) {
+      if (module == null) {
+        add(Rule.NECESSARY, path, "must not be null", null);
+        return;
+      }
+      necessary(module.getType(), path + ".type");
+
+      var language = module.getLanguage();
+      var entry = module.getEntry();
+      if (module.getType() != Module_.Type.SCRIPT) {
+        if (language != null) {
+          add(Rule.SCRIPT_LANGUAGE, path + ".language",
+              "must be null when type is not script", language);
+        }
+        if (entry != null) {
+          add(Rule.SCRIPT_ENTRY, path + ".entry", "must be null when type is not script", entry);
+        }
+        return;
+      }
+
+      if (language == null) {
+        language = Module_.DEFAULT_LANGUAGE;
+      }
+      if (entry == null) {
+        add(Rule.NECESSARY, path + ".entry", "necessary when type is script", null);
+        return;
+      }
+      var fileName = FileNames.directChild(entry, SCRIPTS);
+      if (fileName == null) {
+        add(Rule.SCRIPT_ENTRY, path + ".entry",
+            "must be a file directly under \"scripts\"", entry);
+      } else if (!FileNames.isValidFile(fileName.toString())) {
+        add(Rule.SCRIPT_ENTRY, path + ".entry", "invalid file name", entry);
+      } else if (!language.matches(fileName)) {
+        add(Rule.SCRIPT_ENTRY, path + ".entry",
+            "extension must be " + language.getExtension() + " when language is " + language,
+            entry);
+      }
+    }
+
+    private void subpack(Subpack subpack, String path) {
+      if (subpack == null) {
+        add(Rule.NECESSARY, path, "must not be null", null);
+        return;
+      }
+      var folderName = subpack.getFolderName();
+      if (folderName == null) {
+        add(Rule.NECESSARY, path + ".folder_name", "necessary", null);
+      } else {
+        var name = FileNames.directChild(folderName, SUBPACKS);
+        if (name == null) {
+          add(Rule.FOLDER_NAME, path + ".folder_name",
+              "must be a directory directly under \"subpacks\"", folderName);
+        } else if (!FileNames.isValidFolder(name.toString())) {
+          add(Rule.FOLDER_NAME, path + ".folder_name", "invalid folder name", folderName);
+        }
+      }
+      var memoryTier = subpack.getMemoryTier();
+      if (memoryTier != null && memoryTier < 0) {
+        add(Rule.MEMORY_TIER, path + ".memory_tier", "must not be negative", memoryTier);
+      }
+    }
+  }
+}
@@ -9,26 +9,33 @@ package io.github.risu729.mcbe.manifest4j;
 
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.NavigableSet;
 import java.util.Objects;
 import java.util.regex.Pattern;
 import java.util.Set;
+import java.util.SortedSet;
 import java.util.TreeSet;
 
+import com.google.gson.annotations.JsonAdapter;
+
 import io.github.risu729.mcbe.manifest4j.gson.ManifestGson;
 
+@JsonAdapter(ModelAdapterFactory.class)
 public final class Metadata {
 
-  private final TreeSet<String> authors;
+  private final SortedArraySet<String> authors;
   private final URL url;
   private final String license;
-  private final TreeSet<GeneratedWith> generatedWith;
+  private final SortedArraySet<GeneratedWith> generatedWith;
+
+  // computed on first use
+  private transient int hash;
+  private transient String string;
 
-  @SuppressWarnings("unchecked")
-  public TreeSet<String> getAuthors() {
-    return (TreeSet<String>) authors.clone();
+  public NavigableSet<String> getAuthors() {
+    return authors;
   }
 
   public URL getURL() {
@@ -39,37 +46,33 @@ public final class Metadata {
     return license;
   }
 
-  @SuppressWarnings("unchecked")
-  public TreeSet<GeneratedWith> getGeneratedWith() {
-    return (TreeSet<GeneratedWith>) generatedWith.clone();
+  public NavigableSet<GeneratedWith> getGeneratedWith() {
+    return generatedWith;
   }
 
   public static final class GeneratedWith implements Comparable<GeneratedWith> {
     
-    private static final TreeSet<SemVer> DEFAULT_VERSIONS = new TreeSet<>(Set.of(SemVer.DEFAULT));
+    private static final SortedArraySet<SemVer> DEFAULT_VERSIONS =
+        SortedArraySet.copyOf(Set.of(SemVer.DEFAULT), null);
 
     static final Comparator<GeneratedWith> STRICT_COMPARATOR =
-        Comparator.comparing(GeneratedWith::getName, Comparator.nullsFirst(Comparator.naturalOrder()));
-    private static final Comparator<GeneratedWith> COMPARATOR = STRICT_COMPARATOR
-        .thenComparing(GeneratedWith::getVersions, Comparator.nullsFirst(new Comparator<TreeSet<SemVer>> () {
-          @Override
-          public int compare(TreeSet<SemVer> o1, TreeSet<SemVer> o2) {
-            return Arrays.compare(o1.toArray(new SemVer[o1.size()]), o2.toArray(new SemVer[o2.size()]));
-          }
-        }));
+        (a, b) -> Comparators.compare(a.name, b.name);
     
     // necessary, must be 32 characters maximum
     // must contain only alphabets, numbers, underscores, and hyphens
     private final String name;
-    private final TreeSet<SemVer> versions; // necessary at least one
+    private final SortedArraySet<SemVer> versions; // necessary at least one
+
+    // computed on first use, transient to be excluded from the reflective serialization
+    private transient int hash;
+    private transient String string;
 
     public String getName() {
       return name;
     }
 
-    @SuppressWarnings("unchecked")
-    public TreeSet<SemVer> getVersions() {
-      return (TreeSet<SemVer>) versions.clone();
+    public NavigableSet<SemVer> getVersions() {
+      return versions;
     }
 
     public static class Builder {
@@ -131,19 +134,28 @@ public final class Metadata {
       }
     }
 
-    @SuppressWarnings("unchecked")
     private GeneratedWith(Builder builder) {
       this.name = Objects.requireNonNull(builder.name, "name must not be null");
       if (builder.versions == null) {
         this.versions = DEFAULT_VERSIONS;
       } else {
-        this.versions = (TreeSet<SemVer>) builder.versions.clone(); 
+        this.versions = SortedArraySet.copyOf(builder.versions);
       }
     }
 
+    // without validation, only for copies of valid ones
+    GeneratedWith(String name, SortedSet<SemVer> versions) {
+      this.name = name;
+      this.versions = SortedArraySet.copyOf(versions);
+    }
+
     @Override
     public int compareTo(GeneratedWith other) {
-      return COMPARATOR.compare(this, other);
+      int result = Comparators.compare(name, other.name);
+      if (result != 0) {
+        return result;
+      }
+      return SortedArraySet.compare(versions, other.versions);
     }
 
     @Override
@@ -158,15 +170,25 @@ public final class Metadata {
 
     @Override
     public int hashCode() {
-      int hash = 1;
+      int hash = this.hash;
+      if (hash != 0) {
+        return hash;
+      }
+      hash = 1;
       hash = hash * 31 + Objects.hashCode(name);
       hash = hash * 31 + Objects.hashCode(versions);
+      this.hash = hash;
       return hash;
     }
 
     @Override
     public String toString() {
-      return ManifestGson.SERIALIZE_NULLS.toJson(this);
+      var string = this.string;
+      if (string == null) {
+        string = ManifestGson.serializeNulls().toJson(this);
+        this.string = string;
+      }
+      return string;
     }
   }
 
@@ -265,20 +287,20 @@ public final class Metadata {
     }
   }
 
-  @SuppressWarnings("unchecked")
   private Metadata(Builder builder) {
-    if (builder.authors == null) {
-      this.authors = null;
-    } else {
-      this.authors = (TreeSet<String>) builder.authors.clone();
-    }
+    this.authors = SortedArraySet.copyOf(builder.authors);
     this.url = builder.url;
     this.license = builder.license;
-    if (builder.generatedWith == null) {
-      this.generatedWith = null;
-    } else {
-      this.generatedWith = (TreeSet<GeneratedWith>) builder.generatedWith.clone();
-    }
+    this.generatedWith = SortedArraySet.copyOf(builder.generatedWith);
+  }
+
+  // without validation, only for deserialization
+  Metadata(SortedSet<String> authors, URL url, String license,
+      SortedSet<GeneratedWith> generatedWith) {
+    this.authors = SortedArraySet.copyOf(authors);
+    this.url = url;
+    this.license = license;
+    this.generatedWith = SortedArraySet.copyOf(generatedWith);
   }
 
   @Override
@@ -295,16 +317,26 @@ public final class Metadata {
 
   @Override
   public int hashCode() {
-    int hash = 1;
+    int hash = this.hash;
+    if (hash != 0) {
+      return hash;
+    }
+    hash = 1;
     hash = hash * 31 + Objects.hashCode(authors);
     hash = hash * 31 + Objects.hashCode(url);
     hash = hash * 31 + Objects.hashCode(license);
     hash = hash * 31 + Objects.hashCode(generatedWith);
+    this.hash = hash;
     return hash;
   }
 
   @Override
   public String toString() {
-    return ManifestGson.SERIALIZE_NULLS.toJson(this);
+    var string = this.string;
+    if (string == null) {
+      string = ManifestGson.serializeNulls().toJson(this);
+      this.string = string;
+    }
+    return string;
   }
 }
\ No newline at end of file
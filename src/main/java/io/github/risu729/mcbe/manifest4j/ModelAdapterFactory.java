@@ -0,0 +1,669 @@
+/*
+ * Copyright (c) 2022 Risu
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.github.risu729.mcbe.manifest4j;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.UUID;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+
+import io.github.risu729.mcbe.manifest4j.gson.ManifestGson;
+
+// streaming adapters of the model classes, used instead of the reflective adapter of Gson
+// names of the fields are the ones SnakeCaseField would produce, in the order of declaration
+// objects are constructed as they are in JSON without validation, like the reflective adapter did,
+// or through the builders if validating
+final class ModelAdapterFactory implements TypeAdapterFactory {
+
+  // not an anonymous subclass, of which native images would need the generic signature
+  @SuppressWarnings("unchecked")
+  private static final TypeToken<SortedSet<Metadata.GeneratedWith>> GENERATED_WITH_SET =
+      (TypeToken<SortedSet<Metadata.GeneratedWith>>) TypeToken.getParameterized(
+          SortedSet.class, Metadata.GeneratedWith.class);
+
+  private final boolean validate;
+
+  // used by JsonAdapter
+  ModelAdapterFactory() {
+    this(false);
+  }
+
+  ModelAdapterFactory(boolean validate) {
+    this.validate = validate;
+  }
+
+  // same as ManifestGson.normal(), but the checks and defaults of the builders are applied while
+  // reading, and violations are thrown as JsonSyntaxException
+  static Gson validatingGson() {
+    return ValidatingGson.INSTANCE;
+  }
+
+  // initialized on first use
+  private static final class ValidatingGson {
+
+    private static final Gson INSTANCE = ManifestGson.normal().newBuilder()
+        .registerTypeAdapterFactory(new ModelAdapterFactory(true))
+        .create();
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+    Class<? super T> rawType = type.getRawType();
+    TypeAdapter<?> adapter;
+    if (rawType == Manifest.class) {
+      adapter = new ManifestAdapter(gson, validate);
+    } else if (rawType == Header.class) {
+      adapter = new HeaderAdapter(gson, validate);
+    } else if (rawType == Module_.class) {
+      adapter = new ModuleAdapter(gson, validate);
+    } else if (rawType == Dependency.class) {
+      adapter = new DependencyAdapter(gson, validate);
+    } else if (rawType == Subpack.class) {
+      adapter = new SubpackAdapter(gson, validate);
+    } else if (rawType == Metadata.class) {
+      adapter = new MetadataAdapter(gson, validate);
+    } else {
+      return null;
+    }
+    // JsonAdapter makes the adapters null-safe, but registered factories are used as they are
+    return (TypeAdapter<T>) (validate ? adapter.nullSafe() : adapter);
+  }
+
+  private static final class ManifestAdapter extends TypeAdapter<Manifest> {
+
+    private final boolean validate;
+    private final TypeAdapter<Header> headerAdapter;
+    private final TypeAdapter<Module_> moduleAdapter;
+    private final TypeAdapter<Dependency> dependencyAdapter;
+    private final TypeAdapter<Capability> capabilityAdapter;
+    private final TypeAdapter<Metadata> metadataAdapter;
+    private final TypeAdapter<Subpack> subpackAdapter;
+
+    private ManifestAdapter(Gson gson, boolean validate) {
+      this.validate = validate;
+      this.headerAdapter = gson.getAdapter(Header.class);
+      this.moduleAdapter = gson.getAdapter(Module_.class);
+      this.dependencyAdapter = gson.getAdapter(Dependency.class);
+      this.capabilityAdapter = gson.getAdapter(Capability.class);
+      this.metadataAdapter = gson.getAdapter(Metadata.class);
+      this.subpackAdapter = gson.getAdapter(Subpack.class);
+    }
+
+    @Override
+    public Manifest read(JsonReader reader) throws IOException {
+      if (validate) {
+        return readValidated(reader);
+      }
+      Integer formatVersion = null;
+      Header header = null;
+      TreeSet<Module_> modules = null;
+      TreeSet<Dependency> dependencies = null;
+      EnumSet<Capability> capabilities = null;
+      Metadata metadata = null;
+      TreeSet<Subpack> subpacks = null;
+      reader.beginObject();
+      while (reader.hasNext()) {
+        switch (reader.nextName()) {
+          case "format_version" -> formatVersion = nextInteger(reader);
+          case "header" -> header = headerAdapter.read(reader);
+          case "modules" -> modules = readTreeSet(reader, moduleAdapter);
+          case "dependencies" -> dependencies = readTreeSet(reader, dependencyAdapter);
+          case "capabilities" -> capabilities = readCapabilities(reader);
+          case "metadata" -> metadata = metadataAdapter.read(reader);
+          case "subpacks" -> subpacks = readTreeSet(reader, subpackAdapter);
+          default -> reader.skipValue();
+        }
+      }
+      reader.endObject();
+      return new Manifest(formatVersion, header, modules, dependencies, capabilities, metadata,
+          subpacks);
+    }
+
+    // elements are added to the builder as they are read, so sets are copied only on build
+    private Manifest readValidated(JsonReader reader) throws IOException {
+      var path = reader.getPath();
+      var builder = new Manifest.Builder();
+      try {
+        reader.beginObject();
+        while (reader.hasNext()) {
+          switch (reader.nextName()) {
+            case "format_version" -> builder.formatVersion(nextInteger(reader));
+            case "header" -> {
+              var header = headerAdapter.read(reader);
+              if (header != null) {
+                builder.header(header);
+              }
+            }
+            case "modules" -> {
+              if (beginArray(reader)) {
+                while (reader.hasNext()) {
+                  builder.addModule(moduleAdapter.read(reader));
+                }
+                reader.endArray();
+              }
+            }
+            case "dependencies" -> {
+              if (beginArray(reader)) {
+                while (reader.hasNext()) {
+                  builder.addDependency(dependencyAdapter.read(reader));
+                }
+                reader.endArray();
+              }
+            }
+            case "capabilities" -> builder.capabilities(readCapabilities(reader));
+            case "metadata" -> builder.metadata(metadataAdapter.read(reader));
+            case "subpacks" -> {
+              if (beginArray(reader)) {
+                while (reader.hasNext()) {
+                  builder.addSubpack(subpackAdapter.read(reader));
+                }
+                reader.endArray();
+              }
+            }
+            default -> reader.skipValue();
+          }
+        }
+        reader.endObject();
+        return builder.build();
+      } catch (IllegalArgumentException | IllegalStateException | NullPointerException e) {
+        throw invalid(path, e);
+      }
+    }
+
+    @Override
+    public void write(JsonWriter writer, Manifest value) throws IOException {
+      writer.beginObject();
+      writer.name("format_version").value(value.getFormatVersion());
+      writer.name("header");
+      headerAdapter.write(writer, value.getHeader());
+      writer.name("modules");
+      writeIterable(writer, value.getModules(), moduleAdapter);
+      writer.name("dependencies");
+      writeIterable(writer, value.getDependencies(), dependencyAdapter);
+      writer.name("capabilities");
+      writeIterable(writer, value.getCapabilities(), capabilityAdapter);
+      writer.name("metadata");
+      metadataAdapter.write(writer, value.getMetadata());
+      writer.name("subpacks");
+      writeIterable(writer, value.getSubpacks(), subpackAdapter);
+      writer.endObject();
+    }
+
+    private EnumSet<Capability> readCapabilities(JsonReader reader) throws IOException {
+      if (reader.peek() == JsonToken.NULL) {
+        reader.nextNull();
+        return null;
+      }
+      EnumSet<Capability> set = EnumSet.noneOf(Capability.class);
+      reader.beginArray();
+      while (reader.hasNext()) {
+        var capability = capabilityAdapter.read(reader);
+        // unknown capabilities are read as null
+        if (capability != null) {
+          set.add(capability);
+        }
+      }
+      reader.endArray();
+      return set;
+    }
+  }
+
+  private static final class HeaderAdapter extends TypeAdapter<Header> {
+
+    private final boolean validate;
+    private final TypeAdapter<SemVer> semVerAdapter;
+    private final TypeAdapter<Header.PackScope> packScopeAdapter;
+
+    private HeaderAdapter(Gson gson, boolean validate) {
+      this.validate = validate;
+      this.semVerAdapter = gson.getAdapter(SemVer.class);
+      this.packScopeAdapter = gson.getAdapter(Header.PackScope.class);
+    }
+
+    @Override
+    public Header read(JsonReader reader) throws IOException {
+      String name = null;
+      String description = null;
+      UUID uuid = null;
+      SemVer version = null;
+      SemVer minEngineVersion = null;
+      Boolean platformLocked = null;
+      Header.PackScope packScope = null;
+      SemVer baseGameVersion = null;
+      Boolean lockTemplateOptions = null;
+      reader.beginObject();
+      while (reader.hasNext()) {
+        switch (reader.nextName()) {
+          case "name" -> name = nextString(reader);
+          case "description" -> description = nextString(reader);
+          case "uuid" -> uuid = nextUUID(reader);
+          case "version" -> version = semVerAdapter.read(reader);
+          case "min_engine_version" -> minEngineVersion = semVerAdapter.read(reader);
+          case "platform_locked" -> platformLocked = nextBoolean(reader);
+          case "pack_scope" -> packScope = packScopeAdapter.read(reader);
+          case "base_game_version" -> baseGameVersion = semVerAdapter.read(reader);
+          case "lock_template_options" -> lockTemplateOptions = nextBoolean(reader);
+          default -> reader.skipValue();
+        }
+      }
+      if (!validate) {
+        reader.endObject();
+        return new Header(name, description, uuid, version, minEngineVersion, platformLocked,
+            packScope, baseGameVersion, lockTemplateOptions);
+      }
+      Header header;
+      try {
+        header = new Header.Builder()
+            .name(name)
+            .description(description)
+            .uuid(uuid)
+            .version(version)
+            .minEngineVersion(minEngineVersion)
+            .platformLocked(platformLocked)
+            .packScope(packScope)
+            .baseGameVersion(baseGameVersion)
+            .lockTemplateOptions(lockTemplateOptions)
+            .build();
+      } catch (IllegalArgumentException | IllegalStateException | NullPointerException e) {
+        throw invalid(objectPath(reader), e);
+      }
+      reader.endObject();
+      return header;
+    }
+
+    @Override
+    public void write(JsonWriter writer, Header value) throws IOException {
+      writer.beginObject();
+      writer.name("name").value(value.getName());
+      writer.name("description").value(value.getDescription());
+      writer.name("uuid");
+      writeUUID(writer, value.getUUID());
+      writer.name("version");
+      semVerAdapter.write(writer, value.getVersion());
+      writer.name("min_engine_version");
+      semVerAdapter.write(writer, value.getMinEngineVersion());
+      writer.name("platform_locked").value(value.getPlatformLocked());
+      writer.name("pack_scope");
+      packScopeAdapter.write(writer, value.getPackScope());
+      writer.name("base_game_version");
+      semVerAdapter.write(writer, value.getBaseGameVersion());
+      writer.name("lock_template_options").value(value.getLockTemplateOptions());
+      writer.endObject();
+    }
+  }
+
+  private static final class ModuleAdapter extends TypeAdapter<Module_> {
+
+    private final boolean validate;
+    private final TypeAdapter<Module_.Type> typeAdapter;
+    private final TypeAdapter<SemVer> semVerAdapter;
+    private final TypeAdapter<Module_.Language> languageAdapter;
+    private final TypeAdapter<Path> pathAdapter;
+
+    private ModuleAdapter(Gson gson, boolean validate) {
+      this.validate = validate;
+      this.typeAdapter = gson.getAdapter(Module_.Type.class);
+      this.semVerAdapter = gson.getAdapter(SemVer.class);
+      this.languageAdapter = gson.getAdapter(Module_.Language.class);
+      this.pathAdapter = gson.getAdapter(Path.class);
+    }
+
+    @Override
+    public Module_ read(JsonReader reader) throws IOException {
+      Module_.Type type = null;
+      String description = null;
+      UUID uuid = null;
+      SemVer version = null;
+      Module_.Language language = null;
+      Path entry = null;
+      reader.beginObject();
+      while (reader.hasNext()) {
+        switch (reader.nextName()) {
+          case "type" -> type = typeAdapter.read(reader);
+          case "description" -> description = nextString(reader);
+          case "uuid" -> uuid = nextUUID(reader);
+          case "version" -> version = semVerAdapter.read(reader);
+          case "language" -> language = languageAdapter.read(reader);
+          case "entry" -> entry = pathAdapter.read(reader);
+          default -> reader.skipValue();
+        }
+      }
+      if (!validate) {
+        reader.endObject();
+        return new Module_(type, description, uuid, version, language, entry);
+      }
+      Module_ module;
+      try {
+        module = new Module_.Builder()
+            .type(type)
+            .description(description)
+            .uuid(uuid)
+            .version(version)
+            .language(language)
+            .entry(entry)
+            .build();
+      } catch (IllegalArgumentException | IllegalStateException | NullPointerException e) {
+        throw invalid(objectPath(reader), e);
+      }
+      reader.endObject();
+      return module;
+    }
+
+    @Override
+    public void write(JsonWriter writer, Module_ value) throws IOException {
+      writer.beginObject();
+      writer.name("type");
+      typeAdapter.write(writer, value.getType());
+      writer.name("description").value(value.getDescription());
+      writer.name("uuid");
+      writeUUID(writer, value.getUUID());
+      writer.name("version");
+      semVerAdapter.write(writer, value.getVersion());
+      writer.name("language");
+      languageAdapter.write(writer, value.getLanguage());
+      writer.name("entry");
+      pathAdapter.write(writer, value.getEntry());
+      writer.endObject();
+    }
+  }
+
+  private static final class DependencyAdapter extends TypeAdapter<Dependency> {
+
+    private final boolean validate;
+    private final TypeAdapter<SemVer> semVerAdapter;
+
+    private DependencyAdapter(Gson gson, boolean validate) {
+      this.validate = validate;
+      this.semVerAdapter = gson.getAdapter(SemVer.class);
+    }
+
+    @Override
+    public Dependency read(JsonReader reader) throws IOException {
+      UUID uuid = null;
+      SemVer version = null;
+      reader.beginObject();
+      while (reader.hasNext()) {
+        switch (reader.nextName()) {
+          case "uuid" -> uuid = nextUUID(reader);
+          case "version" -> version = semVerAdapter.read(reader);
+          default -> reader.skipValue();
+        }
+      }
+      if (!validate) {
+        reader.endObject();
+        return new Dependency(uuid, version);
+      }
+      Dependency dependency;
+      try {
+        dependency = new Dependency.Builder().uuid(uuid).version(version).build();
+      } catch (IllegalArgumentException | IllegalStateException | NullPointerException e) {
+        throw invalid(objectPath(reader), e);
+      }
+      reader.endObject();
+      return dependency;
+    }
+
+    @Override
+    public void write(JsonWriter writer, Dependency value) throws IOException {
+      writer.beginObject();
+      writer.name("uuid");
+      writeUUID(writer, value.getUUID());
+      writer.name("version");
+      semVerAdapter.write(writer, value.getVersion());
+      writer.endObject();
+    }
+  }
+
+  private static final class SubpackAdapter extends TypeAdapter<Subpack> {
+
+    private final boolean validate;
+    private final TypeAdapter<Path> pathAdapter;
+
+    private SubpackAdapter(Gson gson, boolean validate) {
+      this.validate = validate;
+      this.pathAdapter = gson.getAdapter(Path.class);
+    }
+
+    @Override
+    public Subpack read(JsonReader reader) throws IOException {
+      Path folderName = null;
+      String name = null;
+      Integer memoryTier = null;
+      reader.beginObject();
+      while (reader.hasNext()) {
+        switch (reader.nextName()) {
+          case "folder_name" -> folderName = pathAdapter.read(reader);
+          case "name" -> name = nextString(reader);
+          case "memory_tier" -> memoryTier = nextInteger(reader);
+          default -> reader.skipValue();
+        }
+      }
+      if (!validate) {
+        reader.endObject();
+        return new Subpack(folderName, name, memoryTier);
+      }
+      Subpack subpack;
+      try {
+        subpack = new Subpack.Builder().folderName(folderName).name(name).memoryTier(memoryTier)
+            .build();
+      } catch (IllegalArgumentException | IllegalStateException | NullPointerException e) {
+        throw invalid(objectPath(reader), e);
+      }
+      reader.endObject();
+      return subpack;
+    }
+
+    @Override
+    public void write(JsonWriter writer, Subpack value) throws IOException {
+      writer.beginObject();
+      writer.name("folder_name");
+      pathAdapter.write(writer, value.getFolderName());
+      writer.name("name").value(value.getName());
+      writer.name("memory_tier").value(value.getMemoryTier());
+      writer.endObject();
+    }
+  }
+
+  private static final class MetadataAdapter extends TypeAdapter<Metadata> {
+
+    private final boolean validate;
+    private final TypeAdapter<URL> urlAdapter;
+    private final TypeAdapter<SortedSet<Metadata.GeneratedWith>> generatedWithAdapter;
+
+    private MetadataAdapter(Gson gson, boolean validate) {
+      this.validate = validate;
+      this.urlAdapter = gson.getAdapter(URL.class);
+      this.generatedWithAdapter = gson.getAdapter(GENERATED_WITH_SET);
+    }
+
+    @Override
+    public Metadata read(JsonReader reader) throws IOException {
+      TreeSet<String> authors = null;
+      URL url = null;
+      String license = null;
+      SortedSet<Metadata.GeneratedWith> generatedWith = null;
+      reader.beginObject();
+      while (reader.hasNext()) {
+        switch (reader.nextName()) {
+          case "authors" -> authors = readAuthors(reader);
+          case "url" -> url = urlAdapter.read(reader);
+          case "license" -> license = nextString(reader);
+          case "generated_with" -> generatedWith = generatedWithAdapter.read(reader);
+          default -> reader.skipValue();
+        }
+      }
+      if (!validate) {
+        reader.endObject();
+        return new Metadata(authors, url, license, generatedWith);
+      }
+      Metadata metadata;
+      try {
+        metadata = new Metadata.Builder()
+            .authors(authors)
+            .url(url)
+            .license(license)
+            .generatedWith(generatedWith)
+            .build();
+      } catch (IllegalArgumentException | IllegalStateException | NullPointerException e) {
+        throw invalid(objectPath(reader), e);
+      }
+      reader.endObject();
+      return metadata;
+    }
+
+    @Override
+    public void write(JsonWriter writer, Metadata value) throws IOException {
+      writer.beginObject();
+      writer.name("authors");
+      var authors = value.getAuthors();
+      if (authors == null) {
+        writer.nullValue();
+      } else {
+        writer.beginArray();
+        for (var e : authors) {
+          writer.value(e);
+        }
+        writer.endArray();
+      }
+      writer.name("url");
+      urlAdapter.write(writer, value.getURL());
+      writer.name("license").value(value.getLicense());
+      writer.name("generated_with");
+      generatedWithAdapter.write(writer, value.getGeneratedWith());
+      writer.endObject();
+    }
+
+    private static TreeSet<String> readAuthors(JsonReader reader) throws IOException {
+      if (reader.peek() == JsonToken.NULL) {
+        reader.nextNull();
+        return null;
+      }
+      TreeSet<String> set = new TreeSet<>();
+      reader.beginArray();
+      while (reader.hasNext()) {
+        set.add(nextString(reader));
+      }
+      reader.endArray();
+      return set;
+    }
+  }
+
+  // sorted in the natural ordering, as the reflective adapter did
+  private static <E> TreeSet<E> readTreeSet(JsonReader reader, TypeAdapter<E> elementAdapter)
+      throws IOException {
+    if (reader.peek() == JsonToken.NULL) {
+      reader.nextNull();
+      return null;
+    }
+    TreeSet<E> set = new TreeSet<>();
+    reader.beginArray();
+    while (reader.hasNext()) {
+      set.add(elementAdapter.read(reader));
+    }
+    reader.endArray();
+    return set;
+  }
+
+  // false if null
+  private static boolean beginArray(JsonReader reader) throws IOException {
+    if (reader.peek() == JsonToken.NULL) {
+      reader.nextNull();
+      return false;
+    }
+    reader.beginArray();
+    return true;
+  }
+
+  // the builders throw IllegalArgumentException, IllegalStateException, or NullPointerException
+  // reported with the path like other syntax errors, as Gson would wrap only some of them
+  private static JsonSyntaxException invalid(String path, RuntimeException e) {
+    return new JsonSyntaxException(e.getMessage() + " at path " + path, e);
+  }
+
+  // the path of the object being read, without the last name read in it
+  // objects are built before reading the end of them, so that the path is computed only on errors
+  private static String objectPath(JsonReader reader) {
+    var path = reader.getPath();
+    return path.substring(0, path.lastIndexOf('.'));
+  }
+
+  private static <E> void writeIterable(JsonWriter writer, Iterable<E> iterable,
+      TypeAdapter<E> elementAdapter) throws IOException {
+    if (iterable == null) {
+      writer.nullValue();
+      return;
+    }
+    writer.beginArray();
+    for (var e : iterable) {
+      elementAdapter.write(writer, e);
+    }
+    writer.endArray();
+  }
+
+  // same as TypeAdapters.STRING of Gson
+  private static String nextString(JsonReader reader) throws IOException {
+    return switch (reader.peek()) {
+      case NULL -> {
+        reader.nextNull();
+        yield null;
+      }
+      case BOOLEAN -> Boolean.toString(reader.nextBoolean());
+      default -> reader.nextString();
+    };
+  }
+
+  // same as TypeAdapters.INTEGER of Gson
+  private static Integer nextInteger(JsonReader reader) throws IOException {
+    if (reader.peek() == JsonToken.NULL) {
+      reader.nextNull();
+      return null;
+    }
+    try {
+      return reader.nextInt();
+    } catch (NumberFormatException e) {
+      throw new JsonSyntaxException(e);
+    }
+  }
+
+  // same as TypeAdapters.BOOLEAN of Gson
+  private static Boolean nextBoolean(JsonReader reader) throws IOException {
+    return switch (reader.peek()) {
+      case NULL -> {
+        reader.nextNull();
+        yield null;
+      }
+      case STRING -> Boolean.parseBoolean(reader.nextString());
+      default -> reader.nextBoolean();
+    };
+  }
+
+  private static UUID nextUUID(JsonReader reader) throws IOException {
+    if (reader.peek() == JsonToken.NULL) {
+      reader.nextNull();
+      return null;
+    }
+    return UUID.fromString(reader.nextString());
+  }
+
+  private static void writeUUID(JsonWriter writer, UUID uuid) throws IOException {
+    writer.value(uuid == null ? null : uuid.toString());
+  }
+}
@@ -9,15 +9,18 @@ package io.github.risu729.mcbe.manifest4j;
 
 import java.nio.file.FileSystems;
 import java.nio.file.Path;
+import java.nio.file.PathMatcher;
 import java.util.Comparator;
 import java.util.EnumSet;
 import java.util.Objects;
-import java.util.regex.Pattern;
 import java.util.Set;
 import java.util.UUID;
 
+import com.google.gson.annotations.JsonAdapter;
+
 import io.github.risu729.mcbe.manifest4j.gson.ManifestGson;
 
+@JsonAdapter(ModelAdapterFactory.class)
 public final class Module_ implements Comparable<Module_> {
 
   static final Set<EnumSet<Type>> PERMITTED_TYPE_SETS = Set.of(
@@ -26,16 +29,11 @@ public final class Module_ implements Comparable<Module_> {
       EnumSet.of(Type.WORLD_TEMPLATE),
       EnumSet.of(Type.SKIN_PACK));
 
-  private static final Language DEFAULT_LANGUAGE = Language.JAVASCRIPT;
+  static final Language DEFAULT_LANGUAGE = Language.JAVASCRIPT;
+  private static final Path SCRIPTS = Path.of("scripts");
 
   static final Comparator<Module_> STRICT_COMPARATOR =
-      Comparator.comparing(Module_::getUUID, Comparator.nullsFirst(Comparator.naturalOrder()));
-  private static final Comparator<Module_> COMPARATOR = STRICT_COMPARATOR
-      .thenComparing(Module_::getType, Comparator.nullsFirst(Comparator.naturalOrder()))
-      .thenComparing(Module_::getVersion, Comparator.nullsFirst(Comparator.naturalOrder()))
-      .thenComparing(Module_::getLanguage, Comparator.nullsFirst(Comparator.naturalOrder()))
-      .thenComparing(Module_::getEntry, Comparator.nullsFirst(Comparator.naturalOrder()))
-      .thenComparing(Module_::getDescription, Comparator.nullsFirst(Comparator.naturalOrder()));
+      (a, b) -> Comparators.compare(a.uuid, b.uuid);
 
   // necessary
   // DATA, CLIENT_DATA, INTERFACE, and SCRIPT can be put in the same pack
@@ -51,9 +49,19 @@ public final class Module_ implements Comparable<Module_> {
   // the top directory must be "scripts" and the extension must be ".js"
   private final Path entry;
 
+  // computed on first use
+  private transient int hash;
+  private transient String string;
+
   public static Module_ of(Type type) {
+    return of(type, null);
+  }
+
+  // packName is for the generator of the UUID, see Builder.packName
+  public static Module_ of(Type type, String packName) {
     return switch (type) {
-      case RESOURCES, DATA, WORLD_TEMPLATE, SKIN_PACK -> new Builder().type(type).build();
+      case RESOURCES, DATA, WORLD_TEMPLATE, SKIN_PACK ->
+          new Builder().type(type).packName(packName).build();
       default -> throw new UnsupportedOperationException("specified type is not supported: " + type);
     };
   }
@@ -97,26 +105,34 @@ public final class Module_ implements Comparable<Module_> {
     JAVASCRIPT("js");
 
     private final String extension;
+    // created once, as parsing the glob is slower than matching
+    private final PathMatcher matcher;
 
     private Language(String extension) {
       this.extension = extension;
+      this.matcher = FileSystems.getDefault().getPathMatcher("glob:*." + extension);
     }
 
-    private String getExtension() {
+    String getExtension() {
       return extension;
     }
+
+    boolean matches(Path fileName) {
+      return matcher.matches(fileName);
+    }
   }
 
   public static class Builder {
 
-    private static final Pattern FILE_NAME_REGEX = Pattern.compile("^(?!^(CON|PRN|AUX|NUL|COM[1-9]|LPT[1-9])(\\..*$|$))([^<>:\"/\\\\\\|\\?\\*\\x00-\\x20\\x7f][^<>:\"/\\\\\\|\\?\\*\\x00-\\x1f\\x7f]{0,253}[^\\.<>:\"/\\\\\\|\\?\\*\\x00-\\x20\\x7f]|[^\\.<>:\"/\\\\\\|\\?\\*\\x00-\\x20\\x7f])$", Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
-    
     private Type type;
     private String description;
     private UUID uuid;
     private SemVer version;
     private Language language;
     private Path entry;
+    private UuidGenerator uuidGenerator;
+    // only to generate the UUID
+    private String packName;
 
     public Builder() {
     }
@@ -145,6 +161,19 @@ public final class Module_ implements Comparable<Module_> {
       return this;
     }
 
+    // generates the UUID if not given, UuidGenerator.getDefault() if null
+    // name-based generators need packName, otherwise the UUID is random
+    public Builder uuidGenerator(UuidGenerator uuidGenerator) {
+      this.uuidGenerator = uuidGenerator;
+      return this;
+    }
+
+    // the name of the pack for the generator of the UUID, such as UuidGenerator.nameBased()
+    public Builder packName(String packName) {
+      this.packName = packName;
+      return this;
+    }
+
     public Builder version(SemVer version) {
       this.version = version;
       return this;
@@ -160,22 +189,16 @@ public final class Module_ implements Comparable<Module_> {
         this.entry = null;
         return this;
       }
-      final var scripts = Path.of("scripts");
-      for (int i = 0; i < 2; i++) {
-        entry = switch (i) {
-          case 0 -> entry.normalize();
-          case 1 -> scripts.relativize(entry);
-          default -> throw new AssertionError();
-        };
-        if (entry.getNameCount() == 1) {
-          if (!FILE_NAME_REGEX.matcher(entry.toString()).matches()) {
-            throw new IllegalArgumentException("invalid file name: " + entry);
-          }
-          this.entry = scripts.resolve(entry);
-          return this;
-        }
+      var fileName = FileNames.directChild(entry, SCRIPTS);
+      if (fileName == null) {
+        throw new IllegalArgumentException(
+            "entry must be a file directly under \"scripts\": " + entry.normalize());
+      }
+      if (!FileNames.isValidFile(fileName.toString())) {
+        throw new IllegalArgumentException("invalid file name: " + fileName);
       }
-      throw new IllegalArgumentException("entry must be a file directly under \"scripts\": " + entry);
+      this.entry = SCRIPTS.resolve(fileName);
+      return this;
     }
 
     public Module_ build() {
@@ -186,15 +209,15 @@ public final class Module_ implements Comparable<Module_> {
   private Module_(Builder builder) {
     this.type = Objects.requireNonNull(builder.type, "type is necessary");
     this.description = builder.description;
-    this.uuid = Objects.requireNonNullElse(builder.uuid, UUID.randomUUID());
+    this.uuid = Objects.requireNonNullElseGet(builder.uuid,
+        () -> Objects.requireNonNullElseGet(builder.uuidGenerator, UuidGenerator::getDefault)
+            .generate(builder.packName, type));
     this.version = Objects.requireNonNullElse(builder.version, SemVer.DEFAULT);
     
     if (builder.type == Type.SCRIPT) {
       this.language = Objects.requireNonNullElse(builder.language, DEFAULT_LANGUAGE);
       Objects.requireNonNull(builder.entry, "entry is necessary when type is script");
-      if (!FileSystems.getDefault()
-          .getPathMatcher("glob:*." + language.getExtension())
-          .matches(builder.entry.getFileName())) {
+      if (!language.matches(builder.entry.getFileName())) {
         throw new IllegalStateException(
             "extension of entry must be " + language.getExtension()
                 + " when language is " + language + ": " + builder.entry);
@@ -214,9 +237,40 @@ public final class Module_ implements Comparable<Module_> {
     }
   }
 
+  // without validation, only for deserialization
+  Module_(Type type, String description, UUID uuid, SemVer version, Language language,
+      Path entry) {
+    this.type = type;
+    this.description = description;
+    this.uuid = uuid;
+    this.version = version;
+    this.language = language;
+    this.entry = entry;
+  }
+
   @Override
   public int compareTo(Module_ other) {
-    return COMPARATOR.compare(this, other);
+    int result = Comparators.compare(uuid, other.uuid);
+    if (result != 0) {
+      return result;
+    }
+    result = Comparators.compare(type, other.type);
+    if (result != 0) {
+      return result;
+    }
+    result = Comparators.compare(version, other.version);
+    if (result != 0) {
+      return result;
+    }
+    result = Comparators.compare(language, other.language);
+    if (result != 0) {
+      return result;
+    }
+    result = Comparators.compare(entry, other.entry);
+    if (result != 0) {
+      return result;
+    }
+    return Comparators.compare(description, other.description);
   }
 
   @Override
@@ -235,18 +289,28 @@ public final class Module_ implements Comparable<Module_> {
 
   @Override
   public int hashCode() {
-    int hash = 1;
+    int hash = this.hash;
+    if (hash != 0) {
+      return hash;
+    }
+    hash = 1;
     hash = hash * 31 + Objects.hashCode(type);
     hash = hash * 31 + Objects.hashCode(description);
     hash = hash * 31 + Objects.hashCode(uuid);
     hash = hash * 31 + Objects.hashCode(version);
     hash = hash * 31 + Objects.hashCode(language);
     hash = hash * 31 + Objects.hashCode(entry);
+    this.hash = hash;
     return hash;
   }
 
   @Override
   public String toString() {
-    return ManifestGson.SERIALIZE_NULLS.toJson(this);
+    var string = this.string;
+    if (string == null) {
+      string = ManifestGson.serializeNulls().toJson(this);
+      this.string = string;
+    }
+    return string;
   }
 }
\ No newline at end of file
@@ -8,18 +8,28 @@
 package io.github.risu729.mcbe.manifest4j;
 
 import java.util.Objects;
-import java.util.regex.Pattern;
 
 // Follows Semantic Versioning 2.0.0 (https://semver.org) but denoting a pre-release version and build metadata is not allowed.
 
 public final class SemVer implements Comparable<SemVer> {
 
-  private static final Pattern SEMVER_REGEX = Pattern.compile("^(0|[1-9]\\d*)\\.(0|[1-9]\\d*)\\.(0|[1-9]\\d*)$");
+  // a direct-mapped cache, only a few hundred versions are seen in practice
+  // racy but benign, as SemVer is immutable and has only final fields
+  private static final int CACHE_SIZE = 1024;
+  private static final SemVer[] CACHE = new SemVer[CACHE_SIZE];
 
   static final SemVer DEFAULT = of(1, 0, 0);
 
   public static SemVer of(int major, int minor, int patch) {
-    return new SemVer(major, minor, patch);
+    int index = cacheIndex(major, minor, patch);
+    var cached = CACHE[index];
+    if (cached != null
+        && cached.major == major && cached.minor == minor && cached.patch == patch) {
+      return cached;
+    }
+    var semVer = new SemVer(major, minor, patch);
+    CACHE[index] = semVer;
+    return semVer;
   }
 
   public static SemVer fromArray(int[] array) {
@@ -30,21 +40,47 @@ public final class SemVer implements Comparable<SemVer> {
     return of(array[0], array[1], array[2]);
   }
 
+  // equivalent to matching ^(0|[1-9]\d*)\.(0|[1-9]\d*)\.(0|[1-9]\d*)$
   public static SemVer fromString(String str) {
     Objects.requireNonNull(str);
-    if (!SEMVER_REGEX.matcher(str).matches()) {
-      throw new IllegalArgumentException("malformed semantic verioning: " + str);
+    int firstDot = str.indexOf('.');
+    int secondDot = firstDot < 0 ? -1 : str.indexOf('.', firstDot + 1);
+    if (secondDot < 0) {
+      throw new IllegalArgumentException("malformed semantic versioning: " + str);
+    }
+    return of(parseNumber(str, 0, firstDot),
+        parseNumber(str, firstDot + 1, secondDot),
+        parseNumber(str, secondDot + 1, str.length()));
+  }
+
+  private static int parseNumber(String str, int begin, int end) {
+    // empty, or leading zeros
+    if (begin == end || (str.charAt(begin) == '0' && end - begin > 1)) {
+      throw new IllegalArgumentException("malformed semantic versioning: " + str);
     }
-    return fromArray(Pattern.compile("\\.")
-        .splitAsStream(str)
-        .mapToInt(Integer::valueOf)
-        .toArray());
+    int value = 0;
+    for (int i = begin; i < end; i++) {
+      int digit = str.charAt(i) - '0';
+      if (digit < 0 || digit > 9 || value > (Integer.MAX_VALUE - digit) / 10) {
+        throw new IllegalArgumentException("malformed semantic versioning: " + str);
+      }
+      value = value * 10 + digit;
+    }
+    return value;
+  }
+
+  private static int cacheIndex(int major, int minor, int patch) {
+    int hash = (major * 31 + minor) * 31 + patch;
+    return (hash ^ (hash >>> 16)) & (CACHE_SIZE - 1);
   }
 
   private final int major;
   private final int minor;
   private final int patch;
 
+  // computed on first use, the hash is not cached as computing it costs no more than a lookup
+  private transient String string;
+
   private SemVer(int major, int minor, int patch) {
     if (major < 0 || minor < 0 || patch < 0) {
       throw new IllegalArgumentException(
@@ -55,16 +91,30 @@ public final class SemVer implements Comparable<SemVer> {
     this.patch = patch;
   }
 
+  public int getMajor() {
+    return major;
+  }
+
+  public int getMinor() {
+    return minor;
+  }
+
+  public int getPatch() {
+    return patch;
+  }
+
   public int[] toArray() {
     return new int[] {major, minor, patch};
   }
 
   @Override
   public int compareTo(SemVer other) {
+    if (this == other) {
+      return 0;
+    }
     return major != other.major ? Integer.compare(major, other.major)
         : minor != other.minor ? Integer.compare(minor, other.minor)
-            : patch != other.patch ? Integer.compare(patch, other.patch)
-                : 0;
+            : Integer.compare(patch, other.patch);
   }
 
   @Override
@@ -89,12 +139,17 @@ public final class SemVer implements Comparable<SemVer> {
 
   @Override
   public String toString() {
-    var str = new StringBuilder();
-    str.append(major);
-    str.append(".");
-    str.append(minor);
-    str.append(".");
-    str.append(patch);
-    return str.toString();
+    var string = this.string;
+    if (string == null) {
+      var str = new StringBuilder();
+      str.append(major);
+      str.append(".");
+      str.append(minor);
+      str.append(".");
+      str.append(patch);
+      string = str.toString();
+      this.string = string;
+    }
+    return string;
   }
 }
\ No newline at end of file
@@ -0,0 +1,396 @@
+/*
+ * Copyright (c) 2022 Risu
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.github.risu729.mcbe.manifest4j;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.SortedSet;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+// immutable NavigableSet backed by a sorted array, so that the model classes can return their
+// sets without copying
+// equality and lookups use the comparator, as TreeSet does, and subsets share the array
+final class SortedArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
+
+  private final Object[] elements;
+  private final int from;
+  private final int to;
+  // null for the natural ordering
+  private final Comparator<? super E> comparator;
+  // the range of a subset, against which the keys of its subsets are checked as TreeSet does,
+  // null if unbounded
+  private final Bound<E> low;
+  private final Bound<E> high;
+
+  private SortedArraySet(Object[] elements, int from, int to, Comparator<? super E> comparator) {
+    this(elements, from, to, comparator, null, null);
+  }
+
+  private SortedArraySet(Object[] elements, int from, int to, Comparator<? super E> comparator,
+      Bound<E> low, Bound<E> high) {
+    this.elements = elements;
+    this.from = from;
+    this.to = to;
+    this.comparator = comparator;
+    this.low = low;
+    this.high = high;
+  }
+
+  // null if the set is null, the ordering of the set is kept
+  static <E> SortedArraySet<E> copyOf(SortedSet<E> set) {
+    if (set == null) {
+      return null;
+    }
+    if (set instanceof SortedArraySet<E> sortedArraySet) {
+      return sortedArraySet;
+    }
+    var array = set.toArray();
+    return new SortedArraySet<>(array, 0, array.length, set.comparator());
+  }
+
+  // sorted and deduplicated, the first of equal elements is kept as TreeSet.add does
+  static <E> SortedArraySet<E> copyOf(Collection<? extends E> collection,
+      Comparator<? super E> comparator) {
+    if (collection == null) {
+      return null;
+    }
+    var array = collection.toArray();
+    for (var e : array) {
+      Objects.requireNonNull(e);
+    }
+    @SuppressWarnings("unchecked")
+    var typed = (E[]) array;
+    Arrays.sort(typed, comparator);
+    int length = 0;
+    for (int i = 0; i < array.length; i++) {
+      if (length == 0 || compare(typed[length - 1], typed[i], comparator) != 0) {
+        array[length++] = array[i];
+      }
+    }
+    return new SortedArraySet<>(length == array.length ? array : Arrays.copyOf(array, length), 0,
+        length, comparator);
+  }
+
+  // the elements must be in the order of the comparator without duplicates, which is checked
+  static <E> SortedArraySet<E> ofSorted(Object[] elements, Comparator<? super E> comparator) {
+    var set = new SortedArraySet<E>(elements, 0, elements.length, comparator);
+    for (int i = 1; i < elements.length; i++) {
+      if (compare(set.element(i - 1), set.element(i), comparator) >= 0) {
+        throw new IllegalArgumentException("elements are not sorted");
+      }
+    }
+    return set;
+  }
+
+  @Override
+  public int size() {
+    return to - from;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return to == from;
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    return indexOf(o) >= 0;
+  }
+
+  @Override
+  public Iterator<E> iterator() {
+    return new Iterator<>() {
+      private int index = from;
+
+      @Override
+      public boolean hasNext() {
+        return index < to;
+      }
+
+      @Override
+      public E next() {
+        if (index >= to) {
+          throw new NoSuchElementException();
+        }
+        return element(index++);
+      }
+    };
+  }
+
+  @Override
+  public Iterator<E> descendingIterator() {
+    return descendingSet().iterator();
+  }
+
+  @Override
+  public Object[] toArray() {
+    return Arrays.copyOfRange(elements, from, to);
+  }
+
+  @Override
+  public Comparator<? super E> comparator() {
+    return comparator;
+  }
+
+  @Override
+  public E first() {
+    if (isEmpty()) {
+      throw new NoSuchElementException();
+    }
+    return element(from);
+  }
+
+  @Override
+  public E last() {
+    if (isEmpty()) {
+      throw new NoSuchElementException();
+    }
+    return element(to - 1);
+  }
+
+  @Override
+  public E lower(E e) {
+    return elementOrNull(lowerIndex(e, false) - 1);
+  }
+
+  @Override
+  public E floor(E e) {
+    return elementOrNull(lowerIndex(e, true) - 1);
+  }
+
+  @Override
+  public E ceiling(E e) {
+    return elementOrNull(lowerIndex(e, false));
+  }
+
+  @Override
+  public E higher(E e) {
+    return elementOrNull(lowerIndex(e, true));
+  }
+
+  @Override
+  public NavigableSet<E> descendingSet() {
+    var array = toArray();
+    Collections.reverse(Arrays.asList(array));
+    return new SortedArraySet<>(array, 0, array.length, Collections.reverseOrder(comparator),
+        high, low);
+  }
+
+  @Override
+  public NavigableSet<E> subSet(E fromElement, boolean fromInclusive, E toElement,
+      boolean toInclusive) {
+    checkInRange(fromElement, fromInclusive, "fromKey");
+    checkInRange(toElement, toInclusive, "toKey");
+    if (compare(fromElement, toElement, comparator) > 0) {
+      throw new IllegalArgumentException("fromKey > toKey");
+    }
+    int start = lowerIndex(fromElement, !fromInclusive);
+    int end = Math.max(start, lowerIndex(toElement, toInclusive));
+    return new SortedArraySet<>(elements, start, end, comparator,
+        new Bound<>(fromElement, fromInclusive), new Bound<>(toElement, toInclusive));
+  }
+
+  @Override
+  public NavigableSet<E> headSet(E toElement, boolean inclusive) {
+    checkInRange(toElement, inclusive, "toKey");
+    return new SortedArraySet<>(elements, from, lowerIndex(toElement, inclusive), comparator,
+        low, new Bound<>(toElement, inclusive));
+  }
+
+  @Override
+  public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+    checkInRange(fromElement, inclusive, "fromKey");
+    return new SortedArraySet<>(elements, lowerIndex(fromElement, !inclusive), to, comparator,
+        new Bound<>(fromElement, inclusive), high);
+  }
+
+  @Override
+  public SortedSet<E> subSet(E fromElement, E toElement) {
+    return subSet(fromElement, true, toElement, false);
+  }
+
+  @Override
+  public SortedSet<E> headSet(E toElement) {
+    return headSet(toElement, false);
+  }
+
+  @Override
+  public SortedSet<E> tailSet(E fromElement) {
+    return tailSet(fromElement, true);
+  }
+
+  @Override
+  public boolean add(E e) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public boolean remove(Object o) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public boolean addAll(Collection<? extends E> c) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public boolean removeAll(Collection<?> c) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public boolean retainAll(Collection<?> c) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public boolean removeIf(Predicate<? super E> filter) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void clear() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public E pollFirst() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public E pollLast() {
+    throw new UnsupportedOperationException();
+  }
+
+  // the same set if every element is mapped to itself
+  // elements must be mapped to equal ones, so that the order is kept
+  SortedArraySet<E> map(UnaryOperator<E> mapper) {
+    Object[] mapped = null;
+    for (int i = from; i < to; i++) {
+      var e = mapper.apply(element(i));
+      if (mapped == null && e != elements[i]) {
+        mapped = toArray();
+      }
+      if (mapped != null) {
+        mapped[i - from] = e;
+      }
+    }
+    return mapped == null ? this : new SortedArraySet<>(mapped, 0, mapped.length, comparator);
+  }
+
+  // equal elements in the same order with the same comparator, unlike equals which only checks
+  // that the elements of one set are contained in the other by its comparator
+  static boolean identical(SortedArraySet<?> a, SortedArraySet<?> b) {
+    if (a == b) {
+      return true;
+    }
+    if (a == null || b == null || a.comparator != b.comparator || a.size() != b.size()) {
+      return false;
+    }
+    for (int i = 0; i < a.size(); i++) {
+      if (!a.elements[a.from + i].equals(b.elements[b.from + i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // lexicographic, like comparing the arrays of the elements
+  static <E extends Comparable<? super E>> int compare(SortedArraySet<E> a,
+      SortedArraySet<E> b) {
+    int length = Math.min(a.size(), b.size());
+    for (int i = 0; i < length; i++) {
+      int result = a.element(a.from + i).compareTo(b.element(b.from + i));
+      if (result != 0) {
+        return result;
+      }
+    }
+    return a.size() - b.size();
+  }
+
+  @SuppressWarnings("unchecked")
+  private E element(int index) {
+    return (E) elements[index];
+  }
+
+  private E elementOrNull(int index) {
+    return index >= from && index < to ? element(index) : null;
+  }
+
+  @SuppressWarnings("unchecked")
+  private int indexOf(Object o) {
+    int low = from;
+    int high = to - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int result = compare(element(mid), (E) o, comparator);
+      if (result < 0) {
+        low = mid + 1;
+      } else if (result > 0) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -1;
+  }
+
+  // the index of the first element greater than, or greater than or equal to if not inclusive,
+  // the key
+  private int lowerIndex(E key, boolean inclusive) {
+    int low = from;
+    int high = to;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      int result = compare(element(mid), key, comparator);
+      if (result < 0 || (inclusive && result == 0)) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  // an inclusive key must be in the range, and an exclusive key may also be an exclusive bound
+  // of the range, as in TreeSet
+  private void checkInRange(E key, boolean inclusive, String name) {
+    if (low != null) {
+      int result = compare(key, low.key, comparator);
+      if (result < 0 || (result == 0 && inclusive && !low.inclusive)) {
+        throw new IllegalArgumentException(name + " out of range");
+      }
+    }
+    if (high != null) {
+      int result = compare(key, high.key, comparator);
+      if (result > 0 || (result == 0 && inclusive && !high.inclusive)) {
+        throw new IllegalArgumentException(name + " out of range");
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <E> int compare(E a, E b, Comparator<? super E> comparator) {
+    return comparator == null
+        ? ((Comparable<? super E>) Objects.requireNonNull(a)).compareTo(Objects.requireNonNull(b))
+        : comparator.compare(a, b);
+  }
+
+  private record Bound<E>(E key, boolean inclusive) {
+  }
+}
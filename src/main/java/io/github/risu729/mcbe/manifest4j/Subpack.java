@@ -10,22 +10,25 @@ package io.github.risu729.mcbe.manifest4j;
 import java.nio.file.Path;
 import java.util.Comparator;
 import java.util.Objects;
-import java.util.regex.Pattern;
+
+import com.google.gson.annotations.JsonAdapter;
 
 import io.github.risu729.mcbe.manifest4j.gson.ManifestGson;
 
+@JsonAdapter(ModelAdapterFactory.class)
 public final class Subpack implements Comparable<Subpack> {
 
   static final Comparator<Subpack> STRICT_COMPARATOR =
-      Comparator.comparing(Subpack::getFolderName, Comparator.nullsFirst(Comparator.naturalOrder()));
-  private static final Comparator<Subpack> COMPARATOR = STRICT_COMPARATOR
-      .thenComparing(Subpack::getName, Comparator.nullsFirst(Comparator.naturalOrder()))
-      .thenComparing(Subpack::getMemoryTier, Comparator.nullsFirst(Comparator.naturalOrder()));
+      (a, b) -> Comparators.compare(a.folderName, b.folderName);
 
   private final Path folderName; // necessary
   private final String name; // necessary
   private final Integer memoryTier; // 1 memory_tier == 0.25GB
 
+  // computed on first use
+  private transient int hash;
+  private transient String string;
+
   public Path getFolderName() {
     return folderName;
   }
@@ -40,9 +43,7 @@ public final class Subpack implements Comparable<Subpack> {
 
   public static class Builder {
 
-    private static final Pattern FOLDER_NAME_REGEX = Pattern.compile(
-        "^(?!^(CON|PRN|AUX|NUL|COM[1-9]|LPT[1-9])$)([^\\.<>:\"/\\\\\\|\\?\\*\\x00-\\x20\\x7f][^\\.<>:\"/\\\\\\|\\?\\*\\x00-\\x1f\\x7f]{0,253}[^\\.<>:\"/\\\\\\|\\?\\*\\x00-\\x20\\x7f]|[^\\.<>:\"/\\\\\\|\\?\\*\\x00-\\x20\\x7f])$",
-        Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+    private static final Path SUBPACKS = Path.of("subpacks");
 
     private Path folderName;
     private String name;
@@ -59,22 +60,17 @@ public final class Subpack implements Comparable<Subpack> {
 
     public Builder folderName(Path folderName) {
       Objects.requireNonNull(folderName, "folder_name must not be null");
-      for (int i = 0; i < 2; i++) {
-        folderName = switch (i) {
-          case 0 -> folderName.normalize();
-          case 1 -> Path.of("subpacks").relativize(folderName);
-          default -> throw new AssertionError();
-        };
-        if (folderName.getNameCount() == 1) {
-          if (!FOLDER_NAME_REGEX.matcher(folderName.toString()).matches()) {
-            throw new IllegalArgumentException("invalid folder name: " + folderName);
-          }
-          this.folderName = folderName;
-          return this;
-        }
+      var name = FileNames.directChild(folderName, SUBPACKS);
+      if (name == null) {
+        throw new IllegalArgumentException(
+            "folder_name must be a directory directly under \"subpacks\": "
+                + folderName.normalize());
       }
-      throw new IllegalArgumentException(
-          "folder_name must be a directory directly under \"subpacks\": " + folderName);
+      if (!FileNames.isValidFolder(name.toString())) {
+        throw new IllegalArgumentException("invalid folder name: " + name);
+      }
+      this.folderName = name;
+      return this;
     }
 
     public Builder name(String name) {
@@ -102,9 +98,24 @@ public final class Subpack implements Comparable<Subpack> {
     this.memoryTier = builder.memoryTier;
   }
 
+  // without validation, only for deserialization
+  Subpack(Path folderName, String name, Integer memoryTier) {
+    this.folderName = folderName;
+    this.name = name;
+    this.memoryTier = memoryTier;
+  }
+
   @Override
   public int compareTo(Subpack other) {
-    return COMPARATOR.compare(this, other);
+    int result = Comparators.compare(folderName, other.folderName);
+    if (result != 0) {
+      return result;
+    }
+    result = Comparators.compare(name, other.name);
+    if (result != 0) {
+      return result;
+    }
+    return Comparators.compare(memoryTier, other.memoryTier);
   }
 
   @Override
@@ -120,15 +131,25 @@ public final class Subpack implements Comparable<Subpack> {
 
   @Override
   public int hashCode() {
-    int hash = 1;
+    int hash = this.hash;
+    if (hash != 0) {
+      return hash;
+    }
+    hash = 1;
     hash = hash * 31 + Objects.hashCode(folderName);
     hash = hash * 31 + Objects.hashCode(name);
     hash = hash * 31 + Objects.hashCode(memoryTier);
+    this.hash = hash;
     return hash;
   }
 
   @Override
   public String toString() {
-    return ManifestGson.SERIALIZE_NULLS.toJson(this);
+    var string = this.string;
+    if (string == null) {
+      string = ManifestGson.serializeNulls().toJson(this);
+      this.string = string;
+    }
+    return string;
   }
 }
\ No newline at end of file
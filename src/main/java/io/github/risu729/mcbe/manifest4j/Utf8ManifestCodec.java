@@ -0,0 +1,744 @@
+/*
+ * Copyright (c) 2022 Risu
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.github.risu729.mcbe.manifest4j;
+
+import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.UUID;
+
+// reads the same values as ModelAdapterFactory does, but only from strict JSON
+// anything else is left to Gson, so that errors are reported exactly the same
+final class Utf8ManifestCodec implements ManifestCodec {
+
+  static final Utf8ManifestCodec INSTANCE = new Utf8ManifestCodec();
+
+  private Utf8ManifestCodec() {
+  }
+
+  @Override
+  public Manifest decode(ByteBuffer input) {
+    Objects.requireNonNull(input, "input must not be null");
+    byte[] bytes;
+    int begin;
+    int end;
+    if (input.hasArray()) {
+      bytes = input.array();
+      begin = input.arrayOffset() + input.position();
+      end = input.arrayOffset() + input.limit();
+    } else {
+      // copied at once, faster than reading the buffer byte by byte
+      bytes = new byte[input.remaining()];
+      input.duplicate().get(bytes);
+      begin = 0;
+      end = bytes.length;
+    }
+    try {
+      return new Decoder(bytes, begin, end).manifest();
+    } catch (UnsupportedInputException e) {
+      return GsonManifestCodec.INSTANCE.decode(input);
+    }
+  }
+
+  @Override
+  public void encode(Manifest manifest, OutputStream out) {
+    GsonManifestCodec.INSTANCE.encode(manifest, out);
+  }
+
+  // thrown to fall back to Gson, without a stack trace as it is not an error
+  private static final class UnsupportedInputException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final UnsupportedInputException INSTANCE = new UnsupportedInputException();
+
+    private UnsupportedInputException() {
+      super(null, null, false, false);
+    }
+  }
+
+  private static final class Decoder {
+
+    private static final byte[] FORMAT_VERSION = key("format_version");
+    private static final byte[] HEADER = key("header");
+    private static final byte[] MODULES = key("modules");
+    private static final byte[] DEPENDENCIES = key("dependencies");
+    private static final byte[] CAPABILITIES = key("capabilities");
+    private static final byte[] METADATA = key("metadata");
+    private static final byte[] SUBPACKS = key("subpacks");
+    private static final byte[] NAME = key("name");
+    private static final byte[] DESCRIPTION = key("description");
+    private static final byte[] UUID_ = key("uuid");
+    private static final byte[] VERSION = key("version");
+    private static final byte[] MIN_ENGINE_VERSION = key("min_engine_version");
+    private static final byte[] PLATFORM_LOCKED = key("platform_locked");
+    private static final byte[] PACK_SCOPE = key("pack_scope");
+    private static final byte[] BASE_GAME_VERSION = key("base_game_version");
+    private static final byte[] LOCK_TEMPLATE_OPTIONS = key("lock_template_options");
+    private static final byte[] TYPE = key("type");
+    private static final byte[] LANGUAGE = key("language");
+    private static final byte[] ENTRY = key("entry");
+    private static final byte[] FOLDER_NAME = key("folder_name");
+    private static final byte[] MEMORY_TIER = key("memory_tier");
+    private static final byte[] AUTHORS = key("authors");
+    private static final byte[] URL_ = key("url");
+    private static final byte[] LICENSE = key("license");
+    private static final byte[] GENERATED_WITH = key("generated_with");
+
+    private static final byte[] NULL = key("null");
+    private static final byte[] TRUE = key("true");
+    private static final byte[] FALSE = key("false");
+
+    // nesting of skipped values, deeper ones are left to Gson
+    private static final int MAX_SKIP_DEPTH = 64;
+
+    // same names as SnakeCaseEnum produces, indexed by ordinal
+    private static final byte[][] MODULE_TYPES = enumNames(Module_.Type.values());
+    private static final byte[][] LANGUAGES = enumNames(Module_.Language.values());
+    private static final byte[][] PACK_SCOPES = enumNames(Header.PackScope.values());
+    private static final byte[][] CAPABILITY_NAMES = enumNames(Capability.values());
+
+    private final byte[] bytes;
+    private final int end;
+    private int pos;
+
+    // range of the last string token, excluding the quotes
+    private int stringBegin;
+    private int stringEnd;
+    private boolean stringEscaped;
+
+    private Decoder(byte[] bytes, int begin, int end) {
+      this.bytes = bytes;
+      this.pos = begin;
+      this.end = end;
+    }
+
+    private static byte[] key(String str) {
+      return str.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[][] enumNames(Enum<?>[] constants) {
+      byte[][] names = new byte[constants.length][];
+      for (var e : constants) {
+        names[e.ordinal()] = key(e.name().toLowerCase(Locale.ENGLISH));
+      }
+      return names;
+    }
+
+    private static UnsupportedInputException unsupported() {
+      return UnsupportedInputException.INSTANCE;
+    }
+
+    private Manifest manifest() {
+      // byte order mark, skipped by JsonReader as well
+      if (end - pos >= 3
+          && bytes[pos] == (byte) 0xef && bytes[pos + 1] == (byte) 0xbb
+          && bytes[pos + 2] == (byte) 0xbf) {
+        pos += 3;
+      }
+      skipWhitespace();
+      if (pos == end || bytes[pos] != '{') {
+        throw unsupported();
+      }
+      var manifest = readManifest();
+      skipWhitespace();
+      if (pos != end) {
+        throw unsupported();
+      }
+      return manifest;
+    }
+
+    private Manifest readManifest() {
+      Integer formatVersion = null;
+      Header header = null;
+      TreeSet<Module_> modules = null;
+      TreeSet<Dependency> dependencies = null;
+      EnumSet<Capability> capabilities = null;
+      Metadata metadata = null;
+      TreeSet<Subpack> subpacks = null;
+      expect('{');
+      for (boolean more = !tryConsume('}'); more; more = hasNext('}')) {
+        nextKey();
+        if (isKey(FORMAT_VERSION)) {
+          formatVersion = nextInteger();
+        } else if (isKey(HEADER)) {
+          header = nextNull() ? null : readHeader();
+        } else if (isKey(MODULES)) {
+          if (!nextNull()) {
+            modules = new TreeSet<>();
+            expect('[');
+            for (boolean m = !tryConsume(']'); m; m = hasNext(']')) {
+              modules.add(readModule());
+            }
+          }
+        } else if (isKey(DEPENDENCIES)) {
+          if (!nextNull()) {
+            dependencies = new TreeSet<>();
+            expect('[');
+            for (boolean m = !tryConsume(']'); m; m = hasNext(']')) {
+              dependencies.add(readDependency());
+            }
+          }
+        } else if (isKey(CAPABILITIES)) {
+          if (!nextNull()) {
+            capabilities = EnumSet.noneOf(Capability.class);
+            expect('[');
+            for (boolean m = !tryConsume(']'); m; m = hasNext(']')) {
+              int ordinal = nextEnumOrdinal(CAPABILITY_NAMES);
+              // unknown capabilities are read as null
+              if (ordinal >= 0) {
+                capabilities.add(Capability.values()[ordinal]);
+              }
+            }
+          }
+        } else if (isKey(METADATA)) {
+          metadata = nextNull() ? null : readMetadata();
+        } else if (isKey(SUBPACKS)) {
+          if (!nextNull()) {
+            subpacks = new TreeSet<>();
+            expect('[');
+            for (boolean m = !tryConsume(']'); m; m = hasNext(']')) {
+              subpacks.add(readSubpack());
+            }
+          }
+        } else {
+          skipValue();
+        }
+      }
+      return new Manifest(formatVersion, header, modules, dependencies, capabilities, metadata,
+          subpacks);
+    }
+
+    private Header readHeader() {
+      String name = null;
+      String description = null;
+      UUID uuid = null;
+      SemVer version = null;
+      SemVer minEngineVersion = null;
+      Boolean platformLocked = null;
+      Header.PackScope packScope = null;
+      SemVer baseGameVersion = null;
+      Boolean lockTemplateOptions = null;
+      expect('{');
+      for (boolean more = !tryConsume('}'); more; more = hasNext('}')) {
+        nextKey();
+        if (isKey(NAME)) {
+          name = nextString();
+        } else if (isKey(DESCRIPTION)) {
+          description = nextString();
+        } else if (isKey(UUID_)) {
+          uuid = nextUUID();
+        } else if (isKey(VERSION)) {
+          version = nextSemVer();
+        } else if (isKey(MIN_ENGINE_VERSION)) {
+          minEngineVersion = nextSemVer();
+        } else if (isKey(PLATFORM_LOCKED)) {
+          platformLocked = nextBoolean();
+        } else if (isKey(PACK_SCOPE)) {
+          int ordinal = nextNull() ? -1 : nextEnumOrdinal(PACK_SCOPES);
+          packScope = ordinal < 0 ? null : Header.PackScope.values()[ordinal];
+        } else if (isKey(BASE_GAME_VERSION)) {
+          baseGameVersion = nextSemVer();
+        } else if (isKey(LOCK_TEMPLATE_OPTIONS)) {
+          lockTemplateOptions = nextBoolean();
+        } else {
+          skipValue();
+        }
+      }
+      return new Header(name, description, uuid, version, minEngineVersion, platformLocked,
+          packScope, baseGameVersion, lockTemplateOptions);
+    }
+
+    private Module_ readModule() {
+      if (nextNull()) {
+        // TreeSet rejects null, left to Gson to throw
+        throw unsupported();
+      }
+      Module_.Type type = null;
+      String description = null;
+      UUID uuid = null;
+      SemVer version = null;
+      Module_.Language language = null;
+      Path entry = null;
+      expect('{');
+      for (boolean more = !tryConsume('}'); more; more = hasNext('}')) {
+        nextKey();
+        if (isKey(TYPE)) {
+          int ordinal = nextNull() ? -1 : nextEnumOrdinal(MODULE_TYPES);
+          type = ordinal < 0 ? null : Module_.Type.values()[ordinal];
+        } else if (isKey(DESCRIPTION)) {
+          description = nextString();
+        } else if (isKey(UUID_)) {
+          uuid = nextUUID();
+        } else if (isKey(VERSION)) {
+          version = nextSemVer();
+        } else if (isKey(LANGUAGE)) {
+          int ordinal = nextNull() ? -1 : nextEnumOrdinal(LANGUAGES);
+          language = ordinal < 0 ? null : Module_.Language.values()[ordinal];
+        } else if (isKey(ENTRY)) {
+          var str = nextString();
+          entry = str == null ? null : Path.of(str);
+        } else {
+          skipValue();
+        }
+      }
+      return new Module_(type, description, uuid, version, language, entry);
+    }
+
+    private Dependency readDependency() {
+      if (nextNull()) {
+        throw unsupported();
+      }
+      UUID uuid = null;
+      SemVer version = null;
+      expect('{');
+      for (boolean more = !tryConsume('}'); more; more = hasNext('}')) {
+        nextKey();
+        if (isKey(UUID_)) {
+          uuid = nextUUID();
+        } else if (isKey(VERSION)) {
+          version = nextSemVer();
+        } else {
+          skipValue();
+        }
+      }
+      return new Dependency(uuid, version);
+    }
+
+    private Subpack readSubpack() {
+      if (nextNull()) {
+        throw unsupported();
+      }
+      Path folderName = null;
+      String name = null;
+      Integer memoryTier = null;
+      expect('{');
+      for (boolean more = !tryConsume('}'); more; more = hasNext('}')) {
+        nextKey();
+        if (isKey(FOLDER_NAME)) {
+          var str = nextString();
+          folderName = str == null ? null : Path.of(str);
+        } else if (isKey(NAME)) {
+          name = nextString();
+        } else if (isKey(MEMORY_TIER)) {
+          memoryTier = nextInteger();
+        } else {
+          skipValue();
+        }
+      }
+      return new Subpack(folderName, name, memoryTier);
+    }
+
+    private Metadata readMetadata() {
+      TreeSet<String> authors = null;
+      URL url = null;
+      String license = null;
+      TreeSet<Metadata.GeneratedWith> generatedWith = null;
+      expect('{');
+      for (boolean more = !tryConsume('}'); more; more = hasNext('}')) {
+        nextKey();
+        if (isKey(AUTHORS)) {
+          if (!nextNull()) {
+            authors = new TreeSet<>();
+            expect('[');
+            for (boolean m = !tryConsume(']'); m; m = hasNext(']')) {
+              var author = nextString();
+              if (author == null) {
+                throw unsupported();
+              }
+              authors.add(author);
+            }
+          }
+        } else if (isKey(URL_)) {
+          url = nextURL();
+        } else if (isKey(LICENSE)) {
+          license = nextString();
+        } else if (isKey(GENERATED_WITH)) {
+          generatedWith = nextNull() ? null : readGeneratedWith();
+        } else {
+          skipValue();
+        }
+      }
+      return new Metadata(authors, url, license, generatedWith);
+    }
+
+    // same as GeneratedWithSetAdapterFactory
+    private TreeSet<Metadata.GeneratedWith> readGeneratedWith() {
+      TreeSet<Metadata.GeneratedWith> set = new TreeSet<>();
+      expect('{');
+      for (boolean more = !tryConsume('}'); more; more = hasNext('}')) {
+        nextKey();
+        var builder = new Metadata.GeneratedWith.Builder()
+            .name(decodeString());
+        expect('[');
+        for (boolean m = !tryConsume(']'); m; m = hasNext(']')) {
+          var version = nextString();
+          if (version == null) {
+            throw unsupported();
+          }
+          builder.addVersions(SemVer.fromString(version));
+        }
+        set.add(builder.build());
+      }
+      return set;
+    }
+
+    private void skipWhitespace() {
+      while (pos < end) {
+        switch (bytes[pos]) {
+          case ' ', '\t', '\n', '\r' -> pos++;
+          default -> {
+            return;
+          }
+        }
+      }
+    }
+
+    private void expect(char c) {
+      skipWhitespace();
+      if (pos == end || bytes[pos] != c) {
+        throw unsupported();
+      }
+      pos++;
+    }
+
+    private boolean tryConsume(char c) {
+      skipWhitespace();
+      if (pos < end && bytes[pos] == c) {
+        pos++;
+        return true;
+      }
+      return false;
+    }
+
+    // after a value, consumes either a comma or the closing bracket
+    private boolean hasNext(char close) {
+      skipWhitespace();
+      if (pos < end) {
+        byte b = bytes[pos++];
+        if (b == ',') {
+          return true;
+        } else if (b == close) {
+          return false;
+        }
+      }
+      throw unsupported();
+    }
+
+    // keys never contain escapes in practice, left to Gson if they do
+    private void nextKey() {
+      scanString();
+      if (stringEscaped) {
+        throw unsupported();
+      }
+      expect(':');
+    }
+
+    private boolean isKey(byte[] key) {
+      return Arrays.equals(bytes, stringBegin, stringEnd, key, 0, key.length);
+    }
+
+    private boolean nextLiteral(byte[] literal) {
+      skipWhitespace();
+      if (Arrays.equals(bytes, pos, Math.min(pos + literal.length, end), literal, 0,
+          literal.length)) {
+        pos += literal.length;
+        return true;
+      }
+      return false;
+    }
+
+    private boolean nextNull() {
+      return nextLiteral(NULL);
+    }
+
+    private Boolean nextBoolean() {
+      if (nextNull()) {
+        return null;
+      } else if (nextLiteral(TRUE)) {
+        return true;
+      } else if (nextLiteral(FALSE)) {
+        return false;
+      }
+      throw unsupported();
+    }
+
+    private Integer nextInteger() {
+      return nextNull() ? null : nextInt();
+    }
+
+    private int nextInt() {
+      skipWhitespace();
+      boolean negative = pos < end && bytes[pos] == '-';
+      if (negative) {
+        pos++;
+      }
+      int begin = pos;
+      long value = 0;
+      while (pos < end && bytes[pos] >= '0' && bytes[pos] <= '9') {
+        value = value * 10 + (bytes[pos++] - '0');
+        if (value > (long) Integer.MAX_VALUE + 1) {
+          throw unsupported();
+        }
+      }
+      if (pos == begin
+          || pos < end && (bytes[pos] == '.' || bytes[pos] == 'e' || bytes[pos] == 'E')) {
+        throw unsupported();
+      }
+      value = negative ? -value : value;
+      if (value > Integer.MAX_VALUE) {
+        throw unsupported();
+      }
+      return (int) value;
+    }
+
+    // same as SemVerAdapter
+    private SemVer nextSemVer() {
+      if (nextNull()) {
+        return null;
+      }
+      expect('[');
+      int major = nextInt();
+      expect(',');
+      int minor = nextInt();
+      expect(',');
+      int patch = nextInt();
+      expect(']');
+      return SemVer.of(major, minor, patch);
+    }
+
+    private String nextString() {
+      if (nextNull()) {
+        return null;
+      }
+      scanString();
+      return decodeString();
+    }
+
+    private URL nextURL() {
+      var str = nextString();
+      // same as TypeAdapters.URL of Gson
+      if (str == null || str.equals("null")) {
+        return null;
+      }
+      try {
+        return new URL(str);
+      } catch (MalformedURLException e) {
+        throw unsupported();
+      }
+    }
+
+    private UUID nextUUID() {
+      if (nextNull()) {
+        return null;
+      }
+      scanString();
+      if (stringEscaped || stringEnd - stringBegin != 36) {
+        return UUID.fromString(decodeString());
+      }
+      int b = stringBegin;
+      if (bytes[b + 8] != '-' || bytes[b + 13] != '-' || bytes[b + 18] != '-'
+          || bytes[b + 23] != '-') {
+        return UUID.fromString(decodeString());
+      }
+      long mostSigBits0 = parseHex(b, b + 8);
+      long mostSigBits1 = parseHex(b + 9, b + 13);
+      long mostSigBits2 = parseHex(b + 14, b + 18);
+      long leastSigBits0 = parseHex(b + 19, b + 23);
+      long leastSigBits1 = parseHex(b + 24, b + 36);
+      if ((mostSigBits0 | mostSigBits1 | mostSigBits2 | leastSigBits0 | leastSigBits1) < 0) {
+        // let UUID.fromString throw the same exception as Gson
+        return UUID.fromString(decodeString());
+      }
+      return new UUID(mostSigBits0 << 32 | mostSigBits1 << 16 | mostSigBits2,
+          leastSigBits0 << 48 | leastSigBits1);
+    }
+
+    // returns -1 if not a hexadecimal number
+    private long parseHex(int begin, int end) {
+      long value = 0;
+      for (int i = begin; i < end; i++) {
+        int digit = Character.digit(bytes[i], 16);
+        if (digit < 0) {
+          return -1;
+        }
+        value = value << 4 | digit;
+      }
+      return value;
+    }
+
+    // returns the ordinal, or -1 if unknown as SnakeCaseEnum reads unknown names as null
+    private int nextEnumOrdinal(byte[][] names) {
+      scanString();
+      if (stringEscaped) {
+        var str = decodeString();
+        for (int i = 0; i < names.length; i++) {
+          if (str.equals(new String(names[i], StandardCharsets.US_ASCII))) {
+            return i;
+          }
+        }
+        return -1;
+      }
+      for (int i = 0; i < names.length; i++) {
+        if (Arrays.equals(bytes, stringBegin, stringEnd, names[i], 0, names[i].length)) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    private void scanString() {
+      skipWhitespace();
+      if (pos == end || bytes[pos] != '"') {
+        throw unsupported();
+      }
+      int begin = ++pos;
+      boolean escaped = false;
+      boolean ascii = true;
+      while (true) {
+        if (pos >= end) {
+          throw unsupported();
+        }
+        byte b = bytes[pos];
+        if (b == '"') {
+          break;
+        } else if (b == '\\') {
+          escaped = true;
+          pos += 2;
+        } else {
+          ascii &= b >= 0;
+          pos++;
+        }
+      }
+      // Gson reports malformed input, which new String would replace
+      if (!ascii && !isWellFormed(begin, pos)) {
+        throw unsupported();
+      }
+      stringBegin = begin;
+      stringEnd = pos++;
+      stringEscaped = escaped;
+    }
+
+    private boolean isWellFormed(int begin, int end) {
+      try {
+        StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT)
+            .decode(ByteBuffer.wrap(bytes, begin, end - begin));
+        return true;
+      } catch (CharacterCodingException e) {
+        return false;
+      }
+    }
+
+    private String decodeString() {
+      if (!stringEscaped) {
+        return new String(bytes, stringBegin, stringEnd - stringBegin, StandardCharsets.UTF_8);
+      }
+      var str = new StringBuilder(stringEnd - stringBegin);
+      int chunk = stringBegin;
+      for (int i = stringBegin; i < stringEnd; i++) {
+        if (bytes[i] != '\\') {
+          continue;
+        }
+        str.append(new String(bytes, chunk, i - chunk, StandardCharsets.UTF_8));
+        byte escape = bytes[++i];
+        switch (escape) {
+          case '"', '\\', '/' -> str.append((char) escape);
+          case 'b' -> str.append('\b');
+          case 'f' -> str.append('\f');
+          case 'n' -> str.append('\n');
+          case 'r' -> str.append('\r');
+          case 't' -> str.append('\t');
+          case 'u' -> {
+            if (i + 4 >= stringEnd) {
+              throw unsupported();
+            }
+            int c = 0;
+            for (int j = i + 1; j <= i + 4; j++) {
+              int digit = Character.digit(bytes[j], 16);
+              if (digit < 0) {
+                throw unsupported();
+              }
+              c = c << 4 | digit;
+            }
+            str.append((char) c);
+            i += 4;
+          }
+          default -> throw unsupported();
+        }
+        chunk = i + 1;
+      }
+      str.append(new String(bytes, chunk, stringEnd - chunk, StandardCharsets.UTF_8));
+      return str.toString();
+    }
+
+    private void skipValue() {
+      skipValue(0);
+    }
+
+    // Gson skips values without recursing
+    private void skipValue(int depth) {
+      if (depth > MAX_SKIP_DEPTH) {
+        throw unsupported();
+      }
+      skipWhitespace();
+      if (pos == end) {
+        throw unsupported();
+      }
+      switch (bytes[pos]) {
+        case '{' -> {
+          pos++;
+          for (boolean more = !tryConsume('}'); more; more = hasNext('}')) {
+            nextKey();
+            skipValue(depth + 1);
+          }
+        }
+        case '[' -> {
+          pos++;
+          for (boolean more = !tryConsume(']'); more; more = hasNext(']')) {
+            skipValue(depth + 1);
+          }
+        }
+        case '"' -> {
+          scanString();
+          if (stringEscaped) {
+            // validates the escape sequences
+            decodeString();
+          }
+        }
+        default -> {
+          // numbers and literals
+          int begin = pos;
+          while (pos < end) {
+            byte b = bytes[pos];
+            if (b >= '0' && b <= '9' || b >= 'a' && b <= 'z' || b == '-' || b == '+'
+                || b == '.' || b == 'E') {
+              pos++;
+            } else {
+              break;
+            }
+          }
+          if (pos == begin) {
+            throw unsupported();
+          }
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2022 Risu
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.github.risu729.mcbe.manifest4j;
+
+import java.util.Objects;
+import java.util.UUID;
+
+// generates the UUIDs of headers and modules built without one
+// implementations must be thread-safe
+@FunctionalInterface
+public interface UuidGenerator {
+
+  // packName is the name of the pack, or null if not given to the builder of a module
+  // type is the type of the module, or null for a header
+  UUID generate(String packName, Module_.Type type);
+
+  // UUID.randomUUID, which shares a SecureRandom between threads and may block for entropy
+  static UuidGenerator secureRandom() {
+    return UuidGenerators.SECURE_RANDOM;
+  }
+
+  // random version 4 UUIDs from ThreadLocalRandom, fast but predictable
+  static UuidGenerator fastRandom() {
+    return UuidGenerators.FAST_RANDOM;
+  }
+
+  // version 5 UUIDs from the pack name and the type of the module, in the namespace of manifest4j
+  // the same for every build, so two modules of the same type in a pack need UUIDs given
+  // random, as secureRandom(), for modules built without the pack name
+  static UuidGenerator nameBased() {
+    return UuidGenerators.NAME_BASED;
+  }
+
+  // version 5 UUIDs in the namespace, so that packs of the same name can be told apart
+  static UuidGenerator nameBased(UUID namespace) {
+    return new UuidGenerators.NameBased(Objects.requireNonNull(namespace,
+        "namespace must not be null"));
+  }
+
+  // used by builders not given a generator, secureRandom() unless set
+  static UuidGenerator getDefault() {
+    return UuidGenerators.defaultGenerator;
+  }
+
+  static void setDefault(UuidGenerator generator) {
+    UuidGenerators.defaultGenerator = Objects.requireNonNull(generator,
+        "generator must not be null");
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2022 Risu
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.github.risu729.mcbe.manifest4j;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.Locale;
+import java.util.UUID;
+
+// the implementations of UuidGenerator, which cannot hold state in the interface
+final class UuidGenerators {
+
+  static final UuidGenerator SECURE_RANDOM = (packName, type) -> UUID.randomUUID();
+
+  static final UuidGenerator FAST_RANDOM = (packName, type) -> {
+    var random = ThreadLocalRandom.current();
+    return fromBytes(random.nextLong(), random.nextLong(), 4);
+  };
+
+  // the version 5 UUID of the URL of the repository in the URL namespace of RFC 4122
+  static final UUID NAMESPACE = NameBased.generate(
+      UUID.fromString("6ba7b811-9dad-11d1-80b4-00c04fd430c8"),
+      "https://github.com/risu729/mcbe-manifest4j");
+
+  static final UuidGenerator NAME_BASED = new NameBased(NAMESPACE);
+
+  static volatile UuidGenerator defaultGenerator = SECURE_RANDOM;
+
+  private UuidGenerators() {
+  }
+
+  private static UUID fromBytes(long most, long least, int version) {
+    most = (most & ~0xf000L) | ((long) version << 12);
+    least = (least & ~(0xc0L << 56)) | (0x80L << 56);
+    return new UUID(most, least);
+  }
+
+  static final class NameBased implements UuidGenerator {
+
+    // MessageDigest is not thread-safe, and looking it up for each UUID is slow
+    private static final ThreadLocal<MessageDigest> SHA1 = ThreadLocal.withInitial(() -> {
+      try {
+        return MessageDigest.getInstance("SHA-1");
+      } catch (NoSuchAlgorithmException e) {
+        // every implementation of Java is required to support SHA-1
+        throw new AssertionError(e);
+      }
+    });
+
+    private final UUID namespace;
+
+    NameBased(UUID namespace) {
+      this.namespace = namespace;
+    }
+
+    @Override
+    public UUID generate(String packName, Module_.Type type) {
+      // nothing to derive a UUID from, such as Module_.of(Type), and a UUID of the type alone
+      // would be shared by the modules of every pack
+      if (packName == null) {
+        return UUID.randomUUID();
+      }
+      // the type comes first, as it never contains ':' while the pack name may
+      var name = (type == null ? "header" : type.name().toLowerCase(Locale.ROOT)) + ":" + packName;
+      return generate(namespace, name);
+    }
+
+    private static UUID generate(UUID namespace, String name) {
+      var digest = SHA1.get();
+      var bytes = new byte[16];
+      long most = namespace.getMostSignificantBits();
+      long least = namespace.getLeastSignificantBits();
+      for (int i = 0; i < 8; i++) {
+        bytes[i] = (byte) (most >>> (56 - i * 8));
+        bytes[i + 8] = (byte) (least >>> (56 - i * 8));
+      }
+      digest.update(bytes);
+      var hash = digest.digest(name.getBytes(StandardCharsets.UTF_8));
+      most = 0;
+      least = 0;
+      for (int i = 0; i < 8; i++) {
+        most = (most << 8) | (hash[i] & 0xff);
+        least = (least << 8) | (hash[i + 8] & 0xff);
+      }
+      return fromBytes(most, least, 5);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj == this || (obj instanceof NameBased other && namespace.equals(other.namespace));
+    }
+
+    @Override
+    public int hashCode() {
+      return namespace.hashCode();
+    }
+  }
+}
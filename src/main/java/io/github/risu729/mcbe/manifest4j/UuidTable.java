@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2022 Risu
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.github.risu729.mcbe.manifest4j;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+// open addressing map from UUID to non-negative int, without boxing UUIDs or Integers
+// the two longs of a UUID are stored side by side, so a probe touches a single cache line
+final class UuidTable {
+
+  static final int ABSENT = -1;
+
+  private final long[] keys;
+  private final int[] values;
+  private final int mask;
+  private int size;
+
+  UuidTable(int expectedSize) {
+    // keep the load factor at most 0.5 so that probe sequences stay short
+    int capacity = Integer.highestOneBit(Math.max(expectedSize, 2) * 2 - 1) << 1;
+    this.keys = new long[capacity * 2];
+    this.values = new int[capacity];
+    this.mask = capacity - 1;
+    Arrays.fill(values, ABSENT);
+  }
+
+  int size() {
+    return size;
+  }
+
+  int get(UUID uuid) {
+    return get(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+  }
+
+  int get(long most, long least) {
+    for (int i = hash(most, least) & mask; ; i = (i + 1) & mask) {
+      int value = values[i];
+      if (value == ABSENT || (keys[i * 2] == most && keys[i * 2 + 1] == least)) {
+        return value;
+      }
+    }
+  }
+
+  // returns the previous value, or ABSENT
+  int put(UUID uuid, int value) {
+    return put(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), value);
+  }
+
+  int put(long most, long least, int value) {
+    if (value < 0) {
+      throw new IllegalArgumentException("value must not be negative: " + value);
+    }
+    for (int i = hash(most, least) & mask; ; i = (i + 1) & mask) {
+      int previous = values[i];
+      if (previous == ABSENT) {
+        if (size * 2 >= values.length) {
+          throw new IllegalStateException("table is full");
+        }
+        keys[i * 2] = most;
+        keys[i * 2 + 1] = least;
+        values[i] = value;
+        size++;
+        return ABSENT;
+      }
+      if (keys[i * 2] == most && keys[i * 2 + 1] == least) {
+        values[i] = value;
+        return previous;
+      }
+    }
+  }
+
+  // a new table with the same entries, rehashed for the expected size
+  UuidTable copy(int expectedSize) {
+    var copy = new UuidTable(Math.max(expectedSize, size));
+    for (int i = 0; i < values.length; i++) {
+      if (values[i] != ABSENT) {
+        copy.put(keys[i * 2], keys[i * 2 + 1], values[i]);
+      }
+    }
+    return copy;
+  }
+
+  // random UUIDs are already uniform, but name-based or hand-written ones may not be
+  // slots are taken from the low bits, so the high bits are free for striping
+  static int hash(long most, long least) {
+    long hash = (most ^ Long.rotateLeft(least, 32)) * 0x9e3779b97f4a7c15L;
+    return (int) (hash ^ (hash >>> 32));
+  }
+}
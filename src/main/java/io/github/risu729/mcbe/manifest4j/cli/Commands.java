@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2022 Risu
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.github.risu729.mcbe.manifest4j.cli;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.concurrent.Executor;
+import java.util.IdentityHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import io.github.risu729.mcbe.manifest4j.Dependency;
+import io.github.risu729.mcbe.manifest4j.DependencyGraph;
+import io.github.risu729.mcbe.manifest4j.Manifest;
+import io.github.risu729.mcbe.manifest4j.ManifestEditor;
+import io.github.risu729.mcbe.manifest4j.ManifestValidator;
+
+// each command writes an object for every manifest, or for every file which could not be read,
+// sorted by path, so that the output is the same however the work is scheduled
+// names in the output are snake_case and enum constants lower case, as in manifest.json
+final class Commands {
+
+  private final Main.Options options;
+  private final Executor executor;
+  private final NdjsonWriter writer;
+
+  Commands(Main.Options options, Executor executor, NdjsonWriter writer) {
+    this.options = options;
+    this.executor = executor;
+    this.writer = writer;
+  }
+
+  int validate() throws IOException, InterruptedException {
+    var inputs = Inputs.read(options, executor);
+    int status = Main.OK;
+    for (var path : inputs.paths()) {
+      var manifest = inputs.manifests.get(path);
+      if (manifest == null) {
+        writer.write(error(path, inputs.errors.get(path)));
+        status = Main.ERRORS;
+        continue;
+      }
+      var violations = ManifestValidator.validate(manifest);
+      var object = record(path);
+      object.addProperty("valid", violations.isEmpty());
+      if (!violations.isEmpty()) {
+        var array = new JsonArray();
+        for (var e : violations) {
+          var violation = new JsonObject();
+          violation.addProperty("rule", lowerCase(e.getRule()));
+          violation.addProperty("path", e.getPath());
+          violation.addProperty("message", e.getMessage());
+          if (e.getValue() != null) {
+            violation.addProperty("value", e.getValue().toString());
+          }
+          array.add(violation);
+        }
+        object.add("violations", array);
+        status = Math.max(status, Main.FINDINGS);
+      }
+      writer.write(object);
+    }
+    return status;
+  }
+
+  int format() throws IOException, InterruptedException {
+    var inputs = Inputs.find(options);
+    return writeEdits(inputs, editor().reformat(inputs.files), false);
+  }
+
+  int bumpVersion() throws IOException, InterruptedException {
+    var inputs = Inputs.find(options);
+    return writeEdits(inputs, editor().edit(inputs.files, ManifestEditor.bumpVersion()), true);
+  }
+
+  private ManifestEditor editor() {
+    return new ManifestEditor.Builder()
+        .codec(Inputs.CODEC)
+        .executor(executor)
+        .parallelism(options.parallelism)
+        .dryRun(options.check)
+        .build();
+  }
+
+  // "changed" is whether the file was rewritten, or would be with --check
+  private int writeEdits(Inputs inputs, ManifestEditor.Result result, boolean writeVersion)
+      throws IOException {
+    var records = new TreeMap<String, JsonObject>();
+    int status = Main.OK;
+    for (var e : result.getChanged().entrySet()) {
+      var object = record(e.getKey().toString());
+      object.addProperty("changed", true);
+      var header = e.getValue().getHeader();
+      if (writeVersion && header != null) {
+        addString(object, "version", header.getVersion());
+      }
+      records.put(e.getKey().toString(), object);
+      if (options.check) {
+        status = Main.FINDINGS;
+      }
+    }
+    for (var e : result.getUnchanged()) {
+      var object = record(e.toString());
+      object.addProperty("changed", false);
+      records.put(e.toString(), object);
+    }
+    for (var e : result.getErrors().entrySet()) {
+      records.put(e.getKey().toString(), error(e.getKey().toString(), e.getValue()));
+    }
+    for (var e : inputs.errors.entrySet()) {
+      records.put(e.getKey(), error(e.getKey(), e.getValue()));
+    }
+    if (!result.getErrors().isEmpty() || !inputs.errors.isEmpty()) {
+      status = Main.ERRORS;
+    }
+    for (var e : records.values()) {
+      writer.write(e);
+    }
+    return status;
+  }
+
+  int list() throws IOException, InterruptedException {
+    var inputs = Inputs.read(options, executor);
+    for (var path : inputs.paths()) {
+      var manifest = inputs.manifests.get(path);
+      if (manifest == null) {
+        writer.write(error(path, inputs.errors.get(path)));
+        continue;
+      }
+      var object = record(path);
+      var header = manifest.getHeader();
+      if (header != null) {
+        addString(object, "name", header.getName());
+        addString(object, "uuid", header.getUUID());
+        addString(object, "version", header.getVersion());
+        addString(object, "min_engine_version", header.getMinEngineVersion());
+      }
+      if (manifest.getModules() != null) {
+        var types = new JsonArray();
+        for (var e : manifest.getModules()) {
+          if (e != null && e.getType() != null) {
+            types.add(lowerCase(e.getType()));
+          }
+        }
+        object.add("modules", types);
+      }
+      writer.write(object);
+    }
+    return inputs.errors.isEmpty() ? Main.OK : Main.ERRORS;
+  }
+
+  // the manifests in the load order, then the problems
+  int deps() throws IOException, InterruptedException {
+    var inputs = Inputs.read(options, executor);
+    for (var e : inputs.errors.entrySet()) {
+      writer.write(error(e.getKey(), e.getValue()));
+    }
+    // the graph keeps the instances, so they identify their paths even if equal
+    var paths = new IdentityHashMap<Manifest, String>();
+    for (var e : inputs.manifests.entrySet()) {
+      paths.put(e.getValue(), e.getKey());
+    }
+    var graph = DependencyGraph.of(inputs.manifests.values());
+    for (var manifest : graph.getLoadOrder()) {
+      var object = record(paths.get(manifest));
+      var header = manifest.getHeader();
+      if (header != null) {
+        addString(object, "uuid", header.getUUID());
+        addString(object, "version", header.getVersion());
+      }
+      object.add("dependencies", pathsOf(graph.getDependencies(manifest), paths));
+      writer.write(object);
+    }
+    for (var problem : graph.getProblems()) {
+      var object = new JsonObject();
+      object.addProperty("problem", lowerCase(problem.getType()));
+      object.addProperty("path", paths.get(problem.getManifest()));
+      if (problem.getDependency() != null) {
+        object.add("dependency", dependency(problem.getDependency()));
+      }
+      object.add("paths", pathsOf(problem.getManifests(), paths));
+      writer.write(object);
+    }
+    if (!inputs.errors.isEmpty()) {
+      return Main.ERRORS;
+    }
+    return graph.getProblems().isEmpty() ? Main.OK : Main.FINDINGS;
+  }
+
+  private static JsonObject record(String path) {
+    var object = new JsonObject();
+    object.addProperty("path", path);
+    return object;
+  }
+
+  private static JsonObject error(String path, Exception exception) {
+    var object = record(path);
+    object.addProperty("error", String.valueOf(exception));
+    return object;
+  }
+
+  private static JsonObject dependency(Dependency dependency) {
+    var object = new JsonObject();
+    addString(object, "uuid", dependency.getUUID());
+    addString(object, "version", dependency.getVersion());
+    return object;
+  }
+
+  private static JsonArray pathsOf(Collection<Manifest> manifests, Map<Manifest, String> paths) {
+    var array = new JsonArray();
+    for (var e : manifests) {
+      array.add(paths.get(e));
+    }
+    return array;
+  }
+
+  // omitted if null
+  private static void addString(JsonObject object, String name, Object value) {
+    if (value != null) {
+      object.addProperty(name, value.toString());
+    }
+  }
+
+  private static String lowerCase(Enum<?> constant) {
+    return constant.name().toLowerCase(Locale.ROOT);
+  }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2022 Risu
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.github.risu729.mcbe.manifest4j.cli;
+
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import io.github.risu729.mcbe.manifest4j.Manifest;
+import io.github.risu729.mcbe.manifest4j.ManifestArchive;
+import io.github.risu729.mcbe.manifest4j.ManifestCodec;
+import io.github.risu729.mcbe.manifest4j.ManifestScanner;
+import io.github.risu729.mcbe.manifest4j.concurrent.BoundedTasks;
+
+// the manifests or the manifest.json files under the paths given on the command line
+// keyed by the path as printed, where an entry of an archive follows the archive and "!/"
+final class Inputs {
+
+  static final ManifestCodec CODEC = ManifestCodec.utf8();
+
+  private static final String ENTRY_SEPARATOR = "!/";
+
+  // filled by read
+  final Map<String, Manifest> manifests = new TreeMap<>();
+  // filled by find
+  final List<Path> files = new ArrayList<>();
+  final Map<String, Exception> errors = new TreeMap<>();
+
+  private Inputs() {
+  }
+
+  // reads archives and files concurrently, while the directories are scanned
+  static Inputs read(Main.Options options, Executor executor)
+      throws IOException, InterruptedException {
+    var manifests = new ConcurrentHashMap<String, Manifest>();
+    var errors = new ConcurrentHashMap<String, Exception>();
+    var tasks = new BoundedTasks(executor, options.parallelism);
+    var directories = new ArrayList<Path>();
+    for (var path : options.paths) {
+      if (Files.isDirectory(path)) {
+        directories.add(path);
+        continue;
+      }
+      tasks.submit(() -> {
+        try {
+          if (ManifestArchive.isArchive(path)) {
+            var result = ManifestArchive.read(path, CODEC);
+            result.getManifests().forEach((k, v) -> manifests.put(entry(path, k), v));
+            result.getErrors().forEach((k, v) -> errors.put(entry(path, k), v));
+          } else {
+            manifests.put(path.toString(), CODEC.decode(path));
+          }
+        } catch (IOException | RuntimeException e) {
+          errors.put(path.toString(), e);
+        }
+      });
+    }
+    var inputs = new Inputs();
+    if (!directories.isEmpty()) {
+      var result = new ManifestScanner.Builder()
+          .codec(CODEC)
+          .executor(executor)
+          .parallelism(options.parallelism)
+          .maxDepth(options.maxDepth)
+          .followLinks(options.followLinks)
+          .build()
+          .scan(directories);
+      result.getManifests().forEach((k, v) -> inputs.manifests.put(k.toString(), v));
+      result.getErrors().forEach((k, v) -> inputs.errors.put(k.toString(), v));
+    }
+    tasks.await();
+    inputs.manifests.putAll(manifests);
+    inputs.errors.putAll(errors);
+    return inputs;
+  }
+
+  // finds the files to rewrite, archives are reported as errors as they cannot be rewritten
+  static Inputs find(Main.Options options) throws IOException {
+    var inputs = new Inputs();
+    var visitOptions = options.followLinks
+        ? EnumSet.of(FileVisitOption.FOLLOW_LINKS)
+        : EnumSet.noneOf(FileVisitOption.class);
+    for (var path : options.paths) {
+      if (Files.isDirectory(path)) {
+        Files.walkFileTree(path, visitOptions, options.maxDepth, new SimpleFileVisitor<>() {
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+            if (attrs.isRegularFile() && file.getFileName() != null
+                && file.getFileName().toString().equals(ManifestScanner.MANIFEST_FILE_NAME)) {
+              inputs.files.add(file);
+            }
+            return FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult visitFileFailed(Path file, IOException e) {
+            inputs.errors.put(file.toString(), e);
+            return FileVisitResult.CONTINUE;
+          }
+
+          // as ManifestScanner, so that the other directories are still rewritten
+          @Override
+          public FileVisitResult postVisitDirectory(Path dir, IOException e) {
+            if (e != null) {
+              inputs.errors.put(dir.toString(), e);
+            }
+            return FileVisitResult.CONTINUE;
+          }
+        });
+      } else if (ManifestArchive.isArchive(path)) {
+        inputs.errors.put(path.toString(),
+            new UnsupportedOperationException("archives cannot be rewritten"));
+      } else {
+        inputs.files.add(path);
+      }
+    }
+    return inputs;
+  }
+
+  // every path read or found, or with an error, in order
+  TreeSet<String> paths() {
+    var paths = new TreeSet<>(manifests.keySet());
+    for (var e : files) {
+      paths.add(e.toString());
+    }
+    paths.addAll(errors.keySet());
+    return paths;
+  }
+
+  private static String entry(Path archive, String name) {
+    return archive + ENTRY_SEPARATOR + name;
+  }
+}
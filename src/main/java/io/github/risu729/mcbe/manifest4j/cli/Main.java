@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2022 Risu
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.github.risu729.mcbe.manifest4j.cli;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import io.github.risu729.mcbe.manifest4j.concurrent.BoundedTasks;
+
+// runs a command over many manifests in a single JVM, and writes a JSON object per line to the
+// standard output, so that scripts need not start a JVM for each manifest
+public final class Main {
+
+  static final int OK = 0;
+  // invalid manifests, unformatted files with --check, or problems of dependencies
+  static final int FINDINGS = 1;
+  static final int USAGE = 2;
+  // files or archives which could not be read, parsed or written
+  static final int ERRORS = 3;
+
+  private static final String USAGE_TEXT = """
+      usage: manifest4j <command> [options] <path>...
+
+      commands:
+        validate      reports the rules each manifest violates
+        format        rewrites manifest.json files as manifest4j writes them
+        bump-version  increments the patch version of the header
+        list          prints the header and module types of each manifest
+        deps          prints the load order and the problems of dependencies
+
+      a path is a directory searched for manifest.json files, a manifest.json file, or an
+      archive such as .mcpack, which can only be read
+
+      options:
+        --check             with format and bump-version, only reports what would change
+        --parallelism <n>   the number of files read at the same time
+        --max-depth <n>     the depth to which directories are searched
+        --follow-links      follows symbolic links while searching directories
+        --help              prints this message
+
+      exit status: 0 if nothing is reported, 1 if manifests are reported, 2 if the arguments
+      are invalid, and 3 if files could not be read or written
+      """;
+
+  private Main() {
+  }
+
+  public static void main(String[] args) {
+    System.exit(run(args, System.out, System.err));
+  }
+
+  static int run(String[] args, PrintStream out, PrintStream err) {
+    Options options;
+    try {
+      options = Options.parse(args);
+    } catch (IllegalArgumentException e) {
+      err.println("manifest4j: " + e.getMessage());
+      err.println("run manifest4j --help for the usage");
+      return USAGE;
+    }
+    if (options == null) {
+      out.print(USAGE_TEXT);
+      return OK;
+    }
+    var executor = BoundedTasks.newThreadPool("manifest4j-cli", options.parallelism);
+    try (var writer = new NdjsonWriter(
+        new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)))) {
+      var commands = new Commands(options, executor, writer);
+      return switch (options.command) {
+        case VALIDATE -> commands.validate();
+        case FORMAT -> commands.format();
+        case BUMP_VERSION -> commands.bumpVersion();
+        case LIST -> commands.list();
+        case DEPS -> commands.deps();
+      };
+    } catch (IOException | UncheckedIOException e) {
+      err.println("manifest4j: " + e);
+      return ERRORS;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      err.println("manifest4j: interrupted");
+      return ERRORS;
+    } catch (RuntimeException | Error e) {
+      // a bug or a resource exhausted, not a finding about the manifests
+      err.println("manifest4j: unexpected error");
+      e.printStackTrace(err);
+      return ERRORS;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  enum Command {
+    VALIDATE,
+    FORMAT,
+    BUMP_VERSION,
+    LIST,
+    DEPS;
+
+    private static Command of(String name) {
+      for (var e : values()) {
+        if (e.name().replace('_', '-').toLowerCase(Locale.ROOT).equals(name)) {
+          return e;
+        }
+      }
+      throw new IllegalArgumentException("unknown command: " + name);
+    }
+  }
+
+  static final class Options {
+
+    final Command command;
+    final List<Path> paths = new ArrayList<>();
+    int parallelism = BoundedTasks.DEFAULT_PARALLELISM;
+    int maxDepth = Integer.MAX_VALUE;
+    boolean followLinks;
+    boolean check;
+
+    private Options(Command command) {
+      this.command = command;
+    }
+
+    // null if the usage is asked for
+    private static Options parse(String[] args) {
+      if (args.length == 0 || args[0].equals("--help")) {
+        return null;
+      }
+      var options = new Options(Command.of(args[0]));
+      boolean onlyPaths = false;
+      for (int i = 1; i < args.length; i++) {
+        var arg = args[i];
+        if (onlyPaths || !arg.startsWith("--")) {
+          try {
+            options.paths.add(Path.of(arg));
+          } catch (InvalidPathException e) {
+            throw new IllegalArgumentException("invalid path: " + arg, e);
+          }
+          continue;
+        }
+        switch (arg) {
+          case "--" -> onlyPaths = true;
+          case "--help" -> {
+            return null;
+          }
+          case "--check" -> {
+            if (options.command != Command.FORMAT && options.command != Command.BUMP_VERSION) {
+              throw new IllegalArgumentException(
+                  "--check is only for format and bump-version");
+            }
+            options.check = true;
+          }
+          case "--follow-links" -> options.followLinks = true;
+          case "--parallelism" -> options.parallelism = positive(arg, args, ++i);
+          case "--max-depth" -> options.maxDepth = positive(arg, args, ++i);
+          default -> throw new IllegalArgumentException("unknown option: " + arg);
+        }
+      }
+      if (options.paths.isEmpty()) {
+        throw new IllegalArgumentException("no paths given");
+      }
+      return options;
+    }
+
+    private static int positive(String option, String[] args, int i) {
+      if (i >= args.length) {
+        throw new IllegalArgumentException(option + " needs a value");
+      }
+      int value;
+      try {
+        value = Integer.parseInt(args[i]);
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException(option + " must be a number: " + args[i], e);
+      }
+      if (value < 1) {
+        throw new IllegalArgumentException(option + " must be positive: " + value);
+      }
+      return value;
+    }
+  }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2022 Risu
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.github.risu729.mcbe.manifest4j.cli;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import com.google.gson.JsonObject;
+
+// writes each object as compact JSON on a line of its own
+final class NdjsonWriter implements AutoCloseable {
+
+  private final Writer writer;
+
+  NdjsonWriter(Writer writer) {
+    this.writer = writer;
+  }
+
+  void write(JsonObject object) throws IOException {
+    // JsonElement.toString writes compact JSON without escaping HTML
+    writer.write(object.toString());
+    writer.write('\n');
+  }
+
+  // flushes, but leaves the writer open as it wraps the standard output
+  @Override
+  public void close() throws IOException {
+    writer.flush();
+  }
+}
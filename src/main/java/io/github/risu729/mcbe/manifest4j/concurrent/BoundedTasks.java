@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2022 Risu
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.github.risu729.mcbe.manifest4j.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+// runs tasks which record their own exceptions, with at most the parallelism of them in flight,
+// as the executor may be unbounded
+// tasks are submitted by a single thread, which blocks while the parallelism are in flight
+public final class BoundedTasks {
+
+  // the tasks are mostly waiting for I/O, so more threads than processors pay off
+  public static final int DEFAULT_PARALLELISM =
+      Math.max(Runtime.getRuntime().availableProcessors() * 4, 8);
+
+  private final Executor executor;
+  private final Semaphore permits;
+  private final List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+  public BoundedTasks(Executor executor, int parallelism) {
+    this.executor = executor;
+    this.permits = new Semaphore(parallelism);
+  }
+
+  // a fixed thread pool of daemon threads named after the prefix, to be shut down by the caller
+  public static ExecutorService newThreadPool(String prefix, int parallelism) {
+    return Executors.newFixedThreadPool(parallelism, new DaemonThreadFactory(prefix));
+  }
+
+  public void submit(Runnable task) throws InterruptedException {
+    permits.acquire();
+    try {
+      futures.add(CompletableFuture.runAsync(() -> {
+        try {
+          task.run();
+        } finally {
+          permits.release();
+        }
+      }, executor));
+    } catch (RejectedExecutionException e) {
+      permits.release();
+      throw e;
+    }
+  }
+
+  // waits for every task submitted
+  public void await() throws InterruptedException {
+    for (var e : futures) {
+      try {
+        e.get();
+      } catch (ExecutionException ex) {
+        // only errors, as every exception is recorded
+        if (ex.getCause() instanceof Error error) {
+          throw error;
+        }
+        throw new AssertionError(ex);
+      }
+    }
+  }
+
+  private static final class DaemonThreadFactory implements ThreadFactory {
+
+    private final String prefix;
+    private final AtomicInteger count = new AtomicInteger();
+
+    private DaemonThreadFactory(String prefix) {
+      this.prefix = prefix;
+    }
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      var thread = new Thread(runnable, prefix + "-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
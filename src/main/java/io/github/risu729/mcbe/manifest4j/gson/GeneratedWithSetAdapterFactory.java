@@ -8,6 +8,7 @@
 package io.github.risu729.mcbe.manifest4j.gson;
 
 import java.io.IOException;
+import java.util.SortedSet;
 import java.util.TreeSet;
 
 import com.google.gson.Gson;
@@ -22,9 +23,14 @@ import io.github.risu729.mcbe.manifest4j.SemVer;
 
 final class GeneratedWithSetAdapterFactory implements TypeAdapterFactory {
 
-  private static final TypeToken<TreeSet<Metadata.GeneratedWith>> GENERATED_WITH_SET = new TypeToken<TreeSet<Metadata.GeneratedWith>>() {
-  };
-  private static final TypeAdapter<Metadata.GeneratedWith> ELEMENT_ADAPTER = new GeneratedWithAdapter().nullSafe();
+  private static final TypeToken<?> GENERATED_WITH_SET =
+      TypeToken.getParameterized(SortedSet.class, Metadata.GeneratedWith.class);
+
+  private final TypeAdapter<Metadata.GeneratedWith> elementAdapter;
+
+  GeneratedWithSetAdapterFactory(boolean prettyPrinting) {
+    this.elementAdapter = new GeneratedWithAdapter(prettyPrinting).nullSafe();
+  }
 
   @Override
   public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
@@ -40,7 +46,7 @@ final class GeneratedWithSetAdapterFactory implements TypeAdapterFactory {
         TreeSet<Metadata.GeneratedWith> set = new TreeSet<>();
         reader.beginObject();
         while (reader.hasNext()) {
-          set.add(ELEMENT_ADAPTER.read(reader));
+          set.add(elementAdapter.read(reader));
         }
         reader.endObject();
         return (T) set;
@@ -50,8 +56,8 @@ final class GeneratedWithSetAdapterFactory implements TypeAdapterFactory {
       @SuppressWarnings("unchecked")
       public void write(JsonWriter writer, T value) throws IOException {
         writer.beginObject();
-        for (Metadata.GeneratedWith e : (TreeSet<Metadata.GeneratedWith>) value) {
-          ELEMENT_ADAPTER.write(writer, e);
+        for (Metadata.GeneratedWith e : (Iterable<Metadata.GeneratedWith>) value) {
+          elementAdapter.write(writer, e);
         }
         writer.endObject();
       }
@@ -60,6 +66,12 @@ final class GeneratedWithSetAdapterFactory implements TypeAdapterFactory {
 
   private static final class GeneratedWithAdapter extends TypeAdapter<Metadata.GeneratedWith> {
 
+    private final boolean prettyPrinting;
+
+    private GeneratedWithAdapter(boolean prettyPrinting) {
+      this.prettyPrinting = prettyPrinting;
+    }
+
     @Override
     public Metadata.GeneratedWith read(JsonReader reader) throws IOException {
       var builder = new Metadata.GeneratedWith.Builder()
@@ -75,13 +87,17 @@ final class GeneratedWithSetAdapterFactory implements TypeAdapterFactory {
     @Override
     public void write(JsonWriter writer, Metadata.GeneratedWith value) throws IOException {
       writer.name(value.getName())
-          .beginArray()
-          .setIndent("");
+          .beginArray();
+      if (prettyPrinting) {
+        writer.setIndent("");
+      }
       for (SemVer semVer : value.getVersions()) {
         writer.value(semVer.toString());
       }
-      writer.endArray()
-          .setIndent("  ");
+      writer.endArray();
+      if (prettyPrinting) {
+        writer.setIndent("  ");
+      }
     }
   }
 }
\ No newline at end of file
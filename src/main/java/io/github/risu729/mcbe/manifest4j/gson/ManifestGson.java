@@ -14,17 +14,56 @@ import com.google.gson.GsonBuilder;
 
 import io.github.risu729.mcbe.manifest4j.SemVer;
 
+// each instance is created on first use by its own builder, so that short-lived programs pay
+// only for the ones they use, for example reading a manifest never creates canonical()
 public final class ManifestGson {
-  
-  private static final GsonBuilder BUILDER = new GsonBuilder()
-      .setPrettyPrinting()
-      .setFieldNamingStrategy(new SnakeCaseField())
-      .registerTypeAdapterFactory(new SnakeCaseEnum())
-      .registerTypeAdapterFactory(new GeneratedWithSetAdapterFactory())
-      .registerTypeHierarchyAdapter(Path.class, new PathAdapter().nullSafe())
-      .registerTypeAdapter(SemVer.class, new SemVerAdapter().nullSafe());
-
-  public static final Gson NORMAL = BUILDER.create();
-
-  public static final Gson SERIALIZE_NULLS = BUILDER.serializeNulls().create();
-}
\ No newline at end of file
+
+  private ManifestGson() {
+  }
+
+  public static Gson normal() {
+    return Normal.INSTANCE;
+  }
+
+  // same as normal(), but writes nulls, used by toString
+  public static Gson serializeNulls() {
+    return SerializeNulls.INSTANCE;
+  }
+
+  // without any whitespace or HTML escaping, and with "/" as the separator of paths
+  public static Gson canonical() {
+    return Canonical.INSTANCE;
+  }
+
+  private static GsonBuilder prettyBuilder() {
+    return new GsonBuilder()
+        .setPrettyPrinting()
+        .setFieldNamingStrategy(new SnakeCaseField())
+        .registerTypeAdapterFactory(new SnakeCaseEnum())
+        .registerTypeAdapterFactory(new GeneratedWithSetAdapterFactory(true))
+        .registerTypeHierarchyAdapter(Path.class, new PathAdapter(false).nullSafe())
+        .registerTypeAdapter(SemVer.class, new SemVerAdapter(true).nullSafe());
+  }
+
+  private static final class Normal {
+
+    private static final Gson INSTANCE = prettyBuilder().create();
+  }
+
+  private static final class SerializeNulls {
+
+    private static final Gson INSTANCE = prettyBuilder().serializeNulls().create();
+  }
+
+  private static final class Canonical {
+
+    private static final Gson INSTANCE = new GsonBuilder()
+        .disableHtmlEscaping()
+        .setFieldNamingStrategy(new SnakeCaseField())
+        .registerTypeAdapterFactory(new SnakeCaseEnum())
+        .registerTypeAdapterFactory(new GeneratedWithSetAdapterFactory(false))
+        .registerTypeHierarchyAdapter(Path.class, new PathAdapter(true).nullSafe())
+        .registerTypeAdapter(SemVer.class, new SemVerAdapter(false).nullSafe())
+        .create();
+  }
+}
@@ -16,6 +16,13 @@ import com.google.gson.TypeAdapter;
 
 final class PathAdapter extends TypeAdapter<Path> {
 
+  // whether paths are written with "/" whatever the separator of the platform
+  private final boolean portable;
+
+  PathAdapter(boolean portable) {
+    this.portable = portable;
+  }
+
   @Override
   public Path read(JsonReader reader) throws IOException {
     return Path.of(reader.nextString());
@@ -23,6 +30,9 @@ final class PathAdapter extends TypeAdapter<Path> {
 
   @Override
   public void write(JsonWriter writer, Path value) throws IOException {
-    writer.value(value.toString());
+    var separator = value.getFileSystem().getSeparator();
+    writer.value(portable && !separator.equals("/")
+        ? value.toString().replace(separator, "/")
+        : value.toString());
   }
 }
\ No newline at end of file
@@ -17,25 +17,35 @@ import io.github.risu729.mcbe.manifest4j.SemVer;
 
 final class SemVerAdapter extends TypeAdapter<SemVer> {
 
+  // whether versions are kept on a line while the rest is indented
+  private final boolean prettyPrinting;
+
+  SemVerAdapter(boolean prettyPrinting) {
+    this.prettyPrinting = prettyPrinting;
+  }
+
   @Override
   public SemVer read(JsonReader reader) throws IOException {
-    int[] semVer = new int[3];
     reader.beginArray();
-    for (int i = 0; i < 3; i++) {
-      semVer[i] = reader.nextInt();
-    }
+    int major = reader.nextInt();
+    int minor = reader.nextInt();
+    int patch = reader.nextInt();
     reader.endArray();
-    return SemVer.of(semVer[0], semVer[1], semVer[2]);
+    return SemVer.of(major, minor, patch);
   }
 
   @Override
   public void write(JsonWriter writer, SemVer value) throws IOException {
-    writer.beginArray()
-        .setIndent("");
-    for (int n : value.toArray()) {
-      writer.value(n);
+    writer.beginArray();
+    if (prettyPrinting) {
+      writer.setIndent("");
+    }
+    writer.value(value.getMajor())
+        .value(value.getMinor())
+        .value(value.getPatch())
+        .endArray();
+    if (prettyPrinting) {
+      writer.setIndent("  ");
     }
-    writer.endArray()
-        .setIndent("  ");
   }
 }
\ No newline at end of file
@@ -31,71 +31,85 @@ import com.google.gson.TypeAdapterFactory;
 final class SnakeCaseEnum implements TypeAdapterFactory {
 
   private static final Pattern SNAKE_SEPARATOR = Pattern.compile("_+");
-  
+
+  // shared by every instance of Gson, so that each enum is reflected once
+  private static final ClassValue<Names> NAMES = new ClassValue<>() {
+    @Override
+    protected Names computeValue(Class<?> type) {
+      return new Names(type);
+    }
+  };
+
   @Override
   @SuppressWarnings("unchecked")
   public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
-    
+
     Class<T> rawType = (Class<T>) type.getRawType();
     if (!rawType.isEnum()) {
       return null;
     }
-
-    final Map<String, T> stringToConstant = new HashMap<>();
-    final Map<String, T> alternateToConstant = new HashMap<>();
-    final Map<T, String> constantToString = new HashMap<>();
-
-    Set<String> duplicatedAlternates = new HashSet<>();
-    for (T constant : rawType.getEnumConstants()) {
-      final SerializedName annotation;
-      try {
-        annotation = constant.getClass()
-            .getField(((Enum) constant).name())
-            .getAnnotation(SerializedName.class);
-      } catch (NoSuchFieldException e) {
-        throw new AssertionError(e);
-      }
-      String str;
-      if (annotation == null) {
-        str = screamingSnakeToSnake(constant.toString());
-      } else {
-        str = Objects.requireNonNull(annotation.value(), "serialized name must not be null");
-        if (stringToConstant.containsKey(str)) {
-          throw new IllegalStateException("serialized names are duplicated: " + str);
-        }
-        for (String alternate : annotation.alternate()) {
-          Objects.requireNonNull(alternate, "serialized name must not be null");
-          if (alternateToConstant.containsKey(alternate)) {
-            duplicatedAlternates.add(alternate);
-          } else {
-            alternateToConstant.put(alternate, constant);
-          }
-        }
-      }
-      constantToString.put(constant, str);
-      stringToConstant.put(str, constant);
-    }
-    alternateToConstant.keySet().removeAll(duplicatedAlternates);
+    var names = NAMES.get(rawType);
 
     return new TypeAdapter<T>() {
       @Override
       public T read(JsonReader reader) throws IOException {
         var value = reader.nextString();
-        if (stringToConstant.containsKey(value)) {
-          return stringToConstant.get(value);
+        if (names.stringToConstant.containsKey(value)) {
+          return (T) names.stringToConstant.get(value);
         } else {
-          return alternateToConstant.get(value);
+          return (T) names.alternateToConstant.get(value);
         }
       }
 
       @Override
       public void write(JsonWriter writer, T value) throws IOException {
-        writer.value(constantToString.get(value));
+        writer.value(names.constantToString.get(value));
       }
     }.nullSafe();
   }
 
-  private String screamingSnakeToSnake(String str) {
+  private static final class Names {
+
+    private final Map<String, Object> stringToConstant = new HashMap<>();
+    private final Map<String, Object> alternateToConstant = new HashMap<>();
+    private final Map<Object, String> constantToString = new HashMap<>();
+
+    private Names(Class<?> rawType) {
+      Set<String> duplicatedAlternates = new HashSet<>();
+      for (Object constant : rawType.getEnumConstants()) {
+        final SerializedName annotation;
+        try {
+          annotation = rawType
+              .getField(((Enum<?>) constant).name())
+              .getAnnotation(SerializedName.class);
+        } catch (NoSuchFieldException e) {
+          throw new AssertionError(e);
+        }
+        String str;
+        if (annotation == null) {
+          str = screamingSnakeToSnake(constant.toString());
+        } else {
+          str = Objects.requireNonNull(annotation.value(), "serialized name must not be null");
+          if (stringToConstant.containsKey(str)) {
+            throw new IllegalStateException("serialized names are duplicated: " + str);
+          }
+          for (String alternate : annotation.alternate()) {
+            Objects.requireNonNull(alternate, "serialized name must not be null");
+            if (alternateToConstant.containsKey(alternate)) {
+              duplicatedAlternates.add(alternate);
+            } else {
+              alternateToConstant.put(alternate, constant);
+            }
+          }
+        }
+        constantToString.put(constant, str);
+        stringToConstant.put(str, constant);
+      }
+      alternateToConstant.keySet().removeAll(duplicatedAlternates);
+    }
+  }
+
+  private static String screamingSnakeToSnake(String str) {
     return SNAKE_SEPARATOR.splitAsStream(str)
         .filter(Predicate.not(String::isBlank))
         .map(s -> s.toLowerCase(Locale.ENGLISH))
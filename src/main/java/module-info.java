@@ -9,5 +9,8 @@ module io.github.risu729.mcbe.manifest4j {
   
   exports io.github.risu729.mcbe.manifest4j;
 
+  // for Gson to instantiate the adapter factory specified by @JsonAdapter
+  opens io.github.risu729.mcbe.manifest4j to com.google.gson;
+
   requires com.google.gson;
 }
\ No newline at end of file
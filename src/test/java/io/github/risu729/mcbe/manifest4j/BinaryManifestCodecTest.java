@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2022 Risu
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.github.risu729.mcbe.manifest4j;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class BinaryManifestCodecTest {
+
+  private static final ManifestCodec CODEC = ManifestCodec.binary();
+
+  @Test
+  void roundTrip() {
+    for (var manifest : ManifestFixtures.manifests()) {
+      var decoded = CODEC.decode(CODEC.encode(manifest));
+      assertEquals(manifest, decoded);
+      assertEquals(manifest.toJson(), decoded.toJson());
+    }
+  }
+
+  @Test
+  void encodeIsDeterministic() {
+    for (var manifest : ManifestFixtures.manifests()) {
+      assertArrayEquals(CODEC.encode(manifest), CODEC.encode(CODEC.decode(CODEC.encode(manifest))));
+    }
+  }
+
+  @Test
+  void decodeReadsFromPositionToLimitWithoutChangingThem() {
+    var manifest = ManifestTemplates.get(Module_.Type.RESOURCES, true);
+    var bytes = CODEC.encode(manifest);
+    var buffer = ByteBuffer.allocateDirect(bytes.length + 4);
+    buffer.position(2);
+    buffer.put(bytes).position(2).limit(2 + bytes.length);
+    assertEquals(manifest, CODEC.decode(buffer));
+    assertEquals(2, buffer.position());
+    assertEquals(2 + bytes.length, buffer.limit());
+  }
+
+  @Test
+  void rejectsTruncatedInput() {
+    for (var manifest : ManifestFixtures.manifests()) {
+      var bytes = CODEC.encode(manifest);
+      for (int length = 0; length < bytes.length; length++) {
+        var truncated = Arrays.copyOf(bytes, length);
+        assertThrows(IllegalArgumentException.class, () -> CODEC.decode(truncated));
+      }
+    }
+  }
+
+  @Test
+  void rejectsTrailingBytes() {
+    var bytes = CODEC.encode(ManifestTemplates.get(Module_.Type.DATA, true));
+    var longer = Arrays.copyOf(bytes, bytes.length + 1);
+    assertThrows(IllegalArgumentException.class, () -> CODEC.decode(longer));
+  }
+
+  @Test
+  void rejectsOtherFormats() {
+    var bytes = CODEC.encode(ManifestTemplates.get(Module_.Type.DATA, true));
+    bytes[0] ^= 1;
+    var exception = assertThrows(IllegalArgumentException.class, () -> CODEC.decode(bytes));
+    assertEquals("malformed binary manifest: not a binary manifest", exception.getMessage());
+    assertThrows(IllegalArgumentException.class, () -> CODEC.decode("{}".getBytes()));
+  }
+
+  @Test
+  void rejectsOtherFormatVersions() {
+    var bytes = CODEC.encode(ManifestTemplates.get(Module_.Type.DATA, true));
+    // the version is a varint after the magic
+    bytes[4] = (byte) (BinaryManifestCodec.FORMAT_VERSION + 1);
+    var exception = assertThrows(IllegalArgumentException.class, () -> CODEC.decode(bytes));
+    assertEquals("malformed binary manifest: unsupported format version: "
+        + (BinaryManifestCodec.FORMAT_VERSION + 1), exception.getMessage());
+  }
+
+  // corrupted input either decodes to some manifest or throws IllegalArgumentException
+  @Test
+  void corruptedInputThrowsOnlyIllegalArgumentException() {
+    var random = new Random(0);
+    for (var manifest : ManifestFixtures.manifests()) {
+      var bytes = CODEC.encode(manifest);
+      for (int i = 0; i < 200; i++) {
+        var corrupted = bytes.clone();
+        corrupted[random.nextInt(corrupted.length)] ^= (byte) (1 << random.nextInt(8));
+        try {
+          CODEC.decode(corrupted);
+        } catch (IllegalArgumentException e) {
+          // expected
+        }
+      }
+    }
+  }
+}
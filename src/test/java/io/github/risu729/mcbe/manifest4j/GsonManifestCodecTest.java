@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2022 Risu
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.github.risu729.mcbe.manifest4j;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// every entry point must read the same bytes the same way
+class GsonManifestCodecTest {
+
+  // malformed UTF-8 in a string, in an unknown value, at the end and as the whole input
+  private static final byte[][] MALFORMED = {
+      {'{', '"', 'h', 'e', 'a', 'd', 'e', 'r', '"', ':', '{', '"', 'n', 'a', 'm', 'e', '"', ':',
+          '"', (byte) 0xff, '"', '}', '}'},
+      {'{', '"', 'x', '"', ':', '"', (byte) 0xe6, (byte) 0x97, '"', '}'},
+      {'{', '"', 'x', '"', ':', '"', (byte) 0xed, (byte) 0xa0, (byte) 0x80, '"', '}'},
+      {'{', '}', ' ', (byte) 0xc0, (byte) 0x80},
+      {(byte) 0x80},
+  };
+
+  @TempDir
+  Path dir;
+
+  @Test
+  void reportsMalformedInputFromEveryEntryPoint() throws IOException {
+    var file = dir.resolve(ManifestScanner.MANIFEST_FILE_NAME);
+    for (var codec : new ManifestCodec[] {ManifestCodec.gson(), ManifestCodec.utf8()}) {
+      for (var bytes : MALFORMED) {
+        Files.write(file, bytes);
+        var direct = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+        var fromPath = decode(codec, file);
+        assertEquals(fromPath, decode(codec, ByteBuffer.wrap(bytes)));
+        assertEquals(fromPath, decode(codec, direct));
+      }
+    }
+  }
+
+  @Test
+  void readsWellFormedInputFromEveryEntryPoint() throws IOException {
+    var file = dir.resolve(ManifestScanner.MANIFEST_FILE_NAME);
+    var bytes = "{\"header\":{\"name\":\"日本語 😀\"}}".getBytes(StandardCharsets.UTF_8);
+    Files.write(file, bytes);
+    var codec = ManifestCodec.gson();
+    assertEquals("日本語 😀", codec.decode(file).getHeader().getName());
+    assertEquals(codec.decode(file), codec.decode(bytes));
+  }
+
+  // the cause of the exception, as decode(Path) unwraps I/O errors from Gson
+  private static String decode(ManifestCodec codec, Object input) {
+    try {
+      var manifest = input instanceof Path path ? codec.decode(path)
+          : codec.decode((ByteBuffer) input);
+      return String.valueOf(manifest);
+    } catch (IOException | RuntimeException e) {
+      var cause = e.getCause() == null ? e : e.getCause();
+      return cause.getClass().getName() + ": " + cause.getMessage();
+    }
+  }
+}
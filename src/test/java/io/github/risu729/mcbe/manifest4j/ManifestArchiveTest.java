@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2022 Risu
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.github.risu729.mcbe.manifest4j;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ManifestArchiveTest {
+
+  private static final Manifest RESOURCES = ManifestTemplates.get(Module_.Type.RESOURCES, true);
+  private static final Manifest DATA = ManifestTemplates.get(Module_.Type.DATA, true);
+
+  @TempDir
+  Path dir;
+
+  @Test
+  void readsManifestEntries() throws IOException {
+    var archive = write("pack.mcpack", zip(false, Map.of(
+        "manifest.json", json(RESOURCES),
+        "sub\\manifest.json", json(DATA),
+        "textures/a.png", new byte[100],
+        "broken/manifest.json", "{".getBytes(StandardCharsets.UTF_8))));
+    var result = ManifestArchive.read(archive);
+    assertEquals(Map.of("manifest.json", RESOURCES, "sub/manifest.json", DATA),
+        result.getManifests());
+    assertEquals(Set.of("broken/manifest.json"), result.getErrors().keySet());
+  }
+
+  @Test
+  void readsStoredAndDeflatedNestedArchives() throws IOException {
+    var pack = zip(false, Map.of("manifest.json", json(RESOURCES)));
+    var archive = write("addon.mcaddon", zip(true, Map.of("stored.mcpack", pack)));
+    assertEquals(Map.of("stored.mcpack!/manifest.json", RESOURCES),
+        ManifestArchive.read(archive).getManifests());
+    archive = write("addon.mcaddon", zip(false, Map.of("deflated.mcpack", pack)));
+    assertEquals(Map.of("deflated.mcpack!/manifest.json", RESOURCES),
+        ManifestArchive.read(archive).getManifests());
+  }
+
+  @Test
+  void recordsTooDeeplyNestedArchives() throws IOException {
+    var bytes = zip(false, Map.of("manifest.json", json(DATA)));
+    for (int i = 0; i < 3; i++) {
+      bytes = zip(i % 2 == 0, Map.of("a.zip", bytes));
+    }
+    var result = ManifestArchive.read(write("deep.zip", bytes));
+    assertTrue(result.getManifests().isEmpty());
+    var error = result.getErrors().get("a.zip!/a.zip!/a.zip");
+    assertInstanceOf(ZipException.class, error, result.getErrors()::toString);
+    assertEquals(1, result.getErrors().size());
+  }
+
+  @Test
+  void readsZip64ExtraFields() throws IOException {
+    var data = json(DATA);
+    var archive = write("zip64.mcpack", zip64("manifest.json", data));
+    assertEquals(Map.of("manifest.json", DATA), ManifestArchive.read(archive).getManifests());
+  }
+
+  @Test
+  void readsZip64EndOfCentralDirectory() throws IOException {
+    // more than 65535 entries are recorded only in the zip64 end of central directory record
+    var out = new ByteArrayOutputStream();
+    try (var zip = new ZipOutputStream(out)) {
+      for (int i = 0; i < 0x10000; i++) {
+        zip.putNextEntry(new ZipEntry(i + "/"));
+      }
+      zip.putNextEntry(new ZipEntry("manifest.json"));
+      zip.write(json(DATA));
+    }
+    var archive = write("many.zip", out.toByteArray());
+    assertEquals(Map.of("manifest.json", DATA), ManifestArchive.read(archive).getManifests());
+  }
+
+  @Test
+  void rejectsOtherFiles() throws IOException {
+    assertThrows(ZipException.class, () -> ManifestArchive.read(write("empty.zip", new byte[0])));
+    assertThrows(ZipException.class,
+        () -> ManifestArchive.read(write("text.zip", "{}".getBytes(StandardCharsets.UTF_8))));
+  }
+
+  // corrupt archives either throw IOException or record errors
+  @Test
+  void corruptArchivesThrowOnlyIOException() throws IOException {
+    var pack = zip(false, Map.of("manifest.json", json(RESOURCES)));
+    var bytes = zip(false, Map.of(
+        "manifest.json", json(DATA),
+        "stored.mcpack", pack));
+    var random = new Random(0);
+    var file = dir.resolve("corrupt.zip");
+    for (int i = 0; i < 2000; i++) {
+      var corrupt = i % 10 == 0
+          ? Arrays.copyOf(bytes, random.nextInt(bytes.length))
+          : bytes.clone();
+      for (int n = i % 10 == 0 ? 0 : 1 + random.nextInt(4); n > 0; n--) {
+        corrupt[random.nextInt(corrupt.length)] = (byte) random.nextInt();
+      }
+      Files.write(file, corrupt);
+      try {
+        ManifestArchive.read(file);
+      } catch (IOException e) {
+        // expected
+      }
+    }
+  }
+
+  private static byte[] json(Manifest manifest) {
+    return manifest.toJson().getBytes(StandardCharsets.UTF_8);
+  }
+
+  private Path write(String name, byte[] bytes) throws IOException {
+    return Files.write(dir.resolve(name), bytes);
+  }
+
+  private static byte[] zip(boolean stored, Map<String, byte[]> entries) throws IOException {
+    var out = new ByteArrayOutputStream();
+    try (var zip = new ZipOutputStream(out)) {
+      for (var e : entries.entrySet()) {
+        var entry = new ZipEntry(e.getKey());
+        if (stored) {
+          var crc = new CRC32();
+          crc.update(e.getValue());
+          entry.setMethod(ZipEntry.STORED);
+          entry.setSize(e.getValue().length);
+          entry.setCrc(crc.getValue());
+        }
+        zip.putNextEntry(entry);
+        zip.write(e.getValue());
+      }
+    }
+    return out.toByteArray();
+  }
+
+  // a stored entry whose sizes and offset are all in the zip64 extra field
+  private static byte[] zip64(String name, byte[] data) {
+    var nameBytes = name.getBytes(StandardCharsets.UTF_8);
+    var crc = new CRC32();
+    crc.update(data);
+    var buffer = ByteBuffer.allocate(256 + 2 * nameBytes.length + data.length)
+        .order(ByteOrder.LITTLE_ENDIAN);
+    buffer.putInt(0x04034b50).putShort((short) 45).putShort((short) 0).putShort((short) 0)
+        .putInt(0).putInt((int) crc.getValue()).putInt(data.length).putInt(data.length)
+        .putShort((short) nameBytes.length).putShort((short) 0).put(nameBytes).put(data);
+    int directoryOffset = buffer.position();
+    buffer.putInt(0x02014b50).putShort((short) 45).putShort((short) 45).putShort((short) 0)
+        .putShort((short) 0).putInt(0).putInt((int) crc.getValue()).putInt(-1).putInt(-1)
+        .putShort((short) nameBytes.length).putShort((short) 28).putShort((short) 0)
+        .putShort((short) 0).putShort((short) 0).putInt(0).putInt(-1).put(nameBytes)
+        .putShort((short) 1).putShort((short) 24)
+        .putLong(data.length).putLong(data.length).putLong(0);
+    int directorySize = buffer.position() - directoryOffset;
+    buffer.putInt(0x06054b50).putShort((short) 0).putShort((short) 0).putShort((short) 1)
+        .putShort((short) 1).putInt(directorySize).putInt(directoryOffset).putShort((short) 0);
+    return Arrays.copyOf(buffer.array(), buffer.position());
+  }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2022 Risu
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.github.risu729.mcbe.manifest4j;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ManifestCacheTest {
+
+  private static final Manifest RESOURCES = ManifestTemplates.get(Module_.Type.RESOURCES, true);
+  private static final Manifest DATA = ManifestTemplates.get(Module_.Type.DATA, false);
+
+  @TempDir
+  Path dir;
+
+  @Test
+  void reusesEntriesUntilTheFileChanges() throws IOException {
+    var file = write("pack", DATA);
+    var cache = ManifestCache.of();
+    var first = cache.get(file);
+    assertEquals(DATA, first);
+    assertSame(first, cache.get(file));
+    // the same key for another form of the path
+    assertSame(first, cache.get(dir.resolve("pack/../pack").resolve(file.getFileName())));
+    write("pack", RESOURCES);
+    assertEquals(RESOURCES, cache.get(file));
+    var stats = cache.stats();
+    assertEquals(2, stats.getHits());
+    assertEquals(2, stats.getMisses());
+    assertEquals(1, cache.size());
+  }
+
+  @Test
+  void boundsTheNumberOfEntries() throws IOException {
+    var cache = new ManifestCache.Builder().maximumSize(10).build();
+    for (var file : write(50)) {
+      cache.get(file);
+    }
+    assertEquals(10, cache.size());
+  }
+
+  @Test
+  void boundsTheBytesOfEntries() throws IOException {
+    var files = write(20);
+    long size = Files.size(files.get(0));
+    var cache = new ManifestCache.Builder().maximumBytes(size * 5).build();
+    for (var file : files) {
+      cache.get(file);
+    }
+    assertEquals(5, cache.size());
+    // larger than the whole cache
+    cache = new ManifestCache.Builder().maximumBytes(size - 1).build();
+    cache.get(files.get(0));
+    assertEquals(0, cache.size());
+  }
+
+  // a scan of files read once does not flush the files read often
+  @Test
+  void admitsOnlyMoreFrequentlyReadEntries() throws IOException {
+    // few, so that no file read once shares every counter of the sketch with them
+    var hot = write(5);
+    var cache = new ManifestCache.Builder().maximumSize(100).build();
+    for (int i = 0; i < 10; i++) {
+      for (var file : hot) {
+        cache.get(file);
+      }
+    }
+    for (var file : write(500)) {
+      cache.get(file);
+    }
+    long hits = cache.stats().getHits();
+    for (var file : hot) {
+      cache.get(file);
+    }
+    assertEquals(hits + hot.size(), cache.stats().getHits());
+    assertEquals(100, cache.size());
+  }
+
+  // replacing a changed file needs no admission, even if the cache is full of hotter entries
+  @Test
+  void keepsReplacedEntries() throws IOException {
+    var hot = write("hot", DATA);
+    var cold = write("cold", DATA);
+    long size = Files.size(hot);
+    var cache = new ManifestCache.Builder().maximumBytes(size * 2 + 100).build();
+    for (int i = 0; i < 10; i++) {
+      cache.get(hot);
+    }
+    cache.get(cold);
+    assertEquals(2, cache.size());
+    // larger, so that the hot entry has to be evicted
+    Files.writeString(cold, DATA.toJson() + " ".repeat(200), StandardCharsets.UTF_8);
+    assertEquals(DATA, cache.get(cold));
+    long hits = cache.stats().getHits();
+    assertEquals(DATA, cache.get(cold));
+    assertEquals(hits + 1, cache.stats().getHits());
+    assertEquals(1, cache.stats().getEvictions());
+    assertEquals(1, cache.size());
+  }
+
+  @Test
+  void invalidatesEntries() throws IOException {
+    var files = write(3);
+    var cache = ManifestCache.of();
+    for (var file : files) {
+      cache.get(file);
+    }
+    cache.invalidate(files.get(0));
+    cache.invalidate(dir.resolve("missing.json"));
+    assertEquals(2, cache.size());
+    cache.invalidateAll();
+    assertEquals(0, cache.size());
+    assertEquals(3, cache.stats().getInvalidations());
+  }
+
+  @Test
+  void invalidatesChangedFilesByWatching() throws IOException, InterruptedException {
+    var file = write("pack", DATA);
+    try (var cache = new ManifestCache.Builder().watch(true).build()) {
+      cache.get(file);
+      write("pack", RESOURCES);
+      // the watch service may be polling
+      for (int i = 0; i < 300 && cache.size() > 0; i++) {
+        Thread.sleep(100);
+      }
+      assertEquals(0, cache.size());
+      assertTrue(cache.stats().getInvalidations() > 0);
+      assertEquals(RESOURCES, cache.get(file));
+    }
+  }
+
+  @Test
+  void rejectsInvalidSettings() {
+    assertThrows(IllegalArgumentException.class,
+        () -> new ManifestCache.Builder().maximumSize(0));
+    assertThrows(IllegalArgumentException.class,
+        () -> new ManifestCache.Builder().maximumBytes(0L));
+    assertThrows(IOException.class, () -> ManifestCache.of().get(dir.resolve("missing.json")));
+  }
+
+  private List<Path> write(int count) throws IOException {
+    var files = new ArrayList<Path>();
+    for (int i = 0; i < count; i++) {
+      files.add(write("pack" + (1000 + i), DATA));
+    }
+    return files;
+  }
+
+  private Path write(String pack, Manifest manifest) throws IOException {
+    var file = Files.createDirectories(dir.resolve(pack))
+        .resolve(ManifestScanner.MANIFEST_FILE_NAME);
+    return Files.writeString(file, manifest.toJson(), StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2022 Risu
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.github.risu729.mcbe.manifest4j;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ManifestEditorTest {
+
+  private static final Manifest MANIFEST = ManifestTemplates.get(Module_.Type.RESOURCES, true);
+
+  @TempDir
+  Path dir;
+
+  @Test
+  void bumpsEveryFileInBatches() throws IOException, InterruptedException {
+    var files = write(200);
+    var result = new ManifestEditor.Builder()
+        .parallelism(4)
+        .batchSize(7)
+        .build()
+        .edit(files, ManifestEditor.bumpVersion());
+    assertEquals(Set.copyOf(files), result.getChanged().keySet());
+    assertTrue(result.getUnchanged().isEmpty());
+    assertTrue(result.getErrors().isEmpty());
+    for (var file : files) {
+      var manifest = Manifest.fromJson(file);
+      assertEquals(SemVer.of(1, 0, 1), manifest.getHeader().getVersion());
+      assertEquals(manifest, result.getChanged().get(file));
+    }
+    assertNoTemporaryFiles();
+  }
+
+  @Test
+  void leavesUnchangedFilesAndRecordsErrors() throws IOException, InterruptedException {
+    var file = write(1).get(0);
+    var broken = Files.writeString(dir.resolve("broken.json"), "{");
+    var missing = dir.resolve("missing.json");
+    var before = Files.readString(file);
+    var result = ManifestEditor.of().edit(List.of(file, broken, missing),
+        ManifestEditor.raiseMinEngineVersion(SemVer.of(1, 0, 0)));
+    assertTrue(result.getChanged().isEmpty());
+    assertEquals(Set.of(file), result.getUnchanged());
+    assertEquals(Set.of(broken, missing), result.getErrors().keySet());
+    assertEquals(before, Files.readString(file));
+    assertEquals("{", Files.readString(broken));
+    assertNoTemporaryFiles();
+  }
+
+  @Test
+  void dryRunWritesNothing() throws IOException, InterruptedException {
+    var files = write(10);
+    var before = Files.readString(files.get(0));
+    var result = new ManifestEditor.Builder()
+        .dryRun(true)
+        .build()
+        .edit(files, ManifestEditor.bumpVersion());
+    assertEquals(10, result.getChanged().size());
+    assertEquals(before, Files.readString(files.get(0)));
+    assertNoTemporaryFiles();
+  }
+
+  @Test
+  void reformatsOnlyFilesWhichDiffer() throws IOException, InterruptedException {
+    var formatted = write(1).get(0);
+    var unformatted = Files.writeString(dir.resolve("unformatted.json"),
+        MANIFEST.toJson().replace("\n", "\n\n"));
+    var result = ManifestEditor.of().reformat(List.of(formatted, unformatted));
+    assertEquals(Set.of(unformatted), result.getChanged().keySet());
+    assertEquals(Set.of(formatted), result.getUnchanged());
+    assertEquals(Files.readString(formatted), Files.readString(unformatted));
+  }
+
+  @Test
+  void leavesTheGivenExecutorRunning() throws IOException, InterruptedException {
+    var files = write(20);
+    var executor = Executors.newCachedThreadPool();
+    try {
+      var editor = new ManifestEditor.Builder().executor(executor).build();
+      editor.edit(files, ManifestEditor.bumpVersion());
+      editor.edit(files, ManifestEditor.bumpVersion());
+      assertFalse(executor.isShutdown());
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(SemVer.of(1, 0, 2), Manifest.fromJson(files.get(0)).getHeader().getVersion());
+  }
+
+  @Test
+  void rejectsInvalidSettings() {
+    assertThrows(IllegalArgumentException.class,
+        () -> new ManifestEditor.Builder().parallelism(0));
+    assertThrows(IllegalArgumentException.class,
+        () -> new ManifestEditor.Builder().batchSize(0));
+  }
+
+  private List<Path> write(int count) throws IOException {
+    var files = new ArrayList<Path>();
+    for (int i = 0; i < count; i++) {
+      var pack = Files.createDirectories(dir.resolve("pack" + i));
+      files.add(Files.writeString(pack.resolve(ManifestScanner.MANIFEST_FILE_NAME),
+          MANIFEST.toJson(), StandardCharsets.UTF_8));
+    }
+    return files;
+  }
+
+  private void assertNoTemporaryFiles() throws IOException {
+    try (var files = Files.walk(dir)) {
+      assertTrue(files.noneMatch(e -> e.getFileName().toString().endsWith(".tmp")));
+    }
+  }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2022 Risu
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.github.risu729.mcbe.manifest4j;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+
+import com.google.gson.JsonParseException;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ManifestFilesTest {
+
+  private static final Manifest RESOURCES = ManifestTemplates.get(Module_.Type.RESOURCES, true);
+  private static final Manifest DATA = ManifestTemplates.get(Module_.Type.DATA, false);
+
+  @TempDir
+  Path dir;
+
+  @Test
+  void loadsByChannels() throws Exception {
+    assertLoads(ManifestFiles.of());
+  }
+
+  @Test
+  void loadsOnTheGivenExecutor() throws Exception {
+    var executor = Executors.newFixedThreadPool(2);
+    try {
+      assertLoads(new ManifestFiles.Builder().executor(executor).build());
+      assertFalse(executor.isShutdown());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void writesByChannels() throws Exception {
+    assertWrites(ManifestFiles.of());
+    assertWrites(new ManifestFiles.Builder().sync(false).build());
+  }
+
+  @Test
+  void writesOnTheGivenExecutor() throws Exception {
+    var executor = Executors.newFixedThreadPool(2);
+    try {
+      assertWrites(new ManifestFiles.Builder().executor(executor).build());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void recordsErrorsOfEveryFile() throws Exception {
+    var valid = write("valid", DATA.toJson());
+    var broken = write("broken", "{");
+    var empty = write("empty", "");
+    var missing = dir.resolve("missing.json");
+    var result = ManifestFiles.of().loadAllAsync(List.of(valid, broken, empty, missing)).get();
+    assertEquals(Map.of(valid, DATA), result.getManifests());
+    assertEquals(Set.of(broken, empty, missing), result.getErrors().keySet());
+    assertInstanceOf(JsonParseException.class, result.getErrors().get(broken));
+    assertInstanceOf(IllegalStateException.class, result.getErrors().get(empty));
+    assertInstanceOf(NoSuchFileException.class, result.getErrors().get(missing));
+  }
+
+  // operations which complete at once start the queued ones one after another, not nested
+  @Test
+  void queuesManyOperationsCompletingAtOnce() throws Exception {
+    var files = new ArrayList<Path>();
+    for (int i = 0; i < 20_000; i++) {
+      files.add(dir.resolve("missing" + i + ".json"));
+    }
+    var result = new ManifestFiles.Builder()
+        .parallelism(1)
+        .build()
+        .loadAllAsync(files)
+        .get();
+    assertTrue(result.getManifests().isEmpty());
+    assertEquals(files.size(), result.getErrors().size());
+  }
+
+  @Test
+  void startsAtMostTheParallelismOfOperations() throws Exception {
+    var file = write("pack", DATA.toJson());
+    // runs the tasks only when asked
+    var tasks = new ArrayDeque<Runnable>();
+    var files = new ManifestFiles.Builder()
+        .executor(tasks::add)
+        .parallelism(2)
+        .build();
+    var futures = new ArrayList<CompletableFuture<Manifest>>();
+    for (int i = 0; i < 5; i++) {
+      futures.add(files.loadAsync(file));
+    }
+    assertEquals(2, tasks.size());
+    for (int completed = 0; !tasks.isEmpty(); completed++) {
+      assertTrue(tasks.size() <= 2);
+      tasks.poll().run();
+      // the completed one started a queued one
+      assertEquals(completed + 1, futures.stream().filter(CompletableFuture::isDone).count());
+    }
+    for (var e : futures) {
+      assertEquals(DATA, e.get());
+    }
+  }
+
+  @Test
+  void rejectsInvalidInput() {
+    assertThrows(IllegalArgumentException.class,
+        () -> new ManifestFiles.Builder().parallelism(0));
+    var files = ManifestFiles.of();
+    assertThrows(NullPointerException.class, () -> files.loadAsync(null));
+    assertThrows(NullPointerException.class, () -> files.writeAsync(dir.resolve("a"), null));
+  }
+
+  private void assertLoads(ManifestFiles files) throws Exception {
+    var file = write("pack", RESOURCES.toJson());
+    assertEquals(RESOURCES, files.loadAsync(file).get());
+    var exception = assertThrows(ExecutionException.class,
+        () -> files.loadAsync(dir.resolve("missing.json")).get());
+    assertInstanceOf(NoSuchFileException.class, exception.getCause());
+    exception = assertThrows(ExecutionException.class,
+        () -> files.loadAsync(write("broken", "{")).get());
+    assertInstanceOf(JsonParseException.class, exception.getCause());
+  }
+
+  private void assertWrites(ManifestFiles files) throws Exception {
+    var file = write("pack", DATA.toJson());
+    var futures = new ArrayList<CompletableFuture<Void>>();
+    for (int i = 0; i < 20; i++) {
+      var pack = Files.createDirectories(dir.resolve("written" + i));
+      futures.add(files.writeAsync(pack.resolve(ManifestScanner.MANIFEST_FILE_NAME), RESOURCES));
+    }
+    futures.add(files.writeAsync(file, RESOURCES));
+    CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get();
+    assertEquals(RESOURCES.toJson(), Files.readString(file));
+    for (int i = 0; i < 20; i++) {
+      assertEquals(RESOURCES, Manifest.fromJson(
+          dir.resolve("written" + i).resolve(ManifestScanner.MANIFEST_FILE_NAME)));
+    }
+    var exception = assertThrows(ExecutionException.class,
+        () -> files.writeAsync(dir.resolve("missing/manifest.json"), DATA).get());
+    assertInstanceOf(IOException.class, exception.getCause());
+    try (var paths = Files.walk(dir)) {
+      assertTrue(paths.noneMatch(e -> e.getFileName().toString().endsWith(".tmp")));
+    }
+  }
+
+  private Path write(String pack, String json) throws IOException {
+    var file = Files.createDirectories(dir.resolve(pack))
+        .resolve(ManifestScanner.MANIFEST_FILE_NAME);
+    return Files.writeString(file, json, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2022 Risu
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.github.risu729.mcbe.manifest4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+// manifests shared by the tests, with nulls, empty sets, unknown values, non-ASCII strings and
+// malformed JSON, which templates do not have
+final class ManifestFixtures {
+
+  private static final String[] DOCUMENTS = {
+      """
+      {"format_version":2,"header":{"name":"x","uuid":"00000000-0000-0001-0000-000000000002",
+      "version":[1,2,3],"min_engine_version":[1,19,0],"platform_locked":true},
+      "modules":[{"type":"data","uuid":"00000000-0000-0001-0000-000000000004",
+      "version":[1,0,0],"description":"d"},{"type":"script","language":"javascript",
+      "uuid":"00000000-0000-0001-0000-000000000003","version":[1,0,0],"entry":"scripts/a.js"}],
+      "dependencies":[{"uuid":"00000000-0000-0001-0000-000000000009"},{"version":[1,0,0]}],
+      "capabilities":["chemistry","raytraced"],
+      "metadata":{"authors":["b","a","日本"],"url":"https://example.com","license":"MIT",
+      "generated_with":{"t":["1.0.0","2.0.0"],"u":[]}},
+      "subpacks":[{"folder_name":"a","name":"A","memory_tier":2},
+      {"folder_name":"b","memory_tier":-7}]}
+      """,
+      """
+      {"format_version":2,"header":{"name":"x","uuid":"00000000-0000-0001-0000-000000000002",
+      "version":[1,2,3],"min_engine_version":[1,19,0],"platform_locked":"true",
+      "foo":{"a":[1, -2.5e3, true, null, "s\\""]}},
+      "modules":[{"type":"javascript","uuid":"00000000-0000-0001-0000-000000000003",
+      "version":[1,0,0]},{"type":"data","uuid":"00000000-0000-0001-0000-000000000004",
+      "version":[1,0,0],"description":null}],"capabilities":["chemistry"],
+      "metadata":{"authors":["b","a"],"url":"https://example.com",
+      "generated_with":{"t":["1.0.0"]}},
+      "subpacks":[{"folder_name":"a","name":"A","memory_tier":2}]}
+      """,
+      // the keys include "/" and "~", which are escaped in the paths of patches
+      """
+      {"format_version":2,"header":{"name":"a","uuid":"00000000-0000-0000-0000-000000000001",
+      "version":[1,0,0],"min_engine_version":[1,19,0]},
+      "modules":[{"type":"data","uuid":"00000000-0000-0000-0000-000000000002","version":[1,0,0]}],
+      "dependencies":[{"uuid":"00000000-0000-0000-0000-000000000003","version":[1,0,0]}],
+      "capabilities":["chemistry"],
+      "metadata":{"authors":["p","r/s"],"generated_with":{"t1":["1.0.0"]}}}
+      """,
+      """
+      {"format_version":2,"header":{"name":"x/y~z","description":"d",
+      "uuid":"00000000-0000-0000-0000-000000000001","version":[1,0,1],
+      "min_engine_version":[1,20,0],"pack_scope":"world"},
+      "modules":[{"type":"data","uuid":"00000000-0000-0000-0000-000000000002","version":[1,1,0]},
+      {"type":"script","uuid":"00000000-0000-0000-0000-000000000004","version":[1,0,0],
+      "entry":"scripts/a.js"}],
+      "capabilities":["chemistry","raytraced"],
+      "metadata":{"authors":["q~1"],"url":"https://example.com","license":"MIT",
+      "generated_with":{"t1":["1.0.0","2.0.0"],"t2":["0.1.0"]}},
+      "subpacks":[{"folder_name":"a","memory_tier":1},{"folder_name":"b"}]}
+      """,
+      // modules without UUIDs cannot be keyed, so patches replace the set as a whole
+      """
+      {"header":{"name":"a"},"modules":[{"type":"data"},{"type":"data"}]}
+      """,
+      """
+      {"header":{"name":"\\u65e5\\u672c \\ud83d\\ude00","description":"日本語 😀",
+      "pack_scope":"world","lock_template_options":true,"base_game_version":[1,20,0]}}
+      """,
+      "{\"header\":null,\"metadata\":{},\"modules\":[],\"capabilities\":[]}",
+      "{\"header\":{\"name\":\"\\u65e5\\u672c \\ud83d\\ude00 \\n\\t\\/\",\"description\":\"日本語 😀\"}}",
+      "﻿{\"header\":{\"name\":\"n\"}}",
+      "{\"header\":{\"name\":\"n\"}} x",
+      "{}",
+      "",
+      "null",
+      "[]",
+      "{,}",
+      "{\"header\":{\"name\":\"n\",}}",
+      "// c\n{\"header\":{\"name\":\"n\"}}",
+      "{\"header\":{\"uuid\":\"1-1-1-1-1\"}}",
+      "{\"header\":{\"uuid\":\"zzzzzzzz-0000-0001-0000-000000000002\"}}",
+      "{\"header\":{\"uuid\":\"ABCDEF00-0000-0001-0000-00000000000F\"}}",
+      "{\"header\":{\"version\":\"1.0.0\"}}",
+      "{\"header\":{\"version\":[1,0]}}",
+      "{\"header\":{\"version\":[1,0,0,0]}}",
+      "{\"header\":{\"version\":[-1,0,0]}}",
+      "{\"header\":{\"version\":[1.0,0,0]}}",
+      "{\"format_version\":\"2\"}",
+      "{\"format_version\":3}",
+      "{\"format_version\":99999999999}",
+      "{\"format_version\":-2147483648}",
+      "{\"metadata\":{\"url\":\"not a url\"}}",
+      "{\"metadata\":{\"generated_with\":{\"bad name!\":[\"1.0.0\"]}}}",
+      "{\"metadata\":{\"generated_with\":{\"ok\":[\"1.0\"]}}}",
+      "{\"metadata\":{\"generated_with\":{\"ok\":[]}}}",
+      "{\"metadata\":{\"authors\":[null]}}",
+      "{\"modules\":[null]}",
+      "{\"modules\":[{\"type\":\"script\",\"entry\":\"scripts/a.js\",\"language\":\"javascript\"}]}",
+      "{\"capabilities\":[\"unknown\",\"raytraced\"]}",
+      "{\"capabilities\":[null]}",
+      "{\"header\":{\"pack_scope\":\"world\",\"lock_template_options\":true,"
+          + "\"base_game_version\":[1,20,0]}}",
+      "  \n\t{ \"header\" : { \"name\" : \"n\" } , \"subpacks\" : [ { \"folder_name\" : \"x\" } ] }",
+      "{\"header\":{\"name\":\"n\"",
+      "{\"header\":{\"name\":\"n\\q\"}}",
+      "{\"header\":{\"name\":123}}",
+      "{\"header\":{\"platform_locked\":1}}",
+      "{\"header\":null,\"metadata\":null,\"modules\":null}",
+      "{\"mod\\u0075les\":[]}",
+      "{\"subpacks\":[{\"folder_name\":\"a\\u0000b\"}]}",
+      // deeper than the stack allows to recurse
+      "{\"format_version\":2,\"x\":" + "[".repeat(200_000) + "]".repeat(200_000) + "}",
+  };
+
+  private ManifestFixtures() {
+  }
+
+  // JSON documents, some of which cannot be parsed
+  static List<String> documents() {
+    return Collections.unmodifiableList(Arrays.asList(DOCUMENTS));
+  }
+
+  // templates and the documents which can be parsed
+  static List<Manifest> manifests() {
+    var manifests = new ArrayList<Manifest>();
+    manifests.add(ManifestTemplates.get(Module_.Type.RESOURCES, true));
+    for (var type : Module_.Type.values()) {
+      manifests.add(ManifestTemplates.get(type, false));
+    }
+    for (var json : DOCUMENTS) {
+      Manifest manifest;
+      try {
+        manifest = Manifest.fromJson(json);
+      } catch (RuntimeException e) {
+        continue;
+      }
+      if (manifest != null) {
+        manifests.add(manifest);
+      }
+    }
+    return manifests;
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2022 Risu
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.github.risu729.mcbe.manifest4j;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.UUID;
+
+import com.google.gson.JsonParser;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ManifestIndexTest {
+
+  private static final Comparator<SemVer> VERSION_ORDER =
+      Comparator.nullsFirst(Comparator.naturalOrder());
+
+  @TempDir
+  Path dir;
+
+  @Test
+  void findsEveryManifestWritten() throws IOException {
+    var random = new Random(0);
+    var uuids = new ArrayList<UUID>();
+    for (int i = 0; i < 50; i++) {
+      // signed and unsigned order of the bits differ
+      uuids.add(new UUID(random.nextLong(), random.nextLong()));
+    }
+    var manifests = new ArrayList<Manifest>();
+    var expected = new TreeMap<UUID, Map<SemVer, Manifest>>();
+    for (int i = 0; i < 500; i++) {
+      var uuid = uuids.get(random.nextInt(uuids.size()));
+      var version = random.nextInt(8) == 0 ? null : SemVer.of(random.nextInt(3), 0, 0);
+      var manifest = manifest(Module_.Type.values()[i % Module_.Type.values().length], uuid,
+          version);
+      manifests.add(manifest);
+      // the last one wins
+      expected.computeIfAbsent(uuid, e -> new TreeMap<>(VERSION_ORDER)).put(version, manifest);
+    }
+    var file = dir.resolve("index");
+    ManifestIndex.write(manifests, file);
+    var index = ManifestIndex.open(file);
+
+    var entries = new ArrayList<Manifest>();
+    expected.values().forEach(e -> entries.addAll(e.values()));
+    assertEquals(entries.size(), index.size());
+    for (int i = 0; i < index.size(); i++) {
+      var manifest = entries.get(i);
+      var header = manifest.getHeader();
+      assertEquals(header.getUUID(), index.getUUID(i));
+      assertEquals(header.getVersion(), index.getVersion(i));
+      assertEquals(EnumSet.of(manifest.getModules().first().getType()), index.getModuleTypes(i));
+      assertEquals(manifest, index.getManifest(i));
+      assertEquals(i, index.indexOf(header.getUUID(), header.getVersion()));
+      assertEquals(manifest, index.get(header.getUUID(), header.getVersion()));
+    }
+    for (var e : expected.entrySet()) {
+      var versions = new ArrayList<>(e.getValue().values());
+      assertTrue(index.contains(e.getKey()));
+      assertEquals(versions, index.getAll(e.getKey()));
+      assertEquals(versions.get(versions.size() - 1), index.getLatest(e.getKey()));
+      assertEquals(-1, index.indexOf(e.getKey(), SemVer.of(9, 0, 0)));
+    }
+    var missing = new UUID(0, 0);
+    assertFalse(index.contains(missing));
+    assertNull(index.get(missing, null));
+    assertNull(index.getLatest(missing));
+    assertTrue(index.getAll(missing).isEmpty());
+  }
+
+  // the old file is replaced, not overwritten
+  @Test
+  void keepsOpenedIndexesAfterRewriting() throws IOException {
+    var file = dir.resolve("index");
+    var old = manifest(Module_.Type.RESOURCES, UUID.randomUUID(), SemVer.of(1, 0, 0));
+    ManifestIndex.write(List.of(old), file);
+    var opened = ManifestIndex.open(file);
+    var replacement = manifest(Module_.Type.DATA, UUID.randomUUID(), SemVer.of(2, 0, 0));
+    ManifestIndex.write(List.of(replacement, replacement), file);
+    assertEquals(List.of(old), List.of(opened.getManifest(0)));
+    assertEquals(1, opened.size());
+    var reopened = ManifestIndex.open(file);
+    assertEquals(1, reopened.size());
+    assertEquals(replacement, reopened.getManifest(0));
+    try (var files = Files.list(dir)) {
+      assertEquals(List.of(file), files.toList());
+    }
+  }
+
+  @Test
+  void writesEmptyIndexes() throws IOException {
+    var file = dir.resolve("index");
+    ManifestIndex.write(List.of(), file);
+    var index = ManifestIndex.open(file);
+    assertEquals(0, index.size());
+    assertNull(index.getLatest(UUID.randomUUID()));
+  }
+
+  @Test
+  void rejectsInvalidInput() throws IOException {
+    var file = dir.resolve("index");
+    var noUUID = Manifest.fromJson("{\"format_version\":2,\"header\":{\"name\":\"a\"}}");
+    assertThrows(IllegalArgumentException.class, () -> ManifestIndex.write(List.of(noUUID), file));
+    assertFalse(Files.exists(file));
+    Files.write(file, new byte[100]);
+    assertThrows(IOException.class, () -> ManifestIndex.open(file));
+    Files.write(file, new byte[3]);
+    assertThrows(IOException.class, () -> ManifestIndex.open(file));
+  }
+
+  private static Manifest manifest(Module_.Type type, UUID uuid, SemVer version) {
+    var template = ManifestTemplates.get(type, false);
+    var header = new Header.Builder(template.getHeader()).uuid(uuid).version(version);
+    if (version != null) {
+      return new Manifest.Builder(template).header(header.build()).build();
+    }
+    // the builder requires a version
+    var json = JsonParser.parseString(new Manifest.Builder(template)
+        .header(header.version(SemVer.of(1, 0, 0)).build())
+        .build()
+        .toJson()).getAsJsonObject();
+    json.getAsJsonObject("header").remove("version");
+    var manifest = Manifest.fromJson(json.toString());
+    assertNull(manifest.getHeader().getVersion());
+    return manifest;
+  }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2022 Risu
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.github.risu729.mcbe.manifest4j;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+class ManifestInternerTest {
+
+  @Test
+  void internsEqualManifestsToTheSameInstance() {
+    var interner = ManifestInterner.of();
+    var codec = interner.codec(ManifestCodec.gson());
+    for (var manifest : ManifestFixtures.manifests()) {
+      var json = manifest.toJson();
+      var first = codec.decode(json.getBytes(StandardCharsets.UTF_8));
+      assertEquals(Manifest.fromJson(json), first);
+      assertSame(first, codec.decode(json.getBytes(StandardCharsets.UTF_8)));
+      assertSame(first, interner.intern(Manifest.fromJson(json)));
+    }
+  }
+
+  // hashing and comparing the URL must not depend on resolving its host
+  @Test
+  void internsMetadataWithUnresolvableHosts() {
+    var interner = ManifestInterner.of();
+    var json = "{\"metadata\":{\"url\":\"https://example.invalid/pack\",\"authors\":[\"a\"]}}";
+    var metadata = interner.intern(Manifest.fromJson(json).getMetadata());
+    assertSame(metadata, interner.intern(Manifest.fromJson(json).getMetadata()));
+  }
+}
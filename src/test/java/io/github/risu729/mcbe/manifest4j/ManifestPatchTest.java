@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2022 Risu
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.github.risu729.mcbe.manifest4j;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.gson.JsonSyntaxException;
+
+import org.junit.jupiter.api.Test;
+
+class ManifestPatchTest {
+
+  @Test
+  void applyingTheDiffGivesTheTarget() {
+    for (var source : ManifestFixtures.manifests()) {
+      for (var target : ManifestFixtures.manifests()) {
+        var patch = ManifestPatch.diff(source, target);
+        var patched = patch.apply(source);
+        assertEquals(target.toCanonicalJson(), patched.toCanonicalJson(), patch::toJson);
+        assertTrue(ManifestPatch.diff(patched, target).isEmpty(), patch::toJson);
+      }
+    }
+  }
+
+  @Test
+  void diffOfEqualManifestsIsEmpty() {
+    for (var manifest : ManifestFixtures.manifests()) {
+      assertTrue(ManifestPatch.diff(manifest, manifest).isEmpty());
+      assertTrue(ManifestPatch.diff(manifest, Manifest.fromJson(manifest.toJson())).isEmpty());
+    }
+  }
+
+  @Test
+  void diffOfVersionBump() {
+    var source = ManifestTemplates.get(Module_.Type.RESOURCES, true);
+    var target = new Manifest.Builder(source)
+        .header(new Header.Builder(source.getHeader()).version(SemVer.of(1, 0, 1)).build())
+        .build();
+    assertEquals("[{\"op\":\"replace\",\"path\":\"/header/version\",\"value\":[1,0,1]}]",
+        ManifestPatch.diff(source, target).toJson());
+  }
+
+  @Test
+  void jsonRoundTrip() {
+    for (var source : ManifestFixtures.manifests()) {
+      for (var target : ManifestFixtures.manifests()) {
+        var patch = ManifestPatch.diff(source, target);
+        var parsed = ManifestPatch.fromJson(patch.toJson());
+        assertEquals(patch, parsed);
+        assertEquals(patch.toJson(), parsed.toJson());
+      }
+    }
+  }
+
+  @Test
+  void rejectsOperationsWhichCannotBeApplied() {
+    var manifest = ManifestTemplates.get(Module_.Type.RESOURCES, true);
+    String[] patches = {
+        "[{\"op\":\"remove\",\"path\":\"/nope\"}]",
+        "[{\"op\":\"remove\",\"path\":\"/modules/00000000-0000-0000-0000-000000000009\"}]",
+        "[{\"op\":\"add\",\"path\":\"/header/version\",\"value\":\"x\"}]",
+        "[{\"op\":\"add\",\"path\":\"/modules/00000000-0000-0000-0000-000000000009\","
+            + "\"value\":{\"uuid\":\"00000000-0000-0000-0000-000000000001\"}}]",
+        "[{\"op\":\"add\",\"path\":\"/capabilities/foo\",\"value\":\"foo\"}]",
+        "[{\"op\":\"add\",\"path\":\"/metadata/generated_with/x\",\"value\":5}]",
+    };
+    for (var json : patches) {
+      var patch = ManifestPatch.fromJson(json);
+      assertThrows(IllegalArgumentException.class, () -> patch.apply(manifest), json);
+    }
+  }
+
+  @Test
+  void rejectsInvalidPatches() {
+    String[] patches = {
+        "{}",
+        "[1]",
+        "[{\"op\":\"move\",\"path\":\"/header\"}]",
+        "[{\"op\":\"add\",\"path\":\"header\",\"value\":1}]",
+        "[{\"op\":\"remove\",\"path\":\"/header\",\"value\":1}]",
+        "[{\"op\":\"replace\",\"path\":\"/header\"}]",
+    };
+    for (var json : patches) {
+      assertThrows(IllegalArgumentException.class, () -> ManifestPatch.fromJson(json), json);
+    }
+    assertThrows(JsonSyntaxException.class, () -> ManifestPatch.fromJson("[{"));
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2022 Risu
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.github.risu729.mcbe.manifest4j;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.Executors;
+
+import com.google.gson.JsonParseException;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ManifestScannerTest {
+
+  private static final Manifest RESOURCES = ManifestTemplates.get(Module_.Type.RESOURCES, true);
+  private static final Manifest DATA = ManifestTemplates.get(Module_.Type.DATA, false);
+
+  @TempDir
+  Path dir;
+
+  @Test
+  void findsManifestsInEveryRoot() throws IOException, InterruptedException {
+    var expected = new HashMap<Path, Manifest>();
+    for (int i = 0; i < 100; i++) {
+      var manifest = i % 2 == 0 ? RESOURCES : DATA;
+      expected.put(write("a/pack" + i, manifest), manifest);
+    }
+    expected.put(write("b/nested/deeper/pack", DATA), DATA);
+    // only manifest.json is read
+    write("a/other.json", "{");
+    Files.createDirectories(dir.resolve("a/manifest.json.d"));
+    var result = new ManifestScanner.Builder()
+        .parallelism(3)
+        .build()
+        .scan(List.of(dir.resolve("a"), dir.resolve("b")));
+    assertEquals(expected, result.getManifests());
+    assertTrue(result.getErrors().isEmpty(), result.getErrors()::toString);
+  }
+
+  @Test
+  void recordsBrokenFiles() throws IOException, InterruptedException {
+    var valid = write("valid", DATA);
+    var broken = write("broken/manifest.json", "{");
+    var missing = dir.resolve("missing");
+    var result = ManifestScanner.of().scan(List.of(dir, missing));
+    assertEquals(Map.of(valid, DATA), result.getManifests());
+    assertEquals(Set.of(broken, missing), result.getErrors().keySet());
+    assertInstanceOf(JsonParseException.class, result.getErrors().get(broken));
+    assertInstanceOf(IOException.class, result.getErrors().get(missing));
+  }
+
+  @Test
+  void stopsAtMaxDepth() throws IOException, InterruptedException {
+    var shallow = write("pack", DATA);
+    write("packs/pack", RESOURCES);
+    var scanner = new ManifestScanner.Builder().maxDepth(2).build();
+    assertEquals(Set.of(shallow), scanner.scan(dir).getManifests().keySet());
+    scanner = new ManifestScanner.Builder().maxDepth(0).build();
+    assertTrue(scanner.scan(dir).getManifests().isEmpty());
+  }
+
+  @Test
+  void runsOnTheGivenExecutor() throws IOException, InterruptedException {
+    for (int i = 0; i < 20; i++) {
+      write("pack" + i, DATA);
+    }
+    var inFlight = new AtomicInteger();
+    var maxInFlight = new AtomicInteger();
+    var codec = new ManifestCodec() {
+      @Override
+      public Manifest decode(ByteBuffer input) {
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        try {
+          Thread.sleep(5);
+          return ManifestCodec.gson().decode(input);
+        } catch (InterruptedException e) {
+          throw new AssertionError(e);
+        } finally {
+          inFlight.decrementAndGet();
+        }
+      }
+
+      @Override
+      public void encode(Manifest manifest, OutputStream out) {
+        ManifestCodec.gson().encode(manifest, out);
+      }
+    };
+    var executor = Executors.newCachedThreadPool();
+    try {
+      var scanner = new ManifestScanner.Builder()
+          .codec(codec)
+          .executor(executor)
+          .parallelism(2)
+          .build();
+      assertEquals(20, scanner.scan(dir).getManifests().size());
+      assertEquals(20, scanner.scan(dir).getManifests().size());
+      assertFalse(executor.isShutdown());
+      // at most the parallelism of files are read at the same time
+      assertTrue(maxInFlight.get() <= 2, () -> maxInFlight + " in flight");
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void rejectsInvalidSettings() {
+    assertThrows(IllegalArgumentException.class,
+        () -> new ManifestScanner.Builder().parallelism(0));
+    assertThrows(IllegalArgumentException.class,
+        () -> new ManifestScanner.Builder().maxDepth(-1));
+    assertThrows(NullPointerException.class,
+        () -> ManifestScanner.of().scan(Arrays.asList(dir, null)));
+  }
+
+  private Path write(String pack, Manifest manifest) throws IOException {
+    return write(pack + "/" + ManifestScanner.MANIFEST_FILE_NAME, manifest.toJson());
+  }
+
+  private Path write(String file, String content) throws IOException {
+    var path = dir.resolve(file);
+    Files.createDirectories(path.getParent());
+    return Files.writeString(path, content, StandardCharsets.UTF_8);
+  }
+}
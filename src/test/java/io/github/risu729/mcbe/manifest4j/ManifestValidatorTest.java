@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2022 Risu
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.github.risu729.mcbe.manifest4j;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class ManifestValidatorTest {
+
+  @Test
+  void validIfAndOnlyIfRebuildingSucceeds() {
+    int valid = 0;
+    int invalid = 0;
+    for (var manifest : ManifestFixtures.manifests()) {
+      boolean rebuilt;
+      try {
+        rebuild(manifest);
+        rebuilt = true;
+      } catch (RuntimeException e) {
+        rebuilt = false;
+      }
+      assertEquals(rebuilt, ManifestValidator.isValid(manifest),
+          () -> manifest + " " + ManifestValidator.validate(manifest));
+      if (rebuilt) {
+        valid++;
+      } else {
+        invalid++;
+      }
+    }
+    // both outcomes are covered
+    assertTrue(valid > 0);
+    assertTrue(invalid > 0);
+  }
+
+  @Test
+  void templatesAreValid() {
+    for (var type : Module_.Type.values()) {
+      assertTrue(ManifestValidator.isValid(ManifestTemplates.get(type, false)));
+    }
+    assertTrue(ManifestValidator.isValid(ManifestTemplates.get(Module_.Type.RESOURCES, true)));
+  }
+
+  @Test
+  void reportsFormatVersion() {
+    var manifest = new Manifest.Builder(ManifestTemplates.get(Module_.Type.DATA, false)).build();
+    var json = manifest.toJson().replace("\"format_version\": 2", "\"format_version\": 3");
+    var violations = ManifestValidator.validate(Manifest.fromJson(json));
+    assertEquals(1, violations.size(), violations::toString);
+    assertEquals(ManifestValidator.Rule.FORMAT_VERSION, violations.get(0).getRule());
+    assertEquals("format_version", violations.get(0).getPath());
+    assertEquals(3, violations.get(0).getValue());
+  }
+
+  @Test
+  void reportsEveryViolation() {
+    var manifest = Manifest.fromJson("""
+        {"format_version":0,"header":{"base_game_version":[1,20,0]},
+        "modules":[{"type":"resources"},{"type":"script","entry":"a.txt"},{}],
+        "subpacks":[{"folder_name":"../x","memory_tier":-1}]}
+        """);
+    var rules = ManifestValidator.validate(manifest).stream()
+        .map(ManifestValidator.Violation::getRule)
+        .toList();
+    assertEquals(List.of(
+        ManifestValidator.Rule.FORMAT_VERSION,
+        ManifestValidator.Rule.NECESSARY,
+        ManifestValidator.Rule.SCRIPT_ENTRY,
+        ManifestValidator.Rule.MODULE_TYPES,
+        ManifestValidator.Rule.NECESSARY,
+        ManifestValidator.Rule.BASE_GAME_VERSION,
+        ManifestValidator.Rule.FOLDER_NAME,
+        ManifestValidator.Rule.MEMORY_TIER), rules);
+    assertFalse(ManifestValidator.isValid(manifest));
+  }
+
+  // runs the builders of the values as well, as parsing does not
+  private static Manifest rebuild(Manifest manifest) {
+    var builder = new Manifest.Builder(manifest);
+    if (manifest.getHeader() != null) {
+      builder.header(new Header.Builder(manifest.getHeader()).build());
+    }
+    if (manifest.getModules() != null) {
+      var modules = new ArrayList<Module_>();
+      for (var e : manifest.getModules()) {
+        modules.add(new Module_.Builder(e).build());
+      }
+      builder.modules(modules);
+    }
+    if (manifest.getDependencies() != null) {
+      var dependencies = new ArrayList<Dependency>();
+      for (var e : manifest.getDependencies()) {
+        dependencies.add(new Dependency.Builder(e).build());
+      }
+      builder.dependencies(dependencies);
+    }
+    if (manifest.getSubpacks() != null) {
+      var subpacks = new ArrayList<Subpack>();
+      for (var e : manifest.getSubpacks()) {
+        subpacks.add(new Subpack.Builder(e).build());
+      }
+      builder.subpacks(subpacks);
+    }
+    return builder.build();
+  }
+}
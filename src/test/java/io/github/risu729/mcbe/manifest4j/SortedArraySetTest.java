@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2022 Risu
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.github.risu729.mcbe.manifest4j;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+
+// the sets must behave as TreeSet, which the getters of the model classes returned before
+class SortedArraySetTest {
+
+  @Test
+  void viewsBehaveAsTreeSet() {
+    var random = new Random(0);
+    for (int i = 0; i < 2000; i++) {
+      var treeSet = new TreeSet<Integer>();
+      for (int n = random.nextInt(8); n > 0; n--) {
+        treeSet.add(random.nextInt(20));
+      }
+      NavigableSet<Integer> expected = treeSet;
+      NavigableSet<Integer> actual = SortedArraySet.copyOf(treeSet, null);
+      var operations = new ArrayList<String>();
+      for (int depth = 0; depth < 4; depth++) {
+        var operation = view(random);
+        operations.add(operation.toString());
+        var expectedView = apply(operation, expected);
+        var actualView = apply(operation, actual);
+        assertEquals(expectedView, actualView, operations::toString);
+        if (!(expectedView instanceof NavigableSet<?>)) {
+          break;
+        }
+        @SuppressWarnings("unchecked")
+        var nextExpected = (NavigableSet<Integer>) expectedView;
+        @SuppressWarnings("unchecked")
+        var nextActual = (NavigableSet<Integer>) actualView;
+        expected = nextExpected;
+        actual = nextActual;
+        assertEquals(List.copyOf(expected), List.copyOf(actual), operations::toString);
+        assertEquals(expected.size(), actual.size(), operations::toString);
+      }
+    }
+  }
+
+  private static View view(Random random) {
+    return new View(random.nextInt(4), random.nextInt(22) - 1, random.nextBoolean(),
+        random.nextInt(22) - 1, random.nextBoolean());
+  }
+
+  // the view, or the class and message of the exception
+  private static Object apply(View view, NavigableSet<Integer> set) {
+    Function<NavigableSet<Integer>, NavigableSet<Integer>> function = switch (view.kind) {
+      case 0 -> e -> e.subSet(view.from, view.fromInclusive, view.to, view.toInclusive);
+      case 1 -> e -> e.headSet(view.to, view.toInclusive);
+      case 2 -> e -> e.tailSet(view.from, view.fromInclusive);
+      default -> NavigableSet::descendingSet;
+    };
+    try {
+      return function.apply(set);
+    } catch (IllegalArgumentException e) {
+      return e.getClass().getName() + ": " + e.getMessage();
+    }
+  }
+
+  private record View(int kind, int from, boolean fromInclusive, int to, boolean toInclusive) {
+  }
+}
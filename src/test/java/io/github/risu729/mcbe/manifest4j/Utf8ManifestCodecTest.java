@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2022 Risu
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.github.risu729.mcbe.manifest4j;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+// the codec must produce the same manifests and throw the same exceptions as the Gson codec
+class Utf8ManifestCodecTest {
+
+  @Test
+  void decodesTemplatesAsGson() {
+    var manifest = ManifestTemplates.get(Module_.Type.RESOURCES, true);
+    assertDecodesAsGson(manifest.toJson());
+    assertDecodesAsGson(manifest.toString());
+    assertDecodesAsGson(manifest.toCanonicalJson());
+  }
+
+  @Test
+  void decodesFixturesAsGson() {
+    for (var json : ManifestFixtures.documents()) {
+      assertDecodesAsGson(json);
+    }
+    for (var manifest : ManifestFixtures.manifests()) {
+      assertDecodesAsGson(manifest.toJson());
+    }
+  }
+
+  @Test
+  void decodesMutatedInputAsGson() {
+    var random = new Random(1);
+    var base = ManifestTemplates.get(Module_.Type.RESOURCES, true).toJson();
+    var replacements = "{}[],:\"\\ 0a-.nt/x";
+    for (int i = 0; i < 5000; i++) {
+      var chars = base.toCharArray();
+      for (int n = 1 + random.nextInt(3); n > 0; n--) {
+        chars[random.nextInt(chars.length)] =
+            replacements.charAt(random.nextInt(replacements.length()));
+      }
+      assertDecodesAsGson(new String(chars));
+    }
+  }
+
+  @Test
+  void decodesDirectBuffers() {
+    var bytes = ManifestTemplates.get(Module_.Type.RESOURCES, true).toJson()
+        .getBytes(StandardCharsets.UTF_8);
+    var buffer = ByteBuffer.allocateDirect(bytes.length + 2);
+    buffer.put((byte) 0).put(bytes).position(1).limit(1 + bytes.length);
+    assertEquals(ManifestCodec.gson().decode(bytes), ManifestCodec.utf8().decode(buffer));
+    assertEquals(1, buffer.position());
+  }
+
+  @Test
+  void encodesAsGson() {
+    var manifest = ManifestTemplates.get(Module_.Type.RESOURCES, true);
+    assertEquals(new String(ManifestCodec.gson().encode(manifest), StandardCharsets.UTF_8),
+        new String(ManifestCodec.utf8().encode(manifest), StandardCharsets.UTF_8));
+  }
+
+  // compares toString, which includes nulls, or the class and message of the exception
+  private static void assertDecodesAsGson(String json) {
+    var bytes = json.getBytes(StandardCharsets.UTF_8);
+    assertEquals(decode(ManifestCodec.gson(), bytes), decode(ManifestCodec.utf8(), bytes), json);
+  }
+
+  private static String decode(ManifestCodec codec, byte[] bytes) {
+    try {
+      return String.valueOf(codec.decode(bytes));
+    } catch (RuntimeException e) {
+      return e.getClass().getName() + ": " + e.getMessage();
+    }
+  }
+}
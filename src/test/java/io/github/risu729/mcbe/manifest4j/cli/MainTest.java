@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2022 Risu
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.github.risu729.mcbe.manifest4j.cli;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import io.github.risu729.mcbe.manifest4j.ManifestScanner;
+import io.github.risu729.mcbe.manifest4j.ManifestTemplates;
+import io.github.risu729.mcbe.manifest4j.Module_;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MainTest {
+
+  @TempDir
+  Path dir;
+
+  @Test
+  void exitsWithTheStatusOfWhatIsReported() throws IOException {
+    var pack = Files.createDirectories(dir.resolve("pack"));
+    Files.writeString(pack.resolve(ManifestScanner.MANIFEST_FILE_NAME),
+        ManifestTemplates.get(Module_.Type.RESOURCES, true).toJson());
+    assertEquals(Main.OK, run("validate", dir.toString()));
+    assertEquals(Main.OK, run("format", "--check", dir.toString()));
+
+    var invalid = Files.createDirectories(dir.resolve("invalid"));
+    Files.writeString(invalid.resolve(ManifestScanner.MANIFEST_FILE_NAME),
+        "{\"format_version\":2,\"header\":{\"name\":\"n\"}}");
+    assertEquals(Main.FINDINGS, run("validate", dir.toString()));
+
+    Files.writeString(invalid.resolve(ManifestScanner.MANIFEST_FILE_NAME), "{");
+    assertEquals(Main.ERRORS, run("validate", dir.toString()));
+  }
+
+  @Test
+  void exitsWithUsageForInvalidArguments() {
+    assertEquals(Main.USAGE, run("nope", dir.toString()));
+    assertEquals(Main.USAGE, run("validate"));
+    assertEquals(Main.USAGE, run("validate", "--parallelism", "0", dir.toString()));
+    assertEquals(Main.OK, run("--help"));
+  }
+
+  // one JSON object per line, including the files which could not be read
+  @Test
+  void writesARecordPerFile() throws IOException {
+    for (int i = 0; i < 3; i++) {
+      var pack = Files.createDirectories(dir.resolve("pack" + i));
+      Files.writeString(pack.resolve(ManifestScanner.MANIFEST_FILE_NAME),
+          i == 0 ? "{" : ManifestTemplates.get(Module_.Type.DATA, true).toJson());
+    }
+    var out = new ByteArrayOutputStream();
+    Main.run(new String[] {"list", dir.toString()}, new PrintStream(out, true),
+        new PrintStream(new ByteArrayOutputStream()));
+    var lines = out.toString(StandardCharsets.UTF_8).split("\n");
+    assertEquals(3, lines.length);
+    for (var line : lines) {
+      assertTrue(line.startsWith("{") && line.endsWith("}"), line);
+    }
+  }
+
+  private static int run(String... args) {
+    var discard = new PrintStream(new ByteArrayOutputStream());
+    return Main.run(args, discard, discard);
+  }
+}
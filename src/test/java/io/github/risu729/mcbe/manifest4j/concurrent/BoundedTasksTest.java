@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2022 Risu
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.github.risu729.mcbe.manifest4j.concurrent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.jupiter.api.Test;
+
+class BoundedTasksTest {
+
+  @Test
+  void runsAtMostTheParallelismAtOnce() throws InterruptedException {
+    // unbounded, so only the tasks bound what is in flight
+    var executor = Executors.newCachedThreadPool();
+    try {
+      var tasks = new BoundedTasks(executor, 3);
+      var running = new AtomicInteger();
+      var maxRunning = new AtomicInteger();
+      var done = new AtomicInteger();
+      for (int i = 0; i < 100; i++) {
+        tasks.submit(() -> {
+          maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+          Thread.onSpinWait();
+          running.decrementAndGet();
+          done.incrementAndGet();
+        });
+      }
+      tasks.await();
+      assertEquals(100, done.get());
+      assertTrue(maxRunning.get() <= 3, () -> "max running: " + maxRunning);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void awaitRethrowsErrors() throws InterruptedException {
+    var executor = BoundedTasks.newThreadPool("test", 2);
+    try {
+      var tasks = new BoundedTasks(executor, 2);
+      var error = new StackOverflowError();
+      tasks.submit(() -> {
+        throw error;
+      });
+      tasks.submit(() -> {
+      });
+      assertSame(error, assertThrows(StackOverflowError.class, tasks::await));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void releasesThePermitWhenRejected() throws InterruptedException {
+    var executor = BoundedTasks.newThreadPool("test", 1);
+    executor.shutdown();
+    var tasks = new BoundedTasks(executor, 1);
+    for (int i = 0; i < 3; i++) {
+      assertThrows(RejectedExecutionException.class, () -> tasks.submit(() -> {
+      }));
+    }
+  }
+
+  @Test
+  void threadsAreDaemonsNamedAfterThePrefix() throws Exception {
+    var executor = BoundedTasks.newThreadPool("prefix", 1);
+    try {
+      var thread = executor.submit(Thread::currentThread).get();
+      assertTrue(thread.isDaemon());
+      assertEquals("prefix-1", thread.getName());
+    } finally {
+      executor.shutdown();
+    }
+  }
+}